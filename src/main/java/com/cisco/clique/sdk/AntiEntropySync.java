@@ -0,0 +1,275 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractBlock;
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.AuthBlock;
+import com.cisco.clique.sdk.chains.AuthChain;
+import com.cisco.clique.sdk.chains.IdBlock;
+import com.cisco.clique.sdk.chains.IdChain;
+import com.cisco.clique.sdk.validation.AuthBlockValidator;
+import com.cisco.clique.sdk.validation.IdBlockValidator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.nimbusds.jose.jwk.ECKey;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeSet;
+
+public class AntiEntropySync {
+
+    private static final ObjectMapper _mapper = JsonMapperFactory.getInstance().getMapper();
+    private static final int TARGET_AHEAD = -1;
+    private static final int DIVERGED = -2;
+    private final Set<String> _trustRoots;
+    private final int _depth;
+
+    public AntiEntropySync(Set<String> trustRoots) {
+        this(trustRoots, MerkleDigest.DEFAULT_DEPTH);
+    }
+
+    public AntiEntropySync(Set<String> trustRoots, int depth) {
+        if (null == trustRoots || depth < 0 || depth > MerkleDigest.MAX_DEPTH) {
+            throw new IllegalArgumentException("trust roots must be non-null and depth at most "
+                    + MerkleDigest.MAX_DEPTH);
+        }
+        _trustRoots = trustRoots;
+        _depth = depth;
+    }
+
+    public <S extends Transport & ChainDirectory, D extends Transport & ChainDirectory> Result reconcile(
+            S first, D second) throws Exception {
+
+        // a chain can only grow, so pushing each way once leaves both sides with the longer of every pair of heads
+        Result result = sync(first, second);
+        result.add(sync(second, first));
+        return result;
+    }
+
+    public <S extends Transport & ChainDirectory, D extends Transport & ChainDirectory> Result sync(
+            S source, D target) throws Exception {
+        if (null == source || null == target) {
+            throw new IllegalArgumentException("source and target transports must both be non-null");
+        }
+
+        // identity chains first, so the issuers of any auth chain that follows are already in place on the target;
+        // an identity chain can only validate once its own issuer's chain has landed, so the ones that don't are
+        // retried for as long as others keep landing, and whatever is left after that is a conflict
+        Result result = new Result();
+        Set<URI> pending = diff(source, target, ChainEvent.Type.ID_CHAIN, result);
+        boolean last = false;
+        while (!pending.isEmpty()) {
+            int remaining = pending.size();
+            for (Iterator<URI> it = pending.iterator(); it.hasNext(); ) {
+                if (syncIdChain(source, target, it.next(), result, last)) {
+                    it.remove();
+                }
+            }
+            last = (pending.size() == remaining);
+        }
+        for (URI uri : diff(source, target, ChainEvent.Type.AUTH_CHAIN, result)) {
+            AbstractChain<AuthBlock> chain = source.getAuthChain(null, uri);
+            AbstractChain<AuthBlock> existing = target.getAuthChain(null, uri);
+            Result transferred = new Result();
+            ArrayNode blocks = transfer(source, target, chain, existing, transferred);
+            if (null != blocks) {
+                AuthChain merged = new AuthChain(new AuthBlockValidator(target, _trustRoots), blocks, false);
+                if (validates(merged, transferred, true)) {
+                    target.putAuthChain(merged);
+                }
+            }
+            result.add(transferred);
+        }
+        return result;
+    }
+
+    private boolean syncIdChain(Transport source, Transport target, URI uri, Result result, boolean last)
+            throws Exception {
+        AbstractChain<IdBlock> chain = source.getIdChain(null, uri);
+        AbstractChain<IdBlock> existing = target.getIdChain(null, uri);
+        Result transferred = new Result();
+        ArrayNode blocks = transfer(source, target, chain, existing, transferred);
+        if (null != blocks) {
+            IdChain merged = new IdChain(new IdBlockValidator(target, _trustRoots), blocks, false);
+            if (!validates(merged, transferred, last)) {
+                if (!last) {
+
+                    // keys already copied stay copied, a retry wouldn't see them as new
+                    result._keys += transferred._keys;
+                    return false;
+                }
+                result.add(transferred);
+                return true;
+            }
+            target.putIdChain(merged);
+        }
+        result.add(transferred);
+        return true;
+    }
+
+    private static boolean validates(AbstractChain<?> chain, Result transferred, boolean last) {
+
+        // whatever the source appended has to validate on the target, on top of the head the target already
+        // trusted, before it replaces that head; a chain that doesn't, for whatever reason, is kept out and
+        // reported like a fork
+        try {
+            chain.validate();
+            return true;
+        } catch (Exception e) {
+            if (last) {
+                transferred._chains--;
+                transferred._blocks = 0;
+                transferred._bytes = 0;
+                transferred._conflicts++;
+            }
+            return false;
+        }
+    }
+
+    private Set<URI> diff(ChainDirectory source, ChainDirectory target, ChainEvent.Type type, Result result)
+            throws Exception {
+        Set<URI> differing = new TreeSet<>();
+        diff(source, target, type, 0, 0, differing, result);
+        return differing;
+    }
+
+    private void diff(ChainDirectory source, ChainDirectory target, ChainEvent.Type type, int level, int index,
+                      Set<URI> differing, Result result) throws Exception {
+
+        // each side is asked for one node at a time and only subtrees whose hashes disagree are descended into, so
+        // replicas that mostly agree exchange a handful of hashes and a few leaves rather than every head
+        result._hashes += 2;
+        if (source.getNodeHash(type, _depth, level, index).equals(target.getNodeHash(type, _depth, level, index))) {
+            return;
+        }
+        if (level < _depth) {
+            diff(source, target, type, level + 1, 2 * index, differing, result);
+            diff(source, target, type, level + 1, 2 * index + 1, differing, result);
+            return;
+        }
+        SortedMap<URI, String> mine = source.getLeafHeads(type, _depth, index);
+        SortedMap<URI, String> theirs = target.getLeafHeads(type, _depth, index);
+        result._hashes += mine.size() + theirs.size();
+        MerkleDigest.diffLeaves(mine, theirs, differing);
+    }
+
+    private static ArrayNode transfer(Transport source, Transport target, AbstractChain<?> chain,
+                                      AbstractChain<?> existing, Result result) throws Exception {
+        if (null == chain) {
+            return null;
+        }
+        List<? extends AbstractBlock> blocks = chain.getBlocks();
+        int start = commonLength(blocks, existing);
+        if (TARGET_AHEAD == start) {
+            return null;
+        }
+        if (DIVERGED == start) {
+            result._conflicts++;
+            return null;
+        }
+
+        // only the blocks past the last one both sides share are new to the target, but a transport can only be
+        // handed whole chains, so the bytes written count the blocks it already had too
+        ArrayNode array = _mapper.createArrayNode();
+        if (null != existing) {
+            for (AbstractBlock block : existing.getBlocks()) {
+                String serialization = block.serialize();
+                array.add(serialization);
+                result._bytes += serialization.length();
+            }
+        }
+        for (AbstractBlock block : blocks.subList(start, blocks.size())) {
+            String serialization = block.serialize();
+            array.add(serialization);
+            result._blocks++;
+            result._bytes += serialization.length();
+            result._keys += copyKey(source, target, block.getKid());
+            if (block instanceof IdBlock) {
+                result._keys += copyKey(source, target, ((IdBlock) block).getPkt());
+            }
+        }
+        result._chains++;
+        return array;
+    }
+
+    private static int commonLength(List<? extends AbstractBlock> blocks, AbstractChain<?> existing)
+            throws Exception {
+        if (null == existing || existing.getBlocks().isEmpty()) {
+            return 0;
+        }
+
+        // the target's head is the common antecedent when it appears in the source's chain
+        String head = existing.getHeadHash();
+        for (int i = blocks.size() - 1; i >= 0; i--) {
+            if (head.equals(blocks.get(i).getHash())) {
+                return i + 1;
+            }
+        }
+        for (AbstractBlock block : existing.getBlocks()) {
+            if (!blocks.isEmpty() && block.getHash().equals(blocks.get(blocks.size() - 1).getHash())) {
+                return TARGET_AHEAD;
+            }
+        }
+        return DIVERGED;
+    }
+
+    private static int copyKey(Transport source, Transport target, String pkt) throws Exception {
+        if (null == pkt || null != target.getKey(pkt)) {
+            return 0;
+        }
+        ECKey key = source.getKey(pkt);
+        if (null == key) {
+            return 0;
+        }
+        target.putKey(key);
+        return 1;
+    }
+
+    public static final class Result {
+        private int _chains;
+        private int _blocks;
+        private long _bytes;
+        private int _keys;
+        private int _conflicts;
+        private long _hashes;
+
+        Result() {
+        }
+
+        public int getChains() {
+            return _chains;
+        }
+
+        public int getBlocks() {
+            return _blocks;
+        }
+
+        public long getBytes() {
+            return _bytes;
+        }
+
+        public int getKeys() {
+            return _keys;
+        }
+
+        public int getConflicts() {
+            return _conflicts;
+        }
+
+        public long getHashes() {
+            return _hashes;
+        }
+
+        private void add(Result other) {
+            _chains += other._chains;
+            _blocks += other._blocks;
+            _bytes += other._bytes;
+            _keys += other._keys;
+            _conflicts += other._conflicts;
+            _hashes += other._hashes;
+        }
+    }
+}
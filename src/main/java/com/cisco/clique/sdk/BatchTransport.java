@@ -0,0 +1,6 @@
+package com.cisco.clique.sdk;
+
+public interface BatchTransport {
+
+    void commit(Transaction transaction) throws Exception;
+}
@@ -0,0 +1,363 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.AuthBlock;
+import com.cisco.clique.sdk.chains.AuthChain;
+import com.cisco.clique.sdk.chains.IdBlock;
+import com.cisco.clique.sdk.chains.IdChain;
+import com.cisco.clique.sdk.validation.AbstractValidator;
+import com.nimbusds.jose.jwk.ECKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class CachingTransport implements Transport, BatchTransport, ChainPublisher {
+
+    private Transport _transport;
+    private long _l1MaxBytes;
+    private long _l1Bytes;
+    private Map<CacheKey, L1Entry> _l1;
+    private MappedChainLog _l2;
+    private Map<CacheKey, Long> _l2Index;
+    private ChainDictionary _l2Dictionary;
+    private long _l1Hits;
+    private long _l2Hits;
+    private long _misses;
+    private ChainListener _invalidator;
+
+    public CachingTransport(Transport transport, long l1MaxBytes, File l2Directory, int l2SegmentBytes,
+                            int l2MaxSegments) throws IOException {
+        this(transport, l1MaxBytes, l2Directory, l2SegmentBytes, l2MaxSegments, null);
+    }
+
+    public CachingTransport(Transport transport, long l1MaxBytes, File l2Directory, int l2SegmentBytes,
+                            int l2MaxSegments, ChainDictionary l2Dictionary) throws IOException {
+        if (null == transport) {
+            throw new IllegalArgumentException("transport must be non-null");
+        }
+        if (l1MaxBytes < 1) {
+            throw new IllegalArgumentException("L1 size must be positive");
+        }
+        _transport = transport;
+        _l1MaxBytes = l1MaxBytes;
+        _l1Bytes = 0;
+        _l1 = new LinkedHashMap<>(16, 0.75f, true);
+        _l2 = new MappedChainLog(l2Directory, l2SegmentBytes, l2MaxSegments);
+        _l2Index = new HashMap<>();
+        _l2Dictionary = l2Dictionary;
+
+        // chains published by anyone else through the backing transport make whatever is cached for them stale; a
+        // backing transport that publishes no events leaves only the writes made through this cache to invalidate it
+        _invalidator = new ChainListener() {
+            @Override
+            public void chainPublished(ChainEvent event) throws Exception {
+                invalidate(new CacheKey(event.getType(), event.getUri()), event.getHeadHash());
+            }
+        };
+        Transports.subscribe(_transport, _invalidator);
+    }
+
+    public Transport getTransport() {
+        return _transport;
+    }
+
+    public ChainDictionary getL2Dictionary() {
+        return _l2Dictionary;
+    }
+
+    public synchronized long getL1Bytes() {
+        return _l1Bytes;
+    }
+
+    public synchronized long getL1Hits() {
+        return _l1Hits;
+    }
+
+    public synchronized long getL2Hits() {
+        return _l2Hits;
+    }
+
+    public synchronized long getMisses() {
+        return _misses;
+    }
+
+    public void close() {
+        Transports.unsubscribe(_transport, _invalidator);
+
+        // nothing reads the L2 segments once the cache is closed, so drop them along with L1 instead of leaving files
+        // behind that no one will ever map again
+        synchronized (this) {
+            _l1.clear();
+            _l1Bytes = 0;
+            _l2.clear();
+            _l2Index.clear();
+        }
+    }
+
+    @Override
+    public void putKey(ECKey key) throws Exception {
+        _transport.putKey(key);
+    }
+
+    @Override
+    public ECKey getKey(String pkt) throws Exception {
+        return _transport.getKey(pkt);
+    }
+
+    @Override
+    public void putIdChain(AbstractChain<IdBlock> chain) throws Exception {
+        _transport.putIdChain(chain);
+        cache(new CacheKey(ChainEvent.Type.ID_CHAIN, chain.getSubject()), chain);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public AbstractChain<IdBlock> getIdChain(AbstractValidator<IdBlock> validator, URI uri) throws Exception {
+        CacheKey key = new CacheKey(ChainEvent.Type.ID_CHAIN, uri);
+        AbstractChain<?> chain = lookup(key, validator);
+        if (null != chain) {
+            return (AbstractChain<IdBlock>) chain;
+        }
+        AbstractChain<IdBlock> fetched = _transport.getIdChain(validator, uri);
+        if (null != fetched) {
+            cache(key, fetched);
+        }
+        return fetched;
+    }
+
+    @Override
+    public void putAuthChain(AbstractChain<AuthBlock> chain) throws Exception {
+        _transport.putAuthChain(chain);
+        cache(new CacheKey(ChainEvent.Type.AUTH_CHAIN, chain.getSubject()), chain);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public AbstractChain<AuthBlock> getAuthChain(AbstractValidator<AuthBlock> validator, URI uri) throws Exception {
+        CacheKey key = new CacheKey(ChainEvent.Type.AUTH_CHAIN, uri);
+        AbstractChain<?> chain = lookup(key, validator);
+        if (null != chain) {
+            return (AbstractChain<AuthBlock>) chain;
+        }
+        AbstractChain<AuthBlock> fetched = _transport.getAuthChain(validator, uri);
+        if (null != fetched) {
+            cache(key, fetched);
+        }
+        return fetched;
+    }
+
+    @Override
+    public void commit(Transaction transaction) throws Exception {
+        Transports.commit(_transport, transaction);
+        for (AbstractChain<IdBlock> chain : transaction.getIdChains()) {
+            cache(new CacheKey(ChainEvent.Type.ID_CHAIN, chain.getSubject()), chain);
+        }
+        for (AbstractChain<AuthBlock> chain : transaction.getAuthChains()) {
+            cache(new CacheKey(ChainEvent.Type.AUTH_CHAIN, chain.getSubject()), chain);
+        }
+    }
+
+    @Override
+    public void subscribe(ChainListener listener) {
+        Transports.publisher(_transport).subscribe(listener);
+    }
+
+    @Override
+    public void subscribe(URI uri, ChainListener listener) {
+        Transports.publisher(_transport).subscribe(uri, listener);
+    }
+
+    @Override
+    public void unsubscribe(ChainListener listener) {
+        Transports.publisher(_transport).unsubscribe(listener);
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this) {
+            _l1.clear();
+            _l1Bytes = 0;
+            _l2.clear();
+            _l2Index.clear();
+        }
+        _transport.clear();
+    }
+
+    private AbstractChain<?> lookup(CacheKey key, AbstractValidator<?> validator) throws Exception {
+        ByteBuffer record;
+        L1Entry entry;
+        synchronized (this) {
+            entry = _l1.get(key);
+            if (null != entry) {
+                _l1Hits++;
+            }
+        }
+        if (null != entry) {
+            measure(key, entry);
+            return entry._chain;
+        }
+        synchronized (this) {
+            Long position = _l2Index.get(key);
+            record = (null != position) ? _l2.read(position) : null;
+            if (null == record) {
+                _l2Index.remove(key);
+                _misses++;
+                return null;
+            }
+            _l2Hits++;
+        }
+
+        // re-hydrate outside the lock straight from the mapped record, or from its decoding when L2 is
+        // dictionary-encoded; like any transport read the chain comes back unvalidated
+        if (null != _l2Dictionary) {
+            record = ByteBuffer.wrap(_l2Dictionary.decode(record));
+        }
+        AbstractChain<?> chain;
+        if (ChainEvent.Type.ID_CHAIN == key._type) {
+            @SuppressWarnings("unchecked")
+            AbstractValidator<IdBlock> idValidator = (AbstractValidator<IdBlock>) validator;
+            chain = new IdChain(idValidator, record, false);
+        } else {
+            @SuppressWarnings("unchecked")
+            AbstractValidator<AuthBlock> authValidator = (AbstractValidator<AuthBlock>) validator;
+            chain = new AuthChain(authValidator, record, false);
+        }
+        cache(key, chain);
+        return chain;
+    }
+
+    private void cache(CacheKey key, AbstractChain<?> chain) throws Exception {
+
+        // size chains by their serialized length, which the chain keeps incrementally and is what L2 stores anyway
+        Object head = chain.lastBlock();
+        long bytes = chain.serialize(false).length();
+        synchronized (this) {
+            L1Entry old = _l1.put(key, new L1Entry(chain, head, bytes));
+            if (null != old) {
+                _l1Bytes -= old._bytes;
+            }
+            _l1Bytes += bytes;
+            _l2Index.remove(key);
+            evict();
+        }
+    }
+
+    private void measure(CacheKey key, L1Entry entry) throws Exception {
+
+        // cached chains are the live instances and keep growing in place as blocks are appended to them, so an entry
+        // whose head has moved is re-sized before it can hold on to more of the budget than it was charged for; the
+        // chain is serialized outside the lock since appending to it may be what published the event that got here
+        Object head = entry._chain.lastBlock();
+        if (head == entry._head) {
+            return;
+        }
+        long bytes = entry._chain.serialize(false).length();
+        synchronized (this) {
+            if (entry != _l1.get(key)) {
+                return;
+            }
+            _l1Bytes += bytes - entry._bytes;
+            entry._bytes = bytes;
+            entry._head = head;
+            evict();
+        }
+    }
+
+    private void invalidate(CacheKey key, String headHash) throws Exception {
+        L1Entry entry;
+        synchronized (this) {
+            entry = _l1.get(key);
+            if (null == entry || !headHash.equals(entry._chain.getHeadHash())) {
+                if (null != entry) {
+                    _l1.remove(key);
+                    _l1Bytes -= entry._bytes;
+                }
+                _l2Index.remove(key);
+                return;
+            }
+        }
+
+        // the cached chain is the one that was just published, so it only needs its size brought up to date
+        measure(key, entry);
+    }
+
+    private void evict() throws Exception {
+
+        // least recently used chains move down to L2 until L1 fits its byte budget again, always keeping at least
+        // the entry just cached
+        Iterator<Map.Entry<CacheKey, L1Entry>> iterator = _l1.entrySet().iterator();
+        while (_l1Bytes > _l1MaxBytes && _l1.size() > 1) {
+            Map.Entry<CacheKey, L1Entry> eldest = iterator.next();
+            demote(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+            _l1Bytes -= eldest.getValue()._bytes;
+        }
+    }
+
+    private void demote(CacheKey key, L1Entry entry) throws Exception {
+        long oldest = _l2.oldestSegmentId();
+        long position = _l2.append((null != _l2Dictionary)
+                ? _l2Dictionary.encode(entry._chain)
+                : entry._chain.serialize(false).getBytes(StandardCharsets.UTF_8));
+        if (position >= 0) {
+            _l2Index.put(key, position);
+        }
+
+        // forget index entries whose segment was recycled to make room
+        if (oldest != _l2.oldestSegmentId()) {
+            oldest = _l2.oldestSegmentId();
+            Iterator<Long> positions = _l2Index.values().iterator();
+            while (positions.hasNext()) {
+                if ((positions.next() >>> 32) < oldest) {
+                    positions.remove();
+                }
+            }
+        }
+    }
+
+    private static final class CacheKey {
+        private final ChainEvent.Type _type;
+        private final URI _uri;
+
+        CacheKey(ChainEvent.Type type, URI uri) {
+            _type = type;
+            _uri = uri;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey that = (CacheKey) obj;
+            return _type == that._type && _uri.equals(that._uri);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * _type.hashCode() + _uri.hashCode();
+        }
+    }
+
+    private static final class L1Entry {
+        private final AbstractChain<?> _chain;
+        private Object _head;
+        private long _bytes;
+
+        L1Entry(AbstractChain<?> chain, Object head, long bytes) {
+            _chain = chain;
+            _head = head;
+            _bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractBlock;
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ChainDictionary {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 16;
+    private static final ObjectMapper _mapper = JsonMapperFactory.getInstance().getMapper();
+    private static final int MIN_VALUE_BYTES = 3;
+    private static final int MAX_VALUE_BYTES = 512;
+    private static final int RAW_BLOCK = 0;
+    private static final int JWS_BLOCK = 1;
+    private final int _maxEntries;
+    private final Map<String, Integer> _ids;
+    private final Map<String, Boolean> _candidates;
+    private volatile byte[][] _entries;
+    private int _size;
+    private long _rawBytes;
+    private long _encodedBytes;
+
+    // Blocks are stored with their JWS header and payload base64url-decoded back to JSON, and every JSON string value
+    // seen more than once (issuer and subject URIs, privilege names, claim names) is replaced by its number in a
+    // dictionary shared by the whole store; signatures are kept as raw bytes. Values seen only once, such as hashes and
+    // thumbprints, stay inline so they don't crowd the dictionary. Blocks whose parts wouldn't re-encode to exactly
+    // the same characters are kept verbatim, so decoding always gives back the bytes that were hashed and signed.
+    public ChainDictionary() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public ChainDictionary(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("dictionary must allow at least one entry");
+        }
+        _maxEntries = maxEntries;
+        _ids = new HashMap<>();
+        _candidates = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > _maxEntries;
+            }
+        };
+        _entries = new byte[16][];
+        _size = 0;
+    }
+
+    public synchronized int size() {
+        return _size;
+    }
+
+    public synchronized long getRawBytes() {
+        return _rawBytes;
+    }
+
+    public synchronized long getEncodedBytes() {
+        return _encodedBytes;
+    }
+
+    public synchronized byte[] encode(AbstractChain<?> chain) throws Exception {
+        if (null == chain) {
+            throw new IllegalArgumentException("chain must be non-null");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rawBytes = 2;
+        writeVarint(out, chain.getBlocks().size());
+        for (AbstractBlock block : chain.getBlocks()) {
+            String serialization = block.serialize();
+            rawBytes += serialization.length() + 3;
+            String[] parts = split(serialization);
+            if (null == parts) {
+                out.write(RAW_BLOCK);
+                writeBytes(out, serialization.getBytes(StandardCharsets.UTF_8));
+                continue;
+            }
+            out.write(JWS_BLOCK);
+            writeTokens(out, Base64.decodeBase64(parts[0]));
+            writeTokens(out, Base64.decodeBase64(parts[1]));
+            writeBytes(out, Base64.decodeBase64(parts[2]));
+        }
+        byte[] encoded = out.toByteArray();
+        _rawBytes += rawBytes;
+        _encodedBytes += encoded.length;
+        return encoded;
+    }
+
+    public byte[] decode(ByteBuffer record) throws Exception {
+        if (null == record) {
+            throw new IllegalArgumentException("record must be non-null");
+        }
+
+        // rebuild the compact JSON array of block serializations the chain parsers expect; entries are only ever
+        // appended and published through the volatile array, so decoding needs no lock
+        ByteBuffer in = record.duplicate();
+        byte[][] entries = _entries;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('[');
+        int blocks = readVarint(in);
+        for (int i = 0; i < blocks; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            int type = in.get();
+            if (RAW_BLOCK == type) {
+                out.write(_mapper.writeValueAsBytes(new String(readBytes(in), StandardCharsets.UTF_8)));
+                continue;
+            }
+            if (JWS_BLOCK != type) {
+                throw new IllegalArgumentException("unknown block encoding " + type);
+            }
+            out.write('"');
+            out.write(Base64.encodeBase64URLSafe(readTokens(in, entries)));
+            out.write('.');
+            out.write(Base64.encodeBase64URLSafe(readTokens(in, entries)));
+            out.write('.');
+            out.write(Base64.encodeBase64URLSafe(readBytes(in)));
+            out.write('"');
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    private static String[] split(String serialization) {
+        String[] parts = serialization.split("\\.", -1);
+        if (3 != parts.length) {
+            return null;
+        }
+
+        // only canonical unpadded base64url survives the round trip through raw bytes unchanged
+        for (String part : parts) {
+            if (!part.equals(Base64.encodeBase64URLSafeString(Base64.decodeBase64(part)))) {
+                return null;
+            }
+        }
+        return parts;
+    }
+
+    private void writeTokens(ByteArrayOutputStream out, byte[] json) {
+
+        // tokens alternate between literal runs and dictionary references, told apart by the low bit of their header
+        ByteArrayOutputStream tokens = new ByteArrayOutputStream();
+        int count = 0;
+        int literal = 0;
+        int i = 0;
+        while (i < json.length) {
+            if ('"' != json[i]) {
+                i++;
+                continue;
+            }
+            int start = i + 1;
+            int end = start;
+            while (end < json.length && '"' != json[end]) {
+                end += ('\\' == json[end]) ? 2 : 1;
+            }
+            if (end >= json.length) {
+                break;
+            }
+            int id = intern(Arrays.copyOfRange(json, start, end));
+            if (id >= 0) {
+                writeVarint(tokens, (start - literal) << 1);
+                tokens.write(json, literal, start - literal);
+                writeVarint(tokens, (id << 1) | 1);
+                count += 2;
+                literal = end;
+            }
+            i = end + 1;
+        }
+        if (literal < json.length) {
+            writeVarint(tokens, (json.length - literal) << 1);
+            tokens.write(json, literal, json.length - literal);
+            count++;
+        }
+        writeVarint(out, count);
+        byte[] bytes = tokens.toByteArray();
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static byte[] readTokens(ByteBuffer in, byte[][] entries) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int count = readVarint(in);
+        for (int i = 0; i < count; i++) {
+            int header = readVarint(in);
+            if (0 != (header & 1)) {
+                byte[] entry = entries[header >>> 1];
+                out.write(entry, 0, entry.length);
+            } else {
+                byte[] bytes = new byte[header >>> 1];
+                in.get(bytes);
+                out.write(bytes, 0, bytes.length);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private int intern(byte[] value) {
+        if (value.length < MIN_VALUE_BYTES || value.length > MAX_VALUE_BYTES) {
+            return -1;
+        }
+        String key = new String(value, StandardCharsets.ISO_8859_1);
+        Integer id = _ids.get(key);
+        if (null != id) {
+            return id;
+        }
+
+        // a value only earns a dictionary entry the second time it's seen; once full the dictionary stops growing and
+        // new values stay inline
+        if (null == _candidates.remove(key)) {
+            _candidates.put(key, Boolean.TRUE);
+            return -1;
+        }
+        if (_size >= _maxEntries) {
+            return -1;
+        }
+        byte[][] entries = _entries;
+        if (_size == entries.length) {
+            entries = Arrays.copyOf(entries, Math.min(2 * entries.length, _maxEntries));
+        }
+        entries[_size] = value;
+        _entries = entries;
+        _ids.put(key, _size);
+        return _size++;
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static byte[] readBytes(ByteBuffer in) {
+        byte[] bytes = new byte[readVarint(in)];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while (0 != (value & ~0x7f)) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (0 == (b & 0x80)) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.cisco.clique.sdk;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.SortedMap;
+
+public interface ChainDirectory {
+
+    Map<URI, String> getHeadHashes(ChainEvent.Type type) throws Exception;
+
+    String getNodeHash(ChainEvent.Type type, int depth, int level, int index) throws Exception;
+
+    SortedMap<URI, String> getLeafHeads(ChainEvent.Type type, int depth, int index) throws Exception;
+}
@@ -0,0 +1,55 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractBlock;
+import com.cisco.clique.sdk.chains.AbstractChain;
+
+import java.net.URI;
+import java.util.List;
+
+public class ChainEvent {
+
+    private Type _type;
+    private URI _uri;
+    private String _headHash;
+    private List<? extends AbstractBlock> _appendedBlocks;
+    private AbstractChain<?> _chain;
+
+    public ChainEvent(Type type, URI uri, String headHash, List<? extends AbstractBlock> appendedBlocks,
+                      AbstractChain<?> chain) {
+        _type = type;
+        _uri = uri;
+        _headHash = headHash;
+        _appendedBlocks = appendedBlocks;
+        _chain = chain;
+    }
+
+    public Type getType() {
+        return _type;
+    }
+
+    public URI getUri() {
+        return _uri;
+    }
+
+    public String getHeadHash() {
+        return _headHash;
+    }
+
+    public List<? extends AbstractBlock> getAppendedBlocks() {
+        return _appendedBlocks;
+    }
+
+    public AbstractChain<?> getChain() {
+        return _chain;
+    }
+
+    @Override
+    public String toString() {
+        return _type + " " + _uri + " @ " + _headHash + " (+" + _appendedBlocks.size() + ")";
+    }
+
+    public enum Type {
+        ID_CHAIN,
+        AUTH_CHAIN
+    }
+}
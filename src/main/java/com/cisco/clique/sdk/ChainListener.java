@@ -0,0 +1,6 @@
+package com.cisco.clique.sdk;
+
+public interface ChainListener {
+
+    void chainPublished(ChainEvent event) throws Exception;
+}
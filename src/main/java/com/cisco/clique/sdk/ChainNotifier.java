@@ -0,0 +1,118 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractBlock;
+import com.cisco.clique.sdk.chains.AbstractChain;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ChainNotifier {
+
+    private List<ChainListener> _listeners;
+    private Map<URI, List<ChainListener>> _uriListeners;
+    private Map<ChainEvent.Type, Map<URI, String>> _heads;
+
+    public ChainNotifier() {
+        _listeners = new CopyOnWriteArrayList<>();
+        _uriListeners = new ConcurrentHashMap<>();
+        _heads = new ConcurrentHashMap<>();
+        for (ChainEvent.Type type : ChainEvent.Type.values()) {
+            _heads.put(type, new ConcurrentHashMap<URI, String>());
+        }
+    }
+
+    public void subscribe(ChainListener listener) {
+        if (null == listener) {
+            throw new IllegalArgumentException("listener must be non-null");
+        }
+        _listeners.add(listener);
+    }
+
+    public synchronized void subscribe(URI uri, ChainListener listener) {
+        if (null == uri || null == listener) {
+            throw new IllegalArgumentException("uri and listener must both be non-null");
+        }
+        List<ChainListener> listeners = _uriListeners.get(uri);
+        if (null == listeners) {
+            listeners = new CopyOnWriteArrayList<>();
+            _uriListeners.put(uri, listeners);
+        }
+        listeners.add(listener);
+    }
+
+    public synchronized void unsubscribe(ChainListener listener) {
+        _listeners.remove(listener);
+        for (List<ChainListener> listeners : _uriListeners.values()) {
+            listeners.remove(listener);
+        }
+    }
+
+    public boolean hasListeners() {
+        return !_listeners.isEmpty() || !_uriListeners.isEmpty();
+    }
+
+    public void published(ChainEvent.Type type, AbstractChain<?> chain) throws Exception {
+        URI uri = chain.getSubject();
+        List<? extends AbstractBlock> blocks = chain.getBlocks();
+        if (null == uri || blocks.isEmpty()) {
+            return;
+        }
+
+        // find where the previously published head sits so only the blocks after it are reported
+        String headHash = blocks.get(blocks.size() - 1).getHash();
+        String previous = _heads.get(type).put(uri, headHash);
+        if (headHash.equals(previous)) {
+            return;
+        }
+        int start = 0;
+        if (null != previous) {
+            for (int i = blocks.size() - 2; i >= 0; i--) {
+                if (previous.equals(blocks.get(i).getHash())) {
+                    start = i + 1;
+                    break;
+                }
+            }
+        }
+        if (!hasListeners()) {
+            return;
+        }
+        ChainEvent event = new ChainEvent(type, uri, headHash, blocks.subList(start, blocks.size()), chain);
+        Exception failure = null;
+        for (ChainListener listener : _listeners) {
+            failure = dispatch(listener, event, failure);
+        }
+        List<ChainListener> listeners = _uriListeners.get(uri);
+        if (null != listeners) {
+            for (ChainListener listener : listeners) {
+                failure = dispatch(listener, event, failure);
+            }
+        }
+
+        // the chain is published by now, so a failing listener can't undo that; it's reported to the publisher once
+        // every other listener has had the event
+        if (null != failure) {
+            throw failure;
+        }
+    }
+
+    public void clear() {
+        for (Map<URI, String> heads : _heads.values()) {
+            heads.clear();
+        }
+    }
+
+    private static Exception dispatch(ChainListener listener, ChainEvent event, Exception failure) {
+        try {
+            listener.chainPublished(event);
+        } catch (Exception e) {
+            if (null == failure) {
+                return e;
+            }
+            failure.addSuppressed(e);
+        }
+        return failure;
+    }
+}
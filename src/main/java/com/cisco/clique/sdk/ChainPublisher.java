@@ -0,0 +1,12 @@
+package com.cisco.clique.sdk;
+
+import java.net.URI;
+
+public interface ChainPublisher {
+
+    void subscribe(ChainListener listener);
+
+    void subscribe(URI uri, ChainListener listener);
+
+    void unsubscribe(ChainListener listener);
+}
@@ -1,20 +1,40 @@
 package com.cisco.clique.sdk;
 
 import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.AuthBlock;
 import com.cisco.clique.sdk.chains.AuthChain;
+import com.cisco.clique.sdk.chains.IdBlock;
 import com.cisco.clique.sdk.chains.IdChain;
 import com.cisco.clique.sdk.validation.AuthBlockValidator;
+import com.cisco.clique.sdk.validation.GroupIndex;
 import com.cisco.clique.sdk.validation.IdBlockValidator;
+import com.cisco.clique.sdk.validation.ValidationScheduler;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 
 import java.net.URI;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Clique {
 
     public Transport _transport;
     private Set<String> _trustRoots;
+    private ExecutorService _prefetchExecutor;
+    private ValidationScheduler _validationScheduler;
+    private GroupIndex _groupIndex;
+    private Clique _parent;
 
     public Clique() {
         _transport = new MemoryTransport();
@@ -29,6 +49,7 @@ public class Clique {
     public Transport setTransport(Transport transport) {
         Transport old = _transport;
         _transport = transport;
+        resetGroupIndex();
         return old;
     }
 
@@ -39,6 +60,7 @@ public class Clique {
     public Set<String> setTrustRoots(Set<String> trustRoots) {
         Set<String> old = _trustRoots;
         _trustRoots = trustRoots;
+        resetGroupIndex();
         return old;
     }
 
@@ -46,6 +68,80 @@ public class Clique {
         return _trustRoots;
     }
 
+    public synchronized GroupIndex getGroupIndex() {
+
+        // group memberships are cached against the committed transport, never against an open transaction
+        if (null != _parent) {
+            return _parent.getGroupIndex();
+        }
+        if (null == _groupIndex) {
+            Transport transport = _transport;
+            while (transport instanceof Transaction) {
+                transport = ((Transaction) transport).getTransport();
+            }
+            _groupIndex = new GroupIndex(transport, _trustRoots);
+        }
+        return _groupIndex;
+    }
+
+    private synchronized void resetGroupIndex() {
+        if (null != _groupIndex) {
+            _groupIndex.close();
+            _groupIndex = null;
+        }
+    }
+
+    public ExecutorService setPrefetchExecutor(ExecutorService executor) {
+        ExecutorService old = _prefetchExecutor;
+        _prefetchExecutor = executor;
+        return old;
+    }
+
+    public ExecutorService getPrefetchExecutor() {
+        return _prefetchExecutor;
+    }
+
+    public ValidationScheduler setValidationScheduler(ValidationScheduler scheduler) {
+        ValidationScheduler old = _validationScheduler;
+        _validationScheduler = scheduler;
+        return old;
+    }
+
+    public ValidationScheduler getValidationScheduler() {
+        return _validationScheduler;
+    }
+
+    public Clique beginTransaction() {
+
+        // the transaction gets a clique of its own, so only identities and policies created or fetched through that
+        // view write to it; this clique and everything already obtained from it keep publishing directly
+        Clique view = new Clique(new Transaction(_transport), _trustRoots);
+        view._prefetchExecutor = _prefetchExecutor;
+        view._validationScheduler = _validationScheduler;
+        view._parent = this;
+        return view;
+    }
+
+    public Transaction getTransaction() {
+        return (_transport instanceof Transaction) ? (Transaction) _transport : null;
+    }
+
+    public void commit() throws Exception {
+        transaction().commit();
+    }
+
+    public void rollback() {
+        transaction().rollback();
+    }
+
+    private Transaction transaction() {
+        Transaction transaction = getTransaction();
+        if (null == transaction) {
+            throw new IllegalStateException("this clique is not a transaction view");
+        }
+        return transaction;
+    }
+
     public Identity createIdentity(URI acct) throws Exception {
         if (null == acct) {
             throw new IllegalArgumentException("acct URI cannot be null");
@@ -69,6 +165,116 @@ public class Clique {
         return new Identity(new IdBlockValidator(_transport, _trustRoots), mint, acct);
     }
 
+    public Map<URI, ProvisioningResult> createIdentities(Identity mint, Collection<URI> accts,
+                                                         ExecutorService executor, int batchSize) throws Exception {
+        if (null == mint || null == accts || null == executor) {
+            throw new IllegalArgumentException("mint, acct URIs and executor must all be non-null");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be positive");
+        }
+
+        // resolve and validate the mint once, up front, rather than once per identity
+        AbstractChain<IdBlock> mintChain = _transport.getIdChain(
+                new IdBlockValidator(_transport, _trustRoots), mint.getAcct());
+        if (null == mintChain) {
+            throw new IllegalArgumentException("an identity chain could not be found for " + mint.getAcct());
+        }
+        mintChain.validate();
+
+        // look up which accounts already exist in one bulk pass before any batch is built, then each batch generates,
+        // signs and validates its identities and publishes them in a single commit
+        List<URI> unique = new ArrayList<>(new LinkedHashSet<>(accts));
+        Set<URI> existing = findIdentities(unique, executor);
+        List<Future<List<ProvisioningResult>>> futures = new ArrayList<>();
+        for (int i = 0; i < unique.size(); i += batchSize) {
+            futures.add(executor.submit(new ProvisioningBatch(
+                    mint, unique.subList(i, Math.min(i + batchSize, unique.size())), existing)));
+        }
+        Map<URI, ProvisioningResult> results = new LinkedHashMap<>();
+        for (Future<List<ProvisioningResult>> future : futures) {
+            try {
+                for (ProvisioningResult result : future.get()) {
+                    results.put(result.getAcct(), result);
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    private Set<URI> findIdentities(List<URI> accts, ExecutorService executor) throws Exception {
+
+        // a sharded transport fans the lookups out to its shards itself, anything else gets them issued in parallel
+        if (_transport instanceof ShardedTransport) {
+            return new HashSet<>(((ShardedTransport) _transport).getIdChains(accts, _trustRoots).keySet());
+        }
+        List<Callable<URI>> lookups = new ArrayList<>();
+        for (final URI acct : accts) {
+            lookups.add(new Callable<URI>() {
+                @Override
+                public URI call() throws Exception {
+                    return (null != _transport.getIdChain(new IdBlockValidator(_transport, _trustRoots), acct))
+                            ? acct : null;
+                }
+            });
+        }
+        Set<URI> existing = new HashSet<>();
+        for (Future<URI> future : executor.invokeAll(lookups)) {
+            try {
+                URI acct = future.get();
+                if (null != acct) {
+                    existing.add(acct);
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return existing;
+    }
+
+    public Map<URI, Exception> preload(Collection<URI> identities, Collection<URI> resources,
+                                       ExecutorService executor, PreloadListener listener) throws Exception {
+        if (null == identities || null == resources || null == executor) {
+            throw new IllegalArgumentException("identity URIs, resource URIs and executor must all be non-null");
+        }
+        Set<URI> accts = new LinkedHashSet<>(identities);
+        Set<URI> policies = new LinkedHashSet<>(resources);
+        AtomicInteger completed = new AtomicInteger();
+        int total = accts.size() + policies.size();
+
+        // identities go first so that the policies' issuer chains are already validated when the policies are
+        Map<URI, Exception> failures = new LinkedHashMap<>();
+        List<PreloadTask> tasks = new ArrayList<>();
+        for (URI acct : accts) {
+            tasks.add(new PreloadTask(acct, false, completed, total, listener));
+        }
+        collectFailures(executor.invokeAll(tasks), failures);
+        tasks.clear();
+        for (URI resource : policies) {
+            tasks.add(new PreloadTask(resource, true, completed, total, listener));
+        }
+        collectFailures(executor.invokeAll(tasks), failures);
+        return failures;
+    }
+
+    private static void collectFailures(List<Future<Map.Entry<URI, Exception>>> futures,
+                                        Map<URI, Exception> failures) throws Exception {
+        for (Future<Map.Entry<URI, Exception>> future : futures) {
+            Map.Entry<URI, Exception> outcome = future.get();
+            if (null != outcome.getValue()) {
+                failures.put(outcome.getKey(), outcome.getValue());
+            }
+        }
+    }
+
     public Identity deserializeIdentity(String serialization) throws Exception {
         if (null == serialization) {
             throw new IllegalArgumentException("serialization must be non-null");
@@ -80,15 +286,24 @@ public class Clique {
         if (null == acct) {
             throw new IllegalArgumentException("the acct URI must be non-null");
         }
-        AbstractChain chain = _transport.getIdChain(new IdBlockValidator(_transport, _trustRoots), acct);
-        if (null == chain) {
-            throw new IllegalArgumentException("no published identity chain found for " + acct.toString());
-        }
-        if (!(chain instanceof IdChain)) {
-            throw new IllegalArgumentException(acct.toString() + " is published but not as an identity chain");
+
+        // every read the validation makes goes through one snapshot, so it sees a single consistent version of the
+        // store even while keys are rotated and chains updated around it
+        Snapshot snapshot = Transports.snapshot(_transport);
+        try {
+            Prefetcher prefetcher = newPrefetcher(snapshot);
+            Transport transport = (null != prefetcher) ? prefetcher : snapshot;
+            AbstractChain<IdBlock> chain = transport.getIdChain(new IdBlockValidator(transport, _trustRoots), acct);
+            if (null == chain) {
+                throw new IllegalArgumentException("no published identity chain found for " + acct.toString());
+            }
+            if (!(chain instanceof IdChain)) {
+                throw new IllegalArgumentException(acct.toString() + " is published but not as an identity chain");
+            }
+            return new PublicIdentity((IdChain) validate(prefetcher, chain));
+        } finally {
+            snapshot.release();
         }
-        chain.validate();
-        return new PublicIdentity((IdChain) chain);
     }
 
     public PublicIdentity deserializePublicIdentity(String serialization) throws Exception {
@@ -102,36 +317,176 @@ public class Clique {
         if (null == issuer || null == resource) {
             throw new IllegalArgumentException("the issuer and resource URI must both be non-null");
         }
-        return new Policy(
-                new AuthChain(new AuthBlockValidator(_transport, _trustRoots))).new PolicyBuilder(issuer, resource);
+        AuthBlockValidator validator = new AuthBlockValidator(_transport, _trustRoots, getGroupIndex());
+        return new Policy(new AuthChain(validator)).new PolicyBuilder(issuer, resource);
     }
 
     public Policy deserializePolicy(String serialization) throws Exception {
         if (null == serialization) {
             throw new IllegalArgumentException("serialization must be non-null");
         }
-        return new Policy(new AuthBlockValidator(_transport, _trustRoots), serialization);
+        return new Policy(new AuthBlockValidator(_transport, _trustRoots, getGroupIndex()), serialization);
     }
 
     public Policy deserializePolicy(ArrayNode array) throws Exception {
         if (null == array) {
             throw new IllegalArgumentException("json array must be non-null");
         }
-        return new Policy(new AuthBlockValidator(_transport, _trustRoots), array);
+        return new Policy(new AuthBlockValidator(_transport, _trustRoots, getGroupIndex()), array);
     }
 
     public Policy getPolicy(URI resource) throws Exception {
         if (null == resource) {
             throw new IllegalArgumentException("the resource URI must be non-null");
         }
-        AbstractChain chain = _transport.getAuthChain(new AuthBlockValidator(_transport, _trustRoots), resource);
-        if (null == chain) {
-            throw new IllegalArgumentException("no published auth chain found for " + resource.toString());
+        Snapshot snapshot = Transports.snapshot(_transport);
+        try {
+            Prefetcher prefetcher = newPrefetcher(snapshot);
+            Transport transport = (null != prefetcher) ? prefetcher : snapshot;
+            AbstractChain<AuthBlock> chain = transport.getAuthChain(
+                    new AuthBlockValidator(transport, _trustRoots, getGroupIndex()), resource);
+            if (null == chain) {
+                throw new IllegalArgumentException("no published auth chain found for " + resource.toString());
+            }
+            if (!(chain instanceof AuthChain)) {
+                throw new IllegalArgumentException(resource.toString() + "is published but not as an auth chain");
+            }
+            return new Policy((AuthChain) validate(prefetcher, chain));
+        } finally {
+            snapshot.release();
         }
-        if (!(chain instanceof AuthChain)) {
-            throw new IllegalArgumentException(resource.toString() + "is published but not as an auth chain");
+    }
+
+    private Prefetcher newPrefetcher(Transport transport) {
+        return (null != _prefetchExecutor) ? new Prefetcher(transport, _trustRoots, _prefetchExecutor) : null;
+    }
+
+    private AbstractChain<?> validate(final Prefetcher prefetcher, final AbstractChain<?> chain) throws Exception {
+        ValidationScheduler scheduler = _validationScheduler;
+        try {
+            if (null == scheduler) {
+                prefetchAndValidate(prefetcher, chain);
+                return chain;
+            }
+
+            // concurrent requests for the same chain head share one bounded, queued validation instead of each
+            // validating its own copy; whichever copy it ran on is what every one of them gets back
+            return scheduler.validate(chain, new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    prefetchAndValidate(prefetcher, chain);
+                    return null;
+                }
+            });
+        } finally {
+
+            // let everything bound to the prefetcher go back to reading the transport directly
+            if (null != prefetcher) {
+                prefetcher.release();
+            }
+        }
+    }
+
+    private static void prefetchAndValidate(Prefetcher prefetcher, AbstractChain<?> chain) throws Exception {
+
+        // fetch the chain's whole dependency closure up front and in parallel instead of one lookup at a time
+        // during validation
+        if (null != prefetcher) {
+            prefetcher.prefetch(chain);
         }
         chain.validate();
-        return new Policy((AuthChain) chain);
+    }
+
+    private class PreloadTask implements Callable<Map.Entry<URI, Exception>> {
+        private URI _uri;
+        private boolean _resource;
+        private AtomicInteger _completed;
+        private int _total;
+        private PreloadListener _listener;
+
+        PreloadTask(URI uri, boolean resource, AtomicInteger completed, int total, PreloadListener listener) {
+            _uri = uri;
+            _resource = resource;
+            _completed = completed;
+            _total = total;
+            _listener = listener;
+        }
+
+        @Override
+        public Map.Entry<URI, Exception> call() {
+
+            // fetching through the regular getters validates the chain and leaves it (and its keys) in whatever
+            // caches the transport and the verifier keep
+            Exception error = null;
+            try {
+                if (_resource) {
+                    getPolicy(_uri);
+                } else {
+                    getPublicIdentity(_uri);
+                }
+            } catch (Exception e) {
+                error = e;
+            }
+            int completed = _completed.incrementAndGet();
+            if (null != _listener) {
+
+                // a failing listener doesn't stop the preload; its failure comes back with the chain's outcome
+                try {
+                    _listener.preloaded(_uri, error, completed, _total);
+                } catch (RuntimeException e) {
+                    if (null == error) {
+                        error = e;
+                    } else {
+                        error.addSuppressed(e);
+                    }
+                }
+            }
+            return new AbstractMap.SimpleImmutableEntry<>(_uri, error);
+        }
+    }
+
+    private class ProvisioningBatch implements Callable<List<ProvisioningResult>> {
+        private Identity _mint;
+        private List<URI> _accts;
+        private Set<URI> _existing;
+
+        ProvisioningBatch(Identity mint, List<URI> accts, Set<URI> existing) {
+            _mint = mint;
+            _accts = accts;
+            _existing = existing;
+        }
+
+        @Override
+        public List<ProvisioningResult> call() {
+            Transaction transaction = new Transaction(_transport);
+            List<ProvisioningResult> results = new ArrayList<>();
+            for (URI acct : _accts) {
+                try {
+                    if (_existing.contains(acct)) {
+                        results.add(new ProvisioningResult(
+                                acct, ProvisioningResult.Status.ALREADY_EXISTS, null, null));
+                        continue;
+                    }
+                    Identity identity = new Identity(new IdBlockValidator(transaction, _trustRoots), _mint, acct);
+                    results.add(new ProvisioningResult(acct, ProvisioningResult.Status.CREATED, identity, null));
+                } catch (Exception e) {
+                    results.add(new ProvisioningResult(acct, ProvisioningResult.Status.FAILED, null, e));
+                }
+            }
+
+            // if the batch can't be published then none of the identities it created exist
+            try {
+                transaction.commit();
+            } catch (Exception e) {
+                for (int i = 0; i < results.size(); i++) {
+                    ProvisioningResult result = results.get(i);
+                    if (result.getStatus() == ProvisioningResult.Status.CREATED) {
+                        results.set(i, new ProvisioningResult(
+                                result.getAcct(), ProvisioningResult.Status.FAILED, null, e));
+                    }
+                }
+            }
+            return results;
+        }
     }
 }
@@ -0,0 +1,257 @@
+package com.cisco.clique.sdk;
+
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.util.Base64URL;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+public class CompactKeyStore extends AbstractMap<String, ECKey> {
+
+    private static final int DIGEST_BYTES = 32;
+    private static final int COORDINATE_BYTES = 32;
+    private static final int X_OFFSET = DIGEST_BYTES;
+    private static final int Y_OFFSET = X_OFFSET + COORDINATE_BYTES;
+    private static final int LENGTHS_OFFSET = Y_OFFSET + COORDINATE_BYTES;
+    private static final int RECORD_BYTES = LENGTHS_OFFSET + 2;
+    private static final int SLAB_SHIFT = 14;
+    private static final int RECORDS_PER_SLAB = 1 << SLAB_SHIFT;
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+    private List<ByteBuffer> _slabs;
+    private int[] _index;
+    private int _records;
+    private Map<String, ECKey> _overflow;
+
+    // P-256 public keys live as fixed-size records (thumbprint digest, x, y, coordinate lengths) in direct buffers,
+    // found through an open-addressing index of record numbers; ECKey objects only exist for the duration of a lookup.
+    // Keys that can't be rebuilt exactly from their coordinates stay on the heap as they are. Writers must be
+    // serialized externally (MemoryTransport's write lock does this), readers only use absolute buffer reads.
+    public CompactKeyStore() {
+        _slabs = new ArrayList<>();
+        _index = new int[INITIAL_INDEX_CAPACITY];
+        _records = 0;
+        _overflow = new HashMap<>();
+    }
+
+    @Override
+    public ECKey get(Object pkt) {
+        if (!(pkt instanceof String)) {
+            return null;
+        }
+        byte[] digest = decodeThumbprint((String) pkt);
+        if (null != digest) {
+            int record = find(digest);
+            if (record >= 0) {
+                return materialize(record);
+            }
+        }
+        return _overflow.get(pkt);
+    }
+
+    @Override
+    public boolean containsKey(Object pkt) {
+        return null != get(pkt);
+    }
+
+    @Override
+    public ECKey put(String pkt, ECKey key) {
+        if (null == pkt || null == key) {
+            throw new IllegalArgumentException("thumbprint and key must both be non-null");
+        }
+        ECKey publicKey = key.toPublicJWK();
+        byte[] digest = decodeThumbprint(pkt);
+        byte[] x = publicKey.getX().decode();
+        byte[] y = publicKey.getY().decode();
+        if (null == digest || !isCompactable(publicKey, x, y)) {
+            return _overflow.put(pkt, publicKey);
+        }
+
+        // a thumbprint names exactly one key, so a repeated put has nothing to update
+        int record = find(digest);
+        if (record >= 0) {
+            return materialize(record);
+        }
+        record = _records++;
+        if (0 == (record & (RECORDS_PER_SLAB - 1))) {
+            _slabs.add(ByteBuffer.allocateDirect(RECORDS_PER_SLAB * RECORD_BYTES));
+        }
+        ByteBuffer slab = _slabs.get(record >>> SLAB_SHIFT);
+        int offset = (record & (RECORDS_PER_SLAB - 1)) * RECORD_BYTES;
+        write(slab, offset, digest);
+        write(slab, offset + X_OFFSET, x);
+        write(slab, offset + Y_OFFSET, y);
+        slab.put(offset + LENGTHS_OFFSET, (byte) x.length);
+        slab.put(offset + LENGTHS_OFFSET + 1, (byte) y.length);
+
+        if (2 * _records > _index.length) {
+            rehash(2 * _index.length, record);
+        }
+        insert(digest, record);
+        return null;
+    }
+
+    @Override
+    public void clear() {
+
+        // direct buffers are released once unreachable
+        _slabs = new ArrayList<>();
+        _index = new int[INITIAL_INDEX_CAPACITY];
+        _records = 0;
+        _overflow.clear();
+    }
+
+    @Override
+    public int size() {
+        return _records + _overflow.size();
+    }
+
+    public int compactSize() {
+        return _records;
+    }
+
+    @Override
+    public Set<Entry<String, ECKey>> entrySet() {
+        return new AbstractSet<Entry<String, ECKey>>() {
+            @Override
+            public Iterator<Entry<String, ECKey>> iterator() {
+                final int records = _records;
+                final Iterator<Entry<String, ECKey>> overflow = _overflow.entrySet().iterator();
+                return new Iterator<Entry<String, ECKey>>() {
+                    private int _next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return _next < records || overflow.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, ECKey> next() {
+                        if (_next < records) {
+                            int record = _next++;
+                            byte[] digest = read(slab(record), offset(record), DIGEST_BYTES);
+                            return new SimpleImmutableEntry<>(
+                                    Base64URL.encode(digest).toString(), materialize(record));
+                        }
+                        if (overflow.hasNext()) {
+                            return overflow.next();
+                        }
+                        throw new NoSuchElementException();
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException("keys can't be removed individually");
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return CompactKeyStore.this.size();
+            }
+        };
+    }
+
+    private static boolean isCompactable(ECKey key, byte[] x, byte[] y) {
+        return ECKey.Curve.P_256.equals(key.getCurve())
+                && x.length <= COORDINATE_BYTES
+                && y.length <= COORDINATE_BYTES
+                && null == key.getKeyID()
+                && null == key.getKeyUse()
+                && null == key.getKeyOperations()
+                && null == key.getAlgorithm()
+                && null == key.getX509CertURL()
+                && null == key.getX509CertThumbprint()
+                && null == key.getX509CertChain();
+    }
+
+    private static byte[] decodeThumbprint(String pkt) {
+        byte[] digest = new Base64URL(pkt).decode();
+        return (DIGEST_BYTES == digest.length) ? digest : null;
+    }
+
+    private ECKey materialize(int record) {
+        ByteBuffer slab = slab(record);
+        int offset = offset(record);
+
+        // coordinates keep their original encoded length so the rebuilt key has the same thumbprint
+        byte[] x = read(slab, offset + X_OFFSET, slab.get(offset + LENGTHS_OFFSET));
+        byte[] y = read(slab, offset + Y_OFFSET, slab.get(offset + LENGTHS_OFFSET + 1));
+        return new ECKey.Builder(ECKey.Curve.P_256, Base64URL.encode(x), Base64URL.encode(y)).build();
+    }
+
+    private int find(byte[] digest) {
+        int mask = _index.length - 1;
+        for (int slot = hash(digest) & mask; 0 != _index[slot]; slot = (slot + 1) & mask) {
+            int record = _index[slot] - 1;
+            if (matches(record, digest)) {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(byte[] digest, int record) {
+        int mask = _index.length - 1;
+        int slot = hash(digest) & mask;
+        while (0 != _index[slot]) {
+            slot = (slot + 1) & mask;
+        }
+        _index[slot] = record + 1;
+    }
+
+    private void rehash(int capacity, int records) {
+        _index = new int[capacity];
+        for (int record = 0; record < records; record++) {
+            insert(read(slab(record), offset(record), DIGEST_BYTES), record);
+        }
+    }
+
+    private boolean matches(int record, byte[] digest) {
+        ByteBuffer slab = slab(record);
+        int offset = offset(record);
+        for (int i = 0; i < DIGEST_BYTES; i++) {
+            if (slab.get(offset + i) != digest[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ByteBuffer slab(int record) {
+        return _slabs.get(record >>> SLAB_SHIFT);
+    }
+
+    private static int offset(int record) {
+        return (record & (RECORDS_PER_SLAB - 1)) * RECORD_BYTES;
+    }
+
+    private static int hash(byte[] digest) {
+
+        // the thumbprint is a SHA-256 digest, so its leading bytes are already uniformly distributed
+        return ((digest[0] & 0xff) << 24) | ((digest[1] & 0xff) << 16)
+                | ((digest[2] & 0xff) << 8) | (digest[3] & 0xff);
+    }
+
+    private static void write(ByteBuffer slab, int offset, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            slab.put(offset + i, bytes[i]);
+        }
+    }
+
+    private static byte[] read(ByteBuffer slab, int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = slab.get(offset + i);
+        }
+        return bytes;
+    }
+}
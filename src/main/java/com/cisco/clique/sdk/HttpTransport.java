@@ -0,0 +1,236 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractBlock;
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.AuthBlock;
+import com.cisco.clique.sdk.chains.AuthChain;
+import com.cisco.clique.sdk.chains.IdBlock;
+import com.cisco.clique.sdk.chains.IdChain;
+import com.cisco.clique.sdk.validation.AbstractValidator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.nimbusds.jose.jwk.ECKey;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class HttpTransport implements Transport, BatchTransport, ChainPublisher {
+
+    static final String KEYS_PATH = "keys";
+    static final String ID_CHAINS_PATH = "idchains";
+    static final String AUTH_CHAINS_PATH = "authchains";
+    static final String COMMIT_PATH = "commit";
+    static final int GZIP_THRESHOLD = 512;
+    private static final ObjectMapper _mapper = JsonMapperFactory.getInstance().getMapper();
+    private static final ObjectReader _treeReader = JsonMapperFactory.getInstance().getTreeReader();
+    private static final ObjectWriter _writer = JsonMapperFactory.getInstance().getWriter();
+    private static final int DEFAULT_MAX_IN_FLIGHT = 16;
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = 30000;
+    private String _endpoint;
+    private Semaphore _inFlight;
+    private int _connectTimeoutMillis;
+    private int _readTimeoutMillis;
+    private ChainNotifier _notifier;
+
+    public HttpTransport(URI endpoint) {
+        this(endpoint, DEFAULT_MAX_IN_FLIGHT, DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    public HttpTransport(URI endpoint, int maxInFlight, int connectTimeoutMillis, int readTimeoutMillis) {
+        if (null == endpoint) {
+            throw new IllegalArgumentException("endpoint must be non-null");
+        }
+        if (maxInFlight < 1 || connectTimeoutMillis < 1 || readTimeoutMillis < 1) {
+            throw new IllegalArgumentException("in-flight limit and timeouts must be positive");
+        }
+        String endpointString = endpoint.toString();
+        _endpoint = endpointString.endsWith("/") ? endpointString : endpointString + "/";
+        _inFlight = new Semaphore(maxInFlight, true);
+        _connectTimeoutMillis = connectTimeoutMillis;
+        _readTimeoutMillis = readTimeoutMillis;
+        _notifier = new ChainNotifier();
+    }
+
+    @Override
+    public void putKey(ECKey key) throws Exception {
+        send("PUT", KEYS_PATH, key.toPublicJWK().toJSONString());
+    }
+
+    @Override
+    public ECKey getKey(String pkt) throws Exception {
+        String body = send("GET", KEYS_PATH + "/" + encode(pkt), null);
+        return (null != body) ? ECKey.parse(body) : null;
+    }
+
+    @Override
+    public void putIdChain(AbstractChain<IdBlock> chain) throws Exception {
+        send("PUT", ID_CHAINS_PATH, chain.serialize(false));
+        _notifier.published(ChainEvent.Type.ID_CHAIN, chain);
+    }
+
+    @Override
+    public AbstractChain<IdBlock> getIdChain(AbstractValidator<IdBlock> validator, URI uri) throws Exception {
+        byte[] body = exchange("GET", ID_CHAINS_PATH + "/" + encode(uri.toString()), null);
+
+        // the chain is handed back unvalidated, validating it is up to the caller (as with any other transport); its
+        // blocks are sliced out of the response bytes without building a JSON tree or strings first
+        return (null != body) ? new IdChain(validator, ByteBuffer.wrap(body), false) : null;
+    }
+
+    @Override
+    public void putAuthChain(AbstractChain<AuthBlock> chain) throws Exception {
+        send("PUT", AUTH_CHAINS_PATH, chain.serialize(false));
+        _notifier.published(ChainEvent.Type.AUTH_CHAIN, chain);
+    }
+
+    @Override
+    public AbstractChain<AuthBlock> getAuthChain(AbstractValidator<AuthBlock> validator, URI uri) throws Exception {
+        byte[] body = exchange("GET", AUTH_CHAINS_PATH + "/" + encode(uri.toString()), null);
+        return (null != body) ? new AuthChain(validator, ByteBuffer.wrap(body), false) : null;
+    }
+
+    @Override
+    public void commit(Transaction transaction) throws Exception {
+        ObjectNode batch = _mapper.createObjectNode();
+        ArrayNode keys = batch.putArray("keys");
+        for (ECKey key : transaction.getKeys()) {
+            keys.add(_treeReader.readTree(key.toPublicJWK().toJSONString()));
+        }
+        ArrayNode idChains = batch.putArray("idChains");
+        for (AbstractChain<IdBlock> chain : transaction.getIdChains()) {
+            idChains.add(toArray(chain));
+        }
+        ArrayNode authChains = batch.putArray("authChains");
+        for (AbstractChain<AuthBlock> chain : transaction.getAuthChains()) {
+            authChains.add(toArray(chain));
+        }
+        send("POST", COMMIT_PATH, _writer.writeValueAsString(batch));
+        for (AbstractChain<IdBlock> chain : transaction.getIdChains()) {
+            _notifier.published(ChainEvent.Type.ID_CHAIN, chain);
+        }
+        for (AbstractChain<AuthBlock> chain : transaction.getAuthChains()) {
+            _notifier.published(ChainEvent.Type.AUTH_CHAIN, chain);
+        }
+    }
+
+    @Override
+    public void subscribe(ChainListener listener) {
+
+        // there's no push channel from the server, so only publications made through this client are reported
+        _notifier.subscribe(listener);
+    }
+
+    @Override
+    public void subscribe(URI uri, ChainListener listener) {
+        _notifier.subscribe(uri, listener);
+    }
+
+    @Override
+    public void unsubscribe(ChainListener listener) {
+        _notifier.unsubscribe(listener);
+    }
+
+    @Override
+    public void clear() {
+        try {
+            send("DELETE", "", null);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("failed to clear remote transport", e);
+        }
+        _notifier.clear();
+    }
+
+    private String send(String method, String path, String body) throws Exception {
+        byte[] response = exchange(method, path, body);
+        return (null != response) ? new String(response, StandardCharsets.UTF_8) : null;
+    }
+
+    private byte[] exchange(String method, String path, String body) throws Exception {
+        _inFlight.acquire();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(_endpoint + path).openConnection();
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(_connectTimeoutMillis);
+            connection.setReadTimeout(_readTimeoutMillis);
+            connection.setUseCaches(false);
+            connection.setRequestProperty("Accept", "application/json");
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            if (null != body) {
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                if (bytes.length >= GZIP_THRESHOLD) {
+                    connection.setRequestProperty("Content-Encoding", "gzip");
+                    bytes = gzip(bytes);
+                }
+                connection.setFixedLengthStreamingMode(bytes.length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(bytes);
+                }
+            }
+
+            // always drain the response (or error) stream so the connection can go back to the keep-alive pool
+            int status = connection.getResponseCode();
+            InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream();
+            byte[] response = (null != in) ? readFully(in, "gzip".equals(connection.getContentEncoding())) : null;
+            if (HttpURLConnection.HTTP_NOT_FOUND == status) {
+                return null;
+            }
+            if (status < 200 || status >= 300) {
+                throw new IOException(method + " " + _endpoint + path + " failed with status " + status);
+            }
+            return (null != response && response.length > 0) ? response : null;
+        } finally {
+            _inFlight.release();
+        }
+    }
+
+    static ArrayNode toArray(AbstractChain<?> chain) throws Exception {
+        ArrayNode array = _mapper.createArrayNode();
+        for (AbstractBlock block : chain.getBlocks()) {
+            array.add(block.serialize());
+        }
+        return array;
+    }
+
+    static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 2 + 16);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(bytes);
+        }
+        return buffer.toByteArray();
+    }
+
+    static byte[] readFully(InputStream in, boolean gzipped) throws IOException {
+        try (InputStream stream = gzipped ? new GZIPInputStream(in) : in) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int count;
+            while ((count = stream.read(chunk)) != -1) {
+                buffer.write(chunk, 0, count);
+            }
+            return buffer.toByteArray();
+        }
+    }
+
+    private static String encode(String value) throws IOException {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+}
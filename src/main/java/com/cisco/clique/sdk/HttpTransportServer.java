@@ -0,0 +1,250 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AuthChain;
+import com.cisco.clique.sdk.chains.IdChain;
+import com.cisco.clique.sdk.validation.AuthBlockValidator;
+import com.cisco.clique.sdk.validation.IdBlockValidator;
+import com.cisco.clique.sdk.validation.InvalidBlockException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.nimbusds.jose.jwk.ECKey;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class HttpTransportServer {
+
+    private static final ObjectReader _chainReader = JsonMapperFactory.getInstance().getChainReader();
+    private static final ObjectReader _treeReader = JsonMapperFactory.getInstance().getTreeReader();
+    private static final ObjectWriter _writer = JsonMapperFactory.getInstance().getWriter();
+    private static final int DEFAULT_THREADS = 16;
+    private Transport _transport;
+    private Set<String> _trustRoots;
+    private HttpServer _server;
+    private ExecutorService _executor;
+
+    public HttpTransportServer(Transport transport) throws IOException {
+        this(transport, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), DEFAULT_THREADS);
+    }
+
+    public HttpTransportServer(Transport transport, InetSocketAddress address, int threads) throws IOException {
+        if (null == transport || null == address) {
+            throw new IllegalArgumentException("transport and address must both be non-null");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("thread count must be positive");
+        }
+        _transport = transport;
+
+        // the server is just a store: chains are kept as uploaded and validated by whoever fetches them
+        _trustRoots = new HashSet<>();
+        _executor = Executors.newFixedThreadPool(threads);
+        _server = HttpServer.create(address, 0);
+        _server.setExecutor(_executor);
+        _server.createContext("/", new Handler());
+    }
+
+    public Transport getTransport() {
+        return _transport;
+    }
+
+    public URI getUri() {
+        InetSocketAddress address = _server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort() + "/");
+    }
+
+    public void start() {
+        _server.start();
+    }
+
+    public void stop() {
+        _server.stop(0);
+        _executor.shutdown();
+    }
+
+    private void putChains(Transaction transaction, JsonNode node, boolean idChains) throws Exception {
+        if (null == node) {
+            return;
+        }
+        for (JsonNode array : node) {
+            if (idChains) {
+                transaction.putIdChain(parseIdChain(array));
+            } else {
+                transaction.putAuthChain(parseAuthChain(array));
+            }
+        }
+    }
+
+    private static ECKey parseKey(String json) {
+        try {
+            return ECKey.parse(json);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("malformed key", e);
+        }
+    }
+
+    private static JsonNode parseTree(String json) {
+        try {
+            JsonNode node = _treeReader.readTree(json);
+            if (null == node) {
+                throw new IllegalArgumentException("empty request body");
+            }
+            return node;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("malformed JSON", e);
+        }
+    }
+
+    private static JsonNode parseChain(String json) {
+        try {
+            ArrayNode array = _chainReader.readValue(json);
+            if (null == array) {
+                throw new IllegalArgumentException("empty request body");
+            }
+            return array;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("malformed chain", e);
+        }
+    }
+
+    private IdChain parseIdChain(JsonNode array) throws Exception {
+        if (!(array instanceof ArrayNode)) {
+            throw new IllegalArgumentException("a chain must be a JSON array");
+        }
+        try {
+            return new IdChain(new IdBlockValidator(_transport, _trustRoots), (ArrayNode) array, false);
+        } catch (InvalidBlockException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("malformed chain", e);
+        }
+    }
+
+    private AuthChain parseAuthChain(JsonNode array) throws Exception {
+        if (!(array instanceof ArrayNode)) {
+            throw new IllegalArgumentException("a chain must be a JSON array");
+        }
+        try {
+            return new AuthChain(new AuthBlockValidator(_transport, _trustRoots), (ArrayNode) array, false);
+        } catch (InvalidBlockException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("malformed chain", e);
+        }
+    }
+
+    private class Handler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                String method = exchange.getRequestMethod();
+                String[] path = exchange.getRequestURI().getRawPath().substring(1).split("/", 2);
+                String collection = path[0];
+                String id = (path.length > 1) ? URLDecoder.decode(path[1], "UTF-8") : null;
+                String body = null;
+                if ("PUT".equals(method) || "POST".equals(method)) {
+                    boolean gzipped = "gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+                    body = new String(HttpTransport.readFully(exchange.getRequestBody(), gzipped),
+                            StandardCharsets.UTF_8);
+                }
+
+                if ("DELETE".equals(method) && collection.isEmpty()) {
+                    _transport.clear();
+                    respond(exchange, HttpURLConnection.HTTP_OK, null);
+                } else if ("GET".equals(method) && HttpTransport.KEYS_PATH.equals(collection) && null != id) {
+                    ECKey key = _transport.getKey(id);
+                    found(exchange,
+                            (null != key) ? key.toPublicJWK().toJSONString() : null);
+                } else if ("PUT".equals(method) && HttpTransport.KEYS_PATH.equals(collection)) {
+                    _transport.putKey(parseKey(body));
+                    respond(exchange, HttpURLConnection.HTTP_OK, null);
+                } else if ("GET".equals(method) && HttpTransport.ID_CHAINS_PATH.equals(collection) && null != id) {
+                    IdChain chain = (IdChain) _transport.getIdChain(
+                            new IdBlockValidator(_transport, _trustRoots), URI.create(id));
+                    found(exchange,
+                            (null != chain) ? chain.serialize(false) : null);
+                } else if ("PUT".equals(method) && HttpTransport.ID_CHAINS_PATH.equals(collection)) {
+                    _transport.putIdChain(parseIdChain(parseChain(body)));
+                    respond(exchange, HttpURLConnection.HTTP_OK, null);
+                } else if ("GET".equals(method) && HttpTransport.AUTH_CHAINS_PATH.equals(collection) && null != id) {
+                    AuthChain chain = (AuthChain) _transport.getAuthChain(
+                            new AuthBlockValidator(_transport, _trustRoots), URI.create(id));
+                    found(exchange,
+                            (null != chain) ? chain.serialize(false) : null);
+                } else if ("PUT".equals(method) && HttpTransport.AUTH_CHAINS_PATH.equals(collection)) {
+                    _transport.putAuthChain(parseAuthChain(parseChain(body)));
+                    respond(exchange, HttpURLConnection.HTTP_OK, null);
+                } else if ("POST".equals(method) && HttpTransport.COMMIT_PATH.equals(collection)) {
+                    JsonNode batch = parseTree(body);
+                    if (!batch.isObject()) {
+                        throw new IllegalArgumentException("a commit must be a JSON object");
+                    }
+                    Transaction transaction = new Transaction(_transport);
+                    JsonNode keys = batch.get("keys");
+                    if (null != keys) {
+                        for (JsonNode key : keys) {
+                            transaction.putKey(parseKey(_writer.writeValueAsString(key)));
+                        }
+                    }
+                    putChains(transaction, batch.get("idChains"), true);
+                    putChains(transaction, batch.get("authChains"), false);
+                    transaction.commit();
+                    respond(exchange, HttpURLConnection.HTTP_OK, null);
+                } else {
+                    respond(exchange, HttpURLConnection.HTTP_BAD_METHOD, null);
+                }
+            } catch (IllegalArgumentException | InvalidBlockException e) {
+
+                // whatever fails to parse out of the request surfaces as an IllegalArgumentException and is the
+                // client's to fix; anything else going wrong while serving it, the backing transport included, is not
+                respond(exchange, HttpURLConnection.HTTP_BAD_REQUEST, null);
+            } catch (Exception e) {
+                respond(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR, null);
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void found(HttpExchange exchange, String body) throws IOException {
+            respond(exchange, (null != body) ? HttpURLConnection.HTTP_OK : HttpURLConnection.HTTP_NOT_FOUND, body);
+        }
+
+        private void respond(HttpExchange exchange, int status, String body) throws IOException {
+
+            // empty responses go out as an empty chunked body, the JDK server drops keep-alive connections on -1
+            if (null == body) {
+                exchange.sendResponseHeaders(status, 0);
+                exchange.getResponseBody().close();
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (bytes.length >= HttpTransport.GZIP_THRESHOLD && null != accept && accept.contains("gzip")) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                bytes = HttpTransport.gzip(bytes);
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
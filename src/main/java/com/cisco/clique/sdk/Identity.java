@@ -84,7 +84,7 @@ public class Identity extends PublicIdentity {
         ObjectNode json = super.serializeToJson();
         ArrayNode keys = json.putArray("keys");
         for (ECKey key : _keyPairs.values()) {
-            ObjectNode keyNode = (ObjectNode) _mapper.readTree(key.toJSONString());
+            ObjectNode keyNode = (ObjectNode) _objectReader.readValue(key.toJSONString());
             keys.add(keyNode);
         }
         return json;
@@ -94,7 +94,7 @@ public class Identity extends PublicIdentity {
         super.deserializeFromJson(validator, json);
         ArrayNode array = (ArrayNode) json.findPath("keys");
         for (JsonNode node : array) {
-            storeKeyPair(ECKey.parse(_mapper.writeValueAsString(node)));
+            storeKeyPair(ECKey.parse(_writer.writeValueAsString(node)));
         }
     }
 
@@ -124,16 +124,14 @@ public class Identity extends PublicIdentity {
     public String toString() {
         try {
             ObjectNode identity = _mapper.createObjectNode();
-            identity.set("chain", _mapper.readTree(_idChain.toString()));
+            identity.set("chain", _treeReader.readTree(_idChain.toString()));
             ArrayNode keys = identity.putArray("keys");
             for (ECKey key : _keyPairs.values()) {
-                ObjectNode keyNode = (ObjectNode) _mapper.readTree(key.toJSONString());
+                ObjectNode keyNode = (ObjectNode) _objectReader.readValue(key.toJSONString());
                 keyNode.put("kid", key.computeThumbprint().toString());
                 keys.add(keyNode);
             }
-            return _mapper
-                    .writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(identity);
+            return _prettyWriter.writeValueAsString(identity);
         } catch (Exception e) {
             e.printStackTrace();
         }
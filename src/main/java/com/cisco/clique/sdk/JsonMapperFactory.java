@@ -1,21 +1,77 @@
 package com.cisco.clique.sdk;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.fasterxml.jackson.databind.ser.std.DateSerializer;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
+import java.io.IOException;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.TimeZone;
 
 public class JsonMapperFactory {
 
+    private static final String RFC3339_DATE_TIME = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
+    private static final ThreadLocal<SimpleDateFormat> _dateFormat = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            SimpleDateFormat rfc3339DateTimeFormat = new SimpleDateFormat(RFC3339_DATE_TIME);
+            rfc3339DateTimeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            return rfc3339DateTimeFormat;
+        }
+    };
     private static final SimpleModule _dateModule;
 
     static {
-        SimpleDateFormat rfc3339DateTimeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-        rfc3339DateTimeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        // SimpleDateFormat is not thread-safe, so dates are formatted and parsed with a per-thread instance
         _dateModule = new SimpleModule("rfc3339-date-time");
-        _dateModule.addSerializer(new DateSerializer(false, rfc3339DateTimeFormat));
+        _dateModule.addSerializer(new StdSerializer<Date>(Date.class) {
+            @Override
+            public void serialize(Date value, JsonGenerator generator, SerializerProvider provider)
+                    throws IOException {
+                generator.writeString(_dateFormat.get().format(value));
+            }
+        });
+        _dateModule.addDeserializer(Date.class, new JsonDeserializer<Date>() {
+            @Override
+            public Date deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+                try {
+                    return _dateFormat.get().parse(parser.getValueAsString());
+                } catch (ParseException e) {
+                    throw context.mappingException(e.getMessage());
+                }
+            }
+        });
+    }
+
+    private final ObjectMapper _mapper;
+    private final ObjectReader _treeReader;
+    private final ObjectReader _chainReader;
+    private final ObjectReader _objectReader;
+    private final ObjectWriter _writer;
+    private final ObjectWriter _prettyWriter;
+
+    private JsonMapperFactory() {
+
+        // a configured mapper is thread-safe, and readers and writers are immutable, so one of each is shared by
+        // everything instead of being built per class or per call
+        _mapper = createMapper();
+        _treeReader = _mapper.reader();
+        _chainReader = _mapper.readerFor(ArrayNode.class);
+        _objectReader = _mapper.readerFor(ObjectNode.class);
+        _writer = _mapper.writer();
+        _prettyWriter = _mapper.writerWithDefaultPrettyPrinter();
     }
 
     public static JsonMapperFactory getInstance() {
@@ -28,8 +84,39 @@ public class JsonMapperFactory {
         return mapper;
     }
 
+    public ObjectMapper getMapper() {
+        return _mapper;
+    }
+
+    public ObjectReader getTreeReader() {
+        return _treeReader;
+    }
+
+    public ObjectReader getChainReader() {
+        return _chainReader;
+    }
+
+    public ObjectReader getObjectReader() {
+        return _objectReader;
+    }
+
+    public ObjectWriter getWriter() {
+        return _writer;
+    }
+
+    public ObjectWriter getPrettyWriter() {
+        return _prettyWriter;
+    }
+
+    public String formatDate(Date date) {
+        return _dateFormat.get().format(date);
+    }
+
+    public Date parseDate(String date) throws ParseException {
+        return _dateFormat.get().parse(date);
+    }
+
     private static class JsonMapperFactorySingleton {
         private static final JsonMapperFactory INSTANCE = new JsonMapperFactory();
     }
 }
-
@@ -0,0 +1,123 @@
+package com.cisco.clique.sdk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+final class MappedChainLog {
+
+    private static final int HEADER_BYTES = 4;
+    private final File _directory;
+    private final int _segmentBytes;
+    private final int _maxSegments;
+    private final Deque<Segment> _segments;
+    private long _nextSegmentId;
+
+    MappedChainLog(File directory, int segmentBytes, int maxSegments) throws IOException {
+        if (null == directory || segmentBytes <= HEADER_BYTES || maxSegments < 1) {
+            throw new IllegalArgumentException("a directory, a usable segment size and a segment count are required");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("could not create cache directory " + directory);
+        }
+        _directory = directory;
+        _segmentBytes = segmentBytes;
+        _maxSegments = maxSegments;
+        _segments = new ArrayDeque<>();
+        _nextSegmentId = 0;
+    }
+
+    long append(byte[] record) throws IOException {
+        if (HEADER_BYTES + record.length > _segmentBytes) {
+            return -1;
+        }
+        Segment segment = _segments.peekLast();
+        if (null == segment || segment._used + HEADER_BYTES + record.length > _segmentBytes) {
+            segment = openSegment();
+        }
+
+        // positions pack the segment id and the record offset, so a position outlives nothing but its segment
+        int offset = segment._used;
+        segment._buffer.putInt(offset, record.length);
+        for (int i = 0; i < record.length; i++) {
+            segment._buffer.put(offset + HEADER_BYTES + i, record[i]);
+        }
+        segment._used = offset + HEADER_BYTES + record.length;
+        return (segment._id << 32) | offset;
+    }
+
+    ByteBuffer read(long position) {
+        long id = position >>> 32;
+        int offset = (int) position;
+        for (Segment segment : _segments) {
+            if (segment._id == id) {
+
+                // hand out a read-only view of the mapped record rather than a copy; the view keeps the mapping alive
+                // even after its segment is recycled, and records are never rewritten in place
+                int length = segment._buffer.getInt(offset);
+                ByteBuffer record = segment._buffer.duplicate();
+                record.limit(offset + HEADER_BYTES + length).position(offset + HEADER_BYTES);
+                return record.slice().asReadOnlyBuffer();
+            }
+        }
+        return null;
+    }
+
+    long oldestSegmentId() {
+        Segment segment = _segments.peekFirst();
+        return (null != segment) ? segment._id : _nextSegmentId;
+    }
+
+    void clear() {
+        while (!_segments.isEmpty()) {
+            deleteSegment(_segments.removeFirst());
+        }
+    }
+
+    private Segment openSegment() throws IOException {
+
+        // the log is a ring of fixed-size segments, recycling the oldest one drops everything written to it
+        if (_segments.size() >= _maxSegments) {
+            deleteSegment(_segments.removeFirst());
+        }
+        long id = _nextSegmentId++;
+
+        // every segment gets a file name no other log has used, so two logs sharing a directory, or a log reopened
+        // over an old one, never write into a file something else still has mapped
+        File file = File.createTempFile("chains-" + id + "-", ".seg", _directory);
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, _segmentBytes);
+        }
+        Segment segment = new Segment(id, file, buffer);
+        _segments.addLast(segment);
+        return segment;
+    }
+
+    private static void deleteSegment(Segment segment) {
+
+        // the mapping itself goes away once the buffer is collected, the file can be unlinked right away
+        if (!segment._file.delete()) {
+            segment._file.deleteOnExit();
+        }
+    }
+
+    private static final class Segment {
+        private final long _id;
+        private final File _file;
+        private final ByteBuffer _buffer;
+        private int _used;
+
+        Segment(long id, File file, ByteBuffer buffer) {
+            _id = id;
+            _file = file;
+            _buffer = buffer;
+            _used = 0;
+        }
+    }
+}
@@ -1,88 +1,478 @@
 package com.cisco.clique.sdk;
 
+import com.cisco.clique.sdk.chains.AbstractBlock;
 import com.cisco.clique.sdk.chains.AbstractChain;
 import com.cisco.clique.sdk.chains.AuthBlock;
+import com.cisco.clique.sdk.chains.AuthChain;
 import com.cisco.clique.sdk.chains.IdBlock;
+import com.cisco.clique.sdk.chains.IdChain;
 import com.cisco.clique.sdk.validation.AbstractValidator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.nimbusds.jose.jwk.ECKey;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-public class MemoryTransport implements Transport {
+public class MemoryTransport implements Transport, BatchTransport, SnapshotTransport, ChainPublisher, ChainDirectory {
 
-    protected static final ObjectMapper _mapper = JsonMapperFactory.getInstance().createMapper();
+    protected static final ObjectMapper _mapper = JsonMapperFactory.getInstance().getMapper();
+    protected static final ObjectReader _treeReader = JsonMapperFactory.getInstance().getTreeReader();
+    protected static final ObjectWriter _prettyWriter = JsonMapperFactory.getInstance().getPrettyWriter();
+    private static final ChainFactory<IdBlock> ID_CHAINS = new ChainFactory<IdBlock>() {
+        @Override
+        public AbstractChain<IdBlock> create(AbstractValidator<IdBlock> validator, ByteBuffer serialization)
+                throws Exception {
+            return new IdChain(validator, serialization, false);
+        }
+
+        @Override
+        public AbstractChain<IdBlock> create(AbstractValidator<IdBlock> validator, AbstractChain<IdBlock> origin,
+                                             List<IdBlock> blocks) throws Exception {
+            return new IdChain(validator, origin, blocks);
+        }
+    };
+    private static final ChainFactory<AuthBlock> AUTH_CHAINS = new ChainFactory<AuthBlock>() {
+        @Override
+        public AbstractChain<AuthBlock> create(AbstractValidator<AuthBlock> validator, ByteBuffer serialization)
+                throws Exception {
+            return new AuthChain(validator, serialization, false);
+        }
+
+        @Override
+        public AbstractChain<AuthBlock> create(AbstractValidator<AuthBlock> validator,
+                                               AbstractChain<AuthBlock> origin, List<AuthBlock> blocks)
+                throws Exception {
+            return new AuthChain(validator, origin, blocks);
+        }
+    };
+    private ReadWriteLock _lock;
+    private ChainNotifier _notifier;
+    private AtomicLong _version;
+    private Set<VersionedSnapshot> _snapshots;
+    private ChainDictionary _dictionary;
+    private volatile DigestVersion _idDigest;
+    private volatile DigestVersion _authDigest;
     Map<String, ECKey> _keys;
-    Map<URI, AbstractChain<IdBlock>> _idChains;
-    Map<URI, AbstractChain<AuthBlock>> _authChains;
+    VersionedMap<URI, StoredChain<IdBlock>> _idChains;
+    VersionedMap<URI, StoredChain<AuthBlock>> _authChains;
 
     public MemoryTransport() {
-        _keys = new HashMap<>();
-        _idChains = new HashMap<>();
-        _authChains = new HashMap<>();
+        this(new HashMap<String, ECKey>());
+    }
+
+    public MemoryTransport(Map<String, ECKey> keys) {
+        this(keys, null);
+    }
+
+    public MemoryTransport(Map<String, ECKey> keys, ChainDictionary dictionary) {
+        if (null == keys) {
+            throw new IllegalArgumentException("key map must be non-null");
+        }
+        _lock = new ReentrantReadWriteLock();
+        _notifier = new ChainNotifier();
+        _version = new AtomicLong();
+        _snapshots = Collections.newSetFromMap(new ConcurrentHashMap<VersionedSnapshot, Boolean>());
+        _keys = keys;
+        _idChains = new VersionedMap<>(_version);
+        _authChains = new VersionedMap<>(_version);
+        _dictionary = dictionary;
+    }
+
+    public ChainDictionary getDictionary() {
+        return _dictionary;
     }
 
     @Override
     public void putKey(ECKey key) throws Exception {
-        _keys.put(key.toPublicJWK().computeThumbprint().toString(), key);
+        String pkt = key.toPublicJWK().computeThumbprint().toString();
+        _lock.writeLock().lock();
+        try {
+            _keys.put(pkt, key);
+        } finally {
+            _lock.writeLock().unlock();
+        }
     }
 
     @Override
     public ECKey getKey(String pkt) {
-        return _keys.get(pkt);
+
+        // keys are named by their own thumbprint and never change, so they aren't versioned; the lock only guards
+        // whatever map implementation the keys were handed over in
+        _lock.readLock().lock();
+        try {
+            return _keys.get(pkt);
+        } finally {
+            _lock.readLock().unlock();
+        }
     }
 
     @Override
     public void putIdChain(AbstractChain<IdBlock> chain) throws Exception {
-        _idChains.put(chain.getSubject(), chain);
+        StoredChain<IdBlock> stored = new StoredChain<>(chain, _dictionary);
+        _lock.writeLock().lock();
+        try {
+            long version = _version.get() + 1;
+            _idChains.put(chain.getSubject(), stored, version, oldestPinned());
+            _version.set(version);
+        } finally {
+            _lock.writeLock().unlock();
+        }
+        _notifier.published(ChainEvent.Type.ID_CHAIN, chain);
     }
 
     @Override
     public AbstractChain<IdBlock> getIdChain(AbstractValidator<IdBlock> validator, URI uri) throws Exception {
-        return _idChains.get(uri);
+        StoredChain<IdBlock> stored = _idChains.get(uri);
+        return (null != stored) ? stored.getChain(ID_CHAINS) : null;
     }
 
     @Override
     public void putAuthChain(AbstractChain<AuthBlock> chain) throws Exception {
-        _authChains.put(chain.getSubject(), chain);
+        StoredChain<AuthBlock> stored = new StoredChain<>(chain, _dictionary);
+        _lock.writeLock().lock();
+        try {
+            long version = _version.get() + 1;
+            _authChains.put(chain.getSubject(), stored, version, oldestPinned());
+            _version.set(version);
+        } finally {
+            _lock.writeLock().unlock();
+        }
+        _notifier.published(ChainEvent.Type.AUTH_CHAIN, chain);
     }
 
     @Override
     public AbstractChain<AuthBlock> getAuthChain(AbstractValidator<AuthBlock> validator, URI uri) throws Exception {
-        return _authChains.get(uri);
+        StoredChain<AuthBlock> stored = _authChains.get(uri);
+        return (null != stored) ? stored.getChain(AUTH_CHAINS) : null;
+    }
+
+    @Override
+    public Map<URI, String> getHeadHashes(ChainEvent.Type type) throws Exception {
+        Map<URI, String> heads = new HashMap<>();
+        Map<URI, ? extends StoredChain<?>> chains = (ChainEvent.Type.ID_CHAIN == type) ? _idChains : _authChains;
+        for (Map.Entry<URI, ? extends StoredChain<?>> entry : chains.entrySet()) {
+            heads.put(entry.getKey(), entry.getValue().getHeadHash());
+        }
+        return heads;
+    }
+
+    @Override
+    public String getNodeHash(ChainEvent.Type type, int depth, int level, int index) throws Exception {
+        MerkleDigest digest = digest(type, depth);
+        if (level < 0 || level > depth || index < 0 || index >= (1 << level)) {
+            throw new IllegalArgumentException("no node " + index + " at level " + level + " of a depth " + depth
+                    + " digest");
+        }
+        return digest.getNode(level, index);
+    }
+
+    @Override
+    public SortedMap<URI, String> getLeafHeads(ChainEvent.Type type, int depth, int index) throws Exception {
+        MerkleDigest digest = digest(type, depth);
+        if (index < 0 || index >= (1 << depth)) {
+            throw new IllegalArgumentException("no leaf " + index + " in a depth " + depth + " digest");
+        }
+        return digest.getLeaf(index);
+    }
+
+    private MerkleDigest digest(ChainEvent.Type type, int depth) throws Exception {
+
+        // a digest costs a pass over every head, so the last one built is reused until the next write; holding the
+        // read lock keeps the version and the heads it covers in step
+        _lock.readLock().lock();
+        try {
+            long version = _version.get();
+            DigestVersion cached = (ChainEvent.Type.ID_CHAIN == type) ? _idDigest : _authDigest;
+            if (null != cached && cached._version == version && cached._digest.getDepth() == depth) {
+                return cached._digest;
+            }
+            DigestVersion built = new DigestVersion(version, new MerkleDigest(getHeadHashes(type), depth));
+            if (ChainEvent.Type.ID_CHAIN == type) {
+                _idDigest = built;
+            } else {
+                _authDigest = built;
+            }
+            return built._digest;
+        } finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Snapshot snapshot() {
+
+        // pin the current version; if a write was published between reading the version and registering the pin,
+        // older versions may already have been cut, so pin again at the newer one
+        while (true) {
+            VersionedSnapshot snapshot = new VersionedSnapshot(_version.get());
+            _snapshots.add(snapshot);
+            if (snapshot._version == _version.get()) {
+                return snapshot;
+            }
+            _snapshots.remove(snapshot);
+        }
+    }
+
+    public int getPinnedSnapshots() {
+        return _snapshots.size();
+    }
+
+    @Override
+    public void commit(Transaction transaction) throws Exception {
+
+        // compute thumbprints and encodings up front so the write lock is only held for the map updates
+        Map<String, ECKey> keys = new HashMap<>();
+        for (ECKey key : transaction.getKeys()) {
+            keys.put(key.toPublicJWK().computeThumbprint().toString(), key);
+        }
+        List<StoredChain<IdBlock>> idChains = new ArrayList<>();
+        for (AbstractChain<IdBlock> chain : transaction.getIdChains()) {
+            idChains.add(new StoredChain<>(chain, _dictionary));
+        }
+        List<StoredChain<AuthBlock>> authChains = new ArrayList<>();
+        for (AbstractChain<AuthBlock> chain : transaction.getAuthChains()) {
+            authChains.add(new StoredChain<>(chain, _dictionary));
+        }
+
+        // every chain in the batch is written at the same version, and readers only move to that version once the
+        // whole batch is in place
+        _lock.writeLock().lock();
+        try {
+            _keys.putAll(keys);
+            long version = _version.get() + 1;
+            long oldestPinned = oldestPinned();
+            for (StoredChain<IdBlock> stored : idChains) {
+                _idChains.put(stored._subject, stored, version, oldestPinned);
+            }
+            for (StoredChain<AuthBlock> stored : authChains) {
+                _authChains.put(stored._subject, stored, version, oldestPinned);
+            }
+            _version.set(version);
+        } finally {
+            _lock.writeLock().unlock();
+        }
+
+        // listeners are notified only once the whole batch is visible
+        for (AbstractChain<IdBlock> chain : transaction.getIdChains()) {
+            _notifier.published(ChainEvent.Type.ID_CHAIN, chain);
+        }
+        for (AbstractChain<AuthBlock> chain : transaction.getAuthChains()) {
+            _notifier.published(ChainEvent.Type.AUTH_CHAIN, chain);
+        }
+    }
+
+    private long oldestPinned() {
+        long oldest = _version.get();
+        for (VersionedSnapshot snapshot : _snapshots) {
+            oldest = Math.min(oldest, snapshot._version);
+        }
+        return oldest;
+    }
+
+    @Override
+    public void subscribe(ChainListener listener) {
+        _notifier.subscribe(listener);
+    }
+
+    @Override
+    public void subscribe(URI uri, ChainListener listener) {
+        _notifier.subscribe(uri, listener);
+    }
+
+    @Override
+    public void unsubscribe(ChainListener listener) {
+        _notifier.unsubscribe(listener);
     }
 
     @Override
     public void clear() {
-        _keys.clear();
-        _idChains.clear();
-        _authChains.clear();
+        _lock.writeLock().lock();
+        try {
+            _keys.clear();
+            _idChains.clear();
+            _authChains.clear();
+            _idDigest = null;
+            _authDigest = null;
+        } finally {
+            _lock.writeLock().unlock();
+        }
+        _notifier.clear();
     }
 
     @Override
     public String toString() {
+        _lock.readLock().lock();
         try {
             ObjectNode objectNode = _mapper.createObjectNode();
             ArrayNode arrayNode = objectNode.putArray("keys");
             for (ECKey key : _keys.values()) {
-                arrayNode.add(_mapper.readTree(key.toPublicJWK().toJSONString()));
+                arrayNode.add(_treeReader.readTree(key.toPublicJWK().toJSONString()));
             }
             arrayNode = objectNode.putArray("idChains");
-            for (AbstractChain chain : _idChains.values()) {
-                arrayNode.add(_mapper.readTree(chain.toString()));
+            for (StoredChain<IdBlock> stored : _idChains.values()) {
+                arrayNode.add(_treeReader.readTree(stored.getChain(ID_CHAINS).toString()));
             }
             arrayNode = objectNode.putArray("authChains");
-            for (AbstractChain chain : _authChains.values()) {
-                arrayNode.add(_mapper.readTree(chain.toString()));
+            for (StoredChain<AuthBlock> stored : _authChains.values()) {
+                arrayNode.add(_treeReader.readTree(stored.getChain(AUTH_CHAINS).toString()));
             }
-            return _mapper.writerWithDefaultPrettyPrinter().writeValueAsString(objectNode);
+            return _prettyWriter.writeValueAsString(objectNode);
         } catch (Exception ex) {
             ex.printStackTrace();
+        } finally {
+            _lock.readLock().unlock();
         }
         return "";
     }
+
+    static final class StoredChain<T extends AbstractBlock> {
+        private final URI _subject;
+        private final AbstractValidator<T> _validator;
+        private final AbstractChain<T> _chain;
+        private final List<T> _blocks;
+        private final ChainDictionary _dictionary;
+        private final byte[] _encoded;
+        private final String _headHash;
+
+        StoredChain(AbstractChain<T> chain, ChainDictionary dictionary) throws Exception {
+            _subject = chain.getSubject();
+            _validator = chain.getValidator();
+            _dictionary = dictionary;
+            if (null == dictionary) {
+
+                // chains are stored by reference and may keep growing in place, so remember which blocks this version
+                // had
+                _chain = chain;
+                _blocks = chain.getBlocks();
+                _encoded = null;
+                _headHash = null;
+            } else {
+
+                // a dictionary-encoded chain keeps nothing but its encoding, every read re-hydrates a fresh copy
+                _chain = null;
+                _blocks = null;
+                _encoded = dictionary.encode(chain);
+                _headHash = chain.getHeadHash();
+            }
+        }
+
+        String getHeadHash() throws Exception {
+            return (null != _chain) ? _chain.getHeadHash() : _headHash;
+        }
+
+        AbstractChain<T> getChain(ChainFactory<T> factory) throws Exception {
+            if (null != _chain) {
+                return _chain;
+            }
+            return factory.create(_validator, ByteBuffer.wrap(_dictionary.decode(ByteBuffer.wrap(_encoded))));
+        }
+
+        AbstractChain<T> at(ChainFactory<T> factory, AbstractValidator<T> validator) throws Exception {
+
+            // a snapshot read is checked by the validator it was made with, so everything validation looks up goes
+            // through the same pinned version
+            if (null == _chain) {
+                return factory.create((null != validator) ? validator : _validator,
+                        ByteBuffer.wrap(_dictionary.decode(ByteBuffer.wrap(_encoded))));
+            }
+
+            // the live chain may grow in place at any time, even if it hasn't yet, so a snapshot always gets its own
+            // chain over exactly the blocks this version had
+            return factory.create(validator, _chain, _blocks);
+        }
+    }
+
+    private interface ChainFactory<T extends AbstractBlock> {
+        AbstractChain<T> create(AbstractValidator<T> validator, ByteBuffer serialization) throws Exception;
+
+        AbstractChain<T> create(AbstractValidator<T> validator, AbstractChain<T> origin, List<T> blocks)
+                throws Exception;
+    }
+
+    private static final class DigestVersion {
+        private final long _version;
+        private final MerkleDigest _digest;
+
+        DigestVersion(long version, MerkleDigest digest) {
+            _version = version;
+            _digest = digest;
+        }
+    }
+
+    private final class VersionedSnapshot implements Snapshot {
+        private final long _version;
+        private volatile boolean _released;
+
+        VersionedSnapshot(long version) {
+            _version = version;
+            _released = false;
+        }
+
+        @Override
+        public void release() {
+
+            // once released the snapshot no longer holds old versions back and reads whatever is current
+            _released = true;
+            _snapshots.remove(this);
+        }
+
+        @Override
+        public void putKey(ECKey key) throws Exception {
+            MemoryTransport.this.putKey(key);
+        }
+
+        @Override
+        public ECKey getKey(String pkt) throws Exception {
+            return MemoryTransport.this.getKey(pkt);
+        }
+
+        @Override
+        public void putIdChain(AbstractChain<IdBlock> chain) throws Exception {
+            MemoryTransport.this.putIdChain(chain);
+        }
+
+        @Override
+        public AbstractChain<IdBlock> getIdChain(AbstractValidator<IdBlock> validator, URI uri) throws Exception {
+            if (_released) {
+                return MemoryTransport.this.getIdChain(validator, uri);
+            }
+            StoredChain<IdBlock> stored = _idChains.get(uri, _version);
+            return (null != stored) ? stored.at(ID_CHAINS, validator) : null;
+        }
+
+        @Override
+        public void putAuthChain(AbstractChain<AuthBlock> chain) throws Exception {
+            MemoryTransport.this.putAuthChain(chain);
+        }
+
+        @Override
+        public AbstractChain<AuthBlock> getAuthChain(AbstractValidator<AuthBlock> validator, URI uri)
+                throws Exception {
+            if (_released) {
+                return MemoryTransport.this.getAuthChain(validator, uri);
+            }
+            StoredChain<AuthBlock> stored = _authChains.get(uri, _version);
+            return (null != stored) ? stored.at(AUTH_CHAINS, validator) : null;
+        }
+
+        @Override
+        public void clear() {
+            MemoryTransport.this.clear();
+        }
+    }
 }
@@ -0,0 +1,132 @@
+package com.cisco.clique.sdk;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class MerkleDigest {
+
+    public static final int DEFAULT_DEPTH = 8;
+    public static final int MAX_DEPTH = 16;
+    private final int _depth;
+    private final List<SortedMap<URI, String>> _leaves;
+    private final String[][] _levels;
+
+    public MerkleDigest(Map<URI, String> heads) throws Exception {
+        this(heads, DEFAULT_DEPTH);
+    }
+
+    public MerkleDigest(Map<URI, String> heads, int depth) throws Exception {
+        if (null == heads || depth < 0 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("head hashes must be non-null and depth at most " + MAX_DEPTH);
+        }
+        _depth = depth;
+
+        // URIs are placed by the leading bits of their hash, so each leaf covers a fixed range of the hash space
+        // and two replicas bucket the same URI the same way no matter what else they hold
+        int leafCount = 1 << depth;
+        _leaves = new ArrayList<>(leafCount);
+        for (int i = 0; i < leafCount; i++) {
+            _leaves.add(new TreeMap<URI, String>());
+        }
+        for (Map.Entry<URI, String> entry : heads.entrySet()) {
+            if (null != entry.getKey() && null != entry.getValue()) {
+                _leaves.get(leaf(entry.getKey(), depth)).put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        // level 0 is the root, level depth holds the leaves
+        _levels = new String[depth + 1][];
+        _levels[depth] = new String[leafCount];
+        for (int i = 0; i < leafCount; i++) {
+            StringBuilder builder = new StringBuilder();
+            for (Map.Entry<URI, String> entry : _leaves.get(i).entrySet()) {
+                builder.append(entry.getKey()).append('\n').append(entry.getValue()).append('\n');
+            }
+            _levels[depth][i] = hash(builder.toString());
+        }
+        for (int level = depth - 1; level >= 0; level--) {
+            _levels[level] = new String[1 << level];
+            for (int i = 0; i < _levels[level].length; i++) {
+                _levels[level][i] = hash(_levels[level + 1][2 * i] + _levels[level + 1][2 * i + 1]);
+            }
+        }
+    }
+
+    public int getDepth() {
+        return _depth;
+    }
+
+    public String getRoot() {
+        return _levels[0][0];
+    }
+
+    public String getNode(int level, int index) {
+        return _levels[level][index];
+    }
+
+    public SortedMap<URI, String> getLeaf(int index) {
+        return Collections.unmodifiableSortedMap(_leaves.get(index));
+    }
+
+    public Set<URI> diff(MerkleDigest other) {
+        if (null == other || other._depth != _depth) {
+            throw new IllegalArgumentException("digests must both be non-null and of the same depth");
+        }
+        Set<URI> differing = new TreeSet<>();
+        diff(other, 0, 0, differing);
+        return differing;
+    }
+
+    private void diff(MerkleDigest other, int level, int index, Set<URI> differing) {
+
+        // only subtrees whose hashes disagree are descended into, and only disagreeing leaves are compared entry by
+        // entry, so two replicas that mostly agree exchange a handful of hashes rather than every head
+        if (_levels[level][index].equals(other._levels[level][index])) {
+            return;
+        }
+        if (level < _depth) {
+            diff(other, level + 1, 2 * index, differing);
+            diff(other, level + 1, 2 * index + 1, differing);
+            return;
+        }
+        diffLeaves(_leaves.get(index), other._leaves.get(index), differing);
+    }
+
+    static void diffLeaves(SortedMap<URI, String> mine, SortedMap<URI, String> theirs, Set<URI> differing) {
+        for (Map.Entry<URI, String> entry : mine.entrySet()) {
+            if (!entry.getValue().equals(theirs.get(entry.getKey()))) {
+                differing.add(entry.getKey());
+            }
+        }
+        for (URI uri : theirs.keySet()) {
+            if (!mine.containsKey(uri)) {
+                differing.add(uri);
+            }
+        }
+    }
+
+    private static int leaf(URI uri, int depth) throws Exception {
+        if (0 == depth) {
+            return 0;
+        }
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(uri.toString().getBytes(StandardCharsets.UTF_8));
+        int prefix = ((digest[0] & 0xff) << 16) | ((digest[1] & 0xff) << 8) | (digest[2] & 0xff);
+        return prefix >>> (24 - depth);
+    }
+
+    private static String hash(String value) throws Exception {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return new String(Hex.encodeHex(MessageDigest.getInstance("SHA-256").digest(bytes)));
+    }
+}
@@ -0,0 +1,59 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.AuthBlock;
+import com.cisco.clique.sdk.chains.IdBlock;
+import com.cisco.clique.sdk.validation.AbstractValidator;
+import com.nimbusds.jose.jwk.ECKey;
+
+import java.net.URI;
+
+final class PassThroughSnapshot implements Snapshot {
+
+    private final Transport _transport;
+
+    // for transports that keep no versions of their own: reads see whatever is current, so a validation pass gets
+    // the same (unpinned) view it always had
+    PassThroughSnapshot(Transport transport) {
+        _transport = transport;
+    }
+
+    @Override
+    public void release() {
+    }
+
+    @Override
+    public void putKey(ECKey key) throws Exception {
+        _transport.putKey(key);
+    }
+
+    @Override
+    public ECKey getKey(String pkt) throws Exception {
+        return _transport.getKey(pkt);
+    }
+
+    @Override
+    public void putIdChain(AbstractChain<IdBlock> chain) throws Exception {
+        _transport.putIdChain(chain);
+    }
+
+    @Override
+    public AbstractChain<IdBlock> getIdChain(AbstractValidator<IdBlock> validator, URI uri) throws Exception {
+        return _transport.getIdChain(validator, uri);
+    }
+
+    @Override
+    public void putAuthChain(AbstractChain<AuthBlock> chain) throws Exception {
+        _transport.putAuthChain(chain);
+    }
+
+    @Override
+    public AbstractChain<AuthBlock> getAuthChain(AbstractValidator<AuthBlock> validator, URI uri) throws Exception {
+        return _transport.getAuthChain(validator, uri);
+    }
+
+    @Override
+    public void clear() {
+        _transport.clear();
+    }
+}
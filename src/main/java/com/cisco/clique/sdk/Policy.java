@@ -6,6 +6,7 @@ import com.cisco.clique.sdk.validation.AbstractValidator;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 
 import java.net.URI;
+import java.util.Date;
 
 public class Policy {
 
@@ -34,6 +35,13 @@ public class Policy {
         return _authChain.hasPrivilege(grantee.getAcct(), privilege);
     }
 
+    public boolean hasPrivilege(PublicIdentity grantee, String privilege, Date at) throws Exception {
+        if (null == at) {
+            throw new IllegalArgumentException("the time must be non-null");
+        }
+        return _authChain.hasPrivilege(grantee.getAcct(), privilege, at.getTime());
+    }
+
     void resetValidator() {
         _authChain.resetValidator();
     }
@@ -79,21 +87,56 @@ public class Policy {
                     .setIssuerKey(issuer.getActiveKeyPair());
         }
 
+        public PolicyBuilder hierarchical() {
+            _blockBuilder.setHierarchical(true);
+            return this;
+        }
+
         public PolicyBuilder viralGrant(PublicIdentity grantee, String privilege) throws Exception {
             _blockBuilder.addGrant(new AuthBlock.Grant(AuthBlock.Grant.Type.VIRAL_GRANT, grantee.getAcct(), privilege));
             return this;
         }
 
+        public PolicyBuilder viralGrant(PublicIdentity grantee, String privilege, Date notBefore, Date expires)
+                throws Exception {
+            _blockBuilder.addGrant(new AuthBlock.Grant(
+                    AuthBlock.Grant.Type.VIRAL_GRANT, grantee.getAcct(), privilege, false, notBefore, expires));
+            return this;
+        }
+
         public PolicyBuilder grant(PublicIdentity grantee, String privilege) throws Exception {
             _blockBuilder.addGrant(new AuthBlock.Grant(AuthBlock.Grant.Type.GRANT, grantee.getAcct(), privilege));
             return this;
         }
 
+        public PolicyBuilder grant(PublicIdentity grantee, String privilege, Date notBefore, Date expires)
+                throws Exception {
+            _blockBuilder.addGrant(new AuthBlock.Grant(
+                    AuthBlock.Grant.Type.GRANT, grantee.getAcct(), privilege, false, notBefore, expires));
+            return this;
+        }
+
         public PolicyBuilder revoke(PublicIdentity grantee, String privilege) throws Exception {
             _blockBuilder.addGrant(new AuthBlock.Grant(AuthBlock.Grant.Type.REVOKE, grantee.getAcct(), privilege));
             return this;
         }
 
+        public PolicyBuilder groupGrant(URI group, String privilege) throws Exception {
+            _blockBuilder.addGrant(new AuthBlock.Grant(AuthBlock.Grant.Type.GRANT, group, privilege, true));
+            return this;
+        }
+
+        public PolicyBuilder groupGrant(URI group, String privilege, Date notBefore, Date expires) throws Exception {
+            _blockBuilder.addGrant(new AuthBlock.Grant(
+                    AuthBlock.Grant.Type.GRANT, group, privilege, true, notBefore, expires));
+            return this;
+        }
+
+        public PolicyBuilder groupRevoke(URI group, String privilege) throws Exception {
+            _blockBuilder.addGrant(new AuthBlock.Grant(AuthBlock.Grant.Type.REVOKE, group, privilege, true));
+            return this;
+        }
+
         public Policy build() throws Exception {
             _blockBuilder.build();
             _authChain.getValidator().getTransport().putAuthChain(_authChain);
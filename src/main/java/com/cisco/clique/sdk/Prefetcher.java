@@ -0,0 +1,211 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractBlock;
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.AuthBlock;
+import com.cisco.clique.sdk.chains.IdBlock;
+import com.cisco.clique.sdk.validation.AbstractValidator;
+import com.cisco.clique.sdk.validation.IdBlockValidator;
+import com.cisco.clique.sdk.validation.VerifierCache;
+import com.nimbusds.jose.jwk.ECKey;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public class Prefetcher implements Transport {
+
+    private Transport _transport;
+    private Set<String> _trustRoots;
+    private ExecutorService _executor;
+    private Map<String, ECKey> _keys;
+    private Map<URI, AbstractChain<IdBlock>> _idChains;
+    private volatile boolean _released;
+
+    public Prefetcher(Transport transport, Set<String> trustRoots, ExecutorService executor) {
+        if (null == transport || null == trustRoots) {
+            throw new IllegalArgumentException("transport and trust roots must both be non-null");
+        }
+        _transport = transport;
+        _trustRoots = trustRoots;
+        _executor = executor;
+        _keys = new ConcurrentHashMap<>();
+        _idChains = new ConcurrentHashMap<>();
+        _released = false;
+    }
+
+    public Transport getTransport() {
+        return _transport;
+    }
+
+    public int prefetch(AbstractChain<?> chain) throws Exception {
+        if (null == chain) {
+            throw new IllegalArgumentException("chain must be non-null");
+        }
+        Set<String> seenPkts = new HashSet<>();
+        Set<URI> seenAccts = new HashSet<>();
+        Set<String> pkts = new HashSet<>();
+        Set<URI> accts = new HashSet<>();
+        scan(chain, seenPkts, seenAccts, pkts, accts);
+
+        // walk the dependency closure one level at a time (chain -> issuers -> their mints -> ...), fetching each
+        // level's keys and identity chains together and scanning whatever came back for the next level
+        int fetched = 0;
+        while (!pkts.isEmpty() || !accts.isEmpty()) {
+            List<Callable<AbstractChain<IdBlock>>> tasks = new ArrayList<>();
+            for (String pkt : pkts) {
+                tasks.add(new KeyFetch(pkt));
+            }
+            for (URI acct : accts) {
+                tasks.add(new IdChainFetch(acct));
+            }
+            pkts = new HashSet<>();
+            accts = new HashSet<>();
+            for (AbstractChain<IdBlock> idChain : invoke(tasks)) {
+                if (null != idChain) {
+                    scan(idChain, seenPkts, seenAccts, pkts, accts);
+                }
+            }
+            fetched += tasks.size();
+        }
+        return fetched;
+    }
+
+    public void release() {
+
+        // once validation is done the prefetched entries would only go stale, so fall back to plain pass-through
+        _released = true;
+        _keys.clear();
+        _idChains.clear();
+    }
+
+    private void scan(AbstractChain<?> chain, Set<String> seenPkts, Set<URI> seenAccts, Set<String> pkts,
+                      Set<URI> accts) throws Exception {
+        for (AbstractBlock block : chain.getBlocks()) {
+            if (_trustRoots.contains(block.getHash())) {
+                continue;
+            }
+            String pkt = block.getKid();
+            if (null != pkt && seenPkts.add(pkt) && !VerifierCache.getInstance().isCached(pkt)) {
+                pkts.add(pkt);
+            }
+
+            // self-issued blocks are checked against the chain's own keys, everything else against its issuer
+            URI issuer = block.getIssuer();
+            if (null != issuer && !issuer.equals(block.getSubject()) && seenAccts.add(issuer)) {
+                accts.add(issuer);
+            }
+        }
+    }
+
+    private List<AbstractChain<IdBlock>> invoke(Collection<Callable<AbstractChain<IdBlock>>> tasks)
+            throws Exception {
+        List<AbstractChain<IdBlock>> results = new ArrayList<>();
+        if (null == _executor || tasks.size() < 2) {
+            for (Callable<AbstractChain<IdBlock>> task : tasks) {
+                results.add(task.call());
+            }
+            return results;
+        }
+        try {
+            for (Future<AbstractChain<IdBlock>> future : _executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    @Override
+    public void putKey(ECKey key) throws Exception {
+        _transport.putKey(key);
+    }
+
+    @Override
+    public ECKey getKey(String pkt) throws Exception {
+        ECKey key = _released ? null : _keys.get(pkt);
+        return (null != key) ? key : _transport.getKey(pkt);
+    }
+
+    @Override
+    public void putIdChain(AbstractChain<IdBlock> chain) throws Exception {
+        _idChains.remove(chain.getSubject());
+        _transport.putIdChain(chain);
+    }
+
+    @Override
+    public AbstractChain<IdBlock> getIdChain(AbstractValidator<IdBlock> validator, URI uri) throws Exception {
+
+        // handing back the same prefetched object every time also lets its validation state carry over between
+        // the blocks that name it as issuer
+        AbstractChain<IdBlock> chain = _released ? null : _idChains.get(uri);
+        return (null != chain) ? chain : _transport.getIdChain(validator, uri);
+    }
+
+    @Override
+    public void putAuthChain(AbstractChain<AuthBlock> chain) throws Exception {
+        _transport.putAuthChain(chain);
+    }
+
+    @Override
+    public AbstractChain<AuthBlock> getAuthChain(AbstractValidator<AuthBlock> validator, URI uri) throws Exception {
+        return _transport.getAuthChain(validator, uri);
+    }
+
+    @Override
+    public void clear() {
+        _keys.clear();
+        _idChains.clear();
+        _transport.clear();
+    }
+
+    private class KeyFetch implements Callable<AbstractChain<IdBlock>> {
+        private String _pkt;
+
+        KeyFetch(String pkt) {
+            _pkt = pkt;
+        }
+
+        @Override
+        public AbstractChain<IdBlock> call() throws Exception {
+            ECKey key = _transport.getKey(_pkt);
+            if (null != key) {
+                _keys.put(_pkt, key);
+            }
+            return null;
+        }
+    }
+
+    private class IdChainFetch implements Callable<AbstractChain<IdBlock>> {
+        private URI _acct;
+
+        IdChainFetch(URI acct) {
+            _acct = acct;
+        }
+
+        @Override
+        public AbstractChain<IdBlock> call() throws Exception {
+
+            // fetched chains are bound to this transport so that validating them also reads the prefetched entries
+            AbstractChain<IdBlock> chain = _transport.getIdChain(
+                    new IdBlockValidator(Prefetcher.this, _trustRoots), _acct);
+            if (null != chain) {
+                _idChains.put(_acct, chain);
+            }
+            return chain;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.cisco.clique.sdk;
+
+import java.net.URI;
+
+public interface PreloadListener {
+
+    // called from the preloading threads once per chain, error is null when the chain loaded and validated; anything
+    // thrown from here is reported in the preload's failures for that chain
+    void preloaded(URI uri, Exception error, int completed, int total);
+}
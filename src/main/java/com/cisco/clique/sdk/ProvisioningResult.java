@@ -0,0 +1,45 @@
+package com.cisco.clique.sdk;
+
+import java.net.URI;
+
+public class ProvisioningResult {
+
+    private URI _acct;
+    private Status _status;
+    private Identity _identity;
+    private Exception _error;
+
+    ProvisioningResult(URI acct, Status status, Identity identity, Exception error) {
+        _acct = acct;
+        _status = status;
+        _identity = identity;
+        _error = error;
+    }
+
+    public URI getAcct() {
+        return _acct;
+    }
+
+    public Status getStatus() {
+        return _status;
+    }
+
+    public Identity getIdentity() {
+        return _identity;
+    }
+
+    public Exception getError() {
+        return _error;
+    }
+
+    @Override
+    public String toString() {
+        return _acct + ": " + _status + ((null != _error) ? " (" + _error.getMessage() + ")" : "");
+    }
+
+    public enum Status {
+        CREATED,
+        ALREADY_EXISTS,
+        FAILED
+    }
+}
@@ -4,6 +4,8 @@ import com.cisco.clique.sdk.chains.IdBlock;
 import com.cisco.clique.sdk.chains.IdChain;
 import com.cisco.clique.sdk.validation.AbstractValidator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.nimbusds.jose.jwk.ECKey;
 
@@ -11,7 +13,11 @@ import java.net.URI;
 
 public class PublicIdentity {
 
-    protected static final ObjectMapper _mapper = JsonMapperFactory.getInstance().createMapper();
+    protected static final ObjectMapper _mapper = JsonMapperFactory.getInstance().getMapper();
+    protected static final ObjectReader _objectReader = JsonMapperFactory.getInstance().getObjectReader();
+    protected static final ObjectReader _treeReader = JsonMapperFactory.getInstance().getTreeReader();
+    protected static final ObjectWriter _writer = JsonMapperFactory.getInstance().getWriter();
+    protected static final ObjectWriter _prettyWriter = JsonMapperFactory.getInstance().getPrettyWriter();
     protected IdChain _idChain;
 
     PublicIdentity() {
@@ -22,7 +28,7 @@ public class PublicIdentity {
     }
 
     public PublicIdentity(AbstractValidator<IdBlock> validator, String serialization) throws Exception {
-        deserializeFromJson(validator, (ObjectNode) _mapper.readTree(serialization));
+        deserializeFromJson(validator, (ObjectNode) _objectReader.readValue(serialization));
     }
 
     public URI getAcct() {
@@ -50,7 +56,7 @@ public class PublicIdentity {
     }
 
     public String serialize() throws Exception {
-        return _mapper.writeValueAsString(serializeToJson());
+        return _writer.writeValueAsString(serializeToJson());
     }
 
     protected ObjectNode serializeToJson() throws Exception {
@@ -0,0 +1,350 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.AuthBlock;
+import com.cisco.clique.sdk.chains.IdBlock;
+import com.cisco.clique.sdk.validation.AbstractValidator;
+import com.cisco.clique.sdk.validation.AuthBlockValidator;
+import com.cisco.clique.sdk.validation.IdBlockValidator;
+import com.nimbusds.jose.jwk.ECKey;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public class ShardedTransport implements Transport, BatchTransport, SnapshotTransport, ChainPublisher {
+
+    private static final int VIRTUAL_NODES_PER_SHARD = 128;
+    private List<Transport> _shards;
+    private TreeMap<Long, Transport> _ring;
+    private ExecutorService _executor;
+
+    public ShardedTransport(List<Transport> shards) {
+        this(shards, null);
+    }
+
+    public ShardedTransport(List<Transport> shards, ExecutorService executor) {
+        if (null == shards || shards.isEmpty()) {
+            throw new IllegalArgumentException("at least one shard transport must be provided");
+        }
+        _shards = new ArrayList<>(shards);
+        _executor = executor;
+        _ring = new TreeMap<>();
+        for (int i = 0; i < _shards.size(); i++) {
+            Transport shard = _shards.get(i);
+            if (null == shard) {
+                throw new IllegalArgumentException("shard transports must be non-null");
+            }
+            for (int j = 0; j < VIRTUAL_NODES_PER_SHARD; j++) {
+                _ring.put(hash("shard-" + i + "-" + j), shard);
+            }
+        }
+    }
+
+    public List<Transport> getShards() {
+        return _shards;
+    }
+
+    Transport getShard(String key) {
+        if (null == key) {
+            throw new IllegalArgumentException("shard key must be non-null");
+        }
+
+        // walk clockwise around the ring to the first virtual node at or after the key's position
+        SortedMap<Long, Transport> tail = _ring.tailMap(hash(key));
+        return tail.isEmpty() ? _ring.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+
+    @Override
+    public void putKey(ECKey key) throws Exception {
+        String pkt = key.toPublicJWK().computeThumbprint().toString();
+        getShard(pkt).putKey(key);
+    }
+
+    @Override
+    public ECKey getKey(String pkt) throws Exception {
+        return getShard(pkt).getKey(pkt);
+    }
+
+    @Override
+    public void putIdChain(AbstractChain<IdBlock> chain) throws Exception {
+        getShard(chain.getSubject().toString()).putIdChain(chain);
+    }
+
+    @Override
+    public AbstractChain<IdBlock> getIdChain(AbstractValidator<IdBlock> validator, URI uri) throws Exception {
+        return getShard(uri.toString()).getIdChain(validator, uri);
+    }
+
+    @Override
+    public void putAuthChain(AbstractChain<AuthBlock> chain) throws Exception {
+        getShard(chain.getSubject().toString()).putAuthChain(chain);
+    }
+
+    @Override
+    public AbstractChain<AuthBlock> getAuthChain(AbstractValidator<AuthBlock> validator, URI uri) throws Exception {
+        return getShard(uri.toString()).getAuthChain(validator, uri);
+    }
+
+    @Override
+    public void commit(Transaction transaction) throws Exception {
+
+        // split the batch into one sub-transaction per shard; each shard applies its part atomically
+        Map<Transport, Transaction> partitions = new LinkedHashMap<>();
+        for (ECKey key : transaction.getKeys()) {
+            partition(partitions, key.toPublicJWK().computeThumbprint().toString()).putKey(key);
+        }
+        for (AbstractChain<IdBlock> chain : transaction.getIdChains()) {
+            partition(partitions, chain.getSubject().toString()).putIdChain(chain);
+        }
+        for (AbstractChain<AuthBlock> chain : transaction.getAuthChains()) {
+            partition(partitions, chain.getSubject().toString()).putAuthChain(chain);
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (final Transaction partition : partitions.values()) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    partition.commit();
+                    return null;
+                }
+            });
+        }
+        invokeAll(tasks);
+    }
+
+    @Override
+    public Snapshot snapshot() throws Exception {
+
+        // every shard pins its own version; shards keep separate clocks, so the view is consistent shard by shard
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (Transport shard : _shards) {
+            snapshots.add(Transports.snapshot(shard));
+        }
+        return new ShardedSnapshot(snapshots, _executor);
+    }
+
+    @Override
+    public void subscribe(ChainListener listener) {
+        for (Transport shard : _shards) {
+            Transports.publisher(shard).subscribe(listener);
+        }
+    }
+
+    @Override
+    public void subscribe(URI uri, ChainListener listener) {
+        Transports.publisher(getShard(uri.toString())).subscribe(uri, listener);
+    }
+
+    @Override
+    public void unsubscribe(ChainListener listener) {
+        for (Transport shard : _shards) {
+            Transports.unsubscribe(shard, listener);
+        }
+    }
+
+    public Map<String, ECKey> getKeys(Collection<String> pkts) throws Exception {
+        if (null == pkts) {
+            throw new IllegalArgumentException("pkts must be non-null");
+        }
+        Map<Transport, List<String>> partitions = new LinkedHashMap<>();
+        for (String pkt : pkts) {
+            partition(partitions, pkt, pkt);
+        }
+        List<Callable<Map<String, ECKey>>> tasks = new ArrayList<>();
+        for (final Map.Entry<Transport, List<String>> partition : partitions.entrySet()) {
+            tasks.add(new Callable<Map<String, ECKey>>() {
+                @Override
+                public Map<String, ECKey> call() throws Exception {
+                    Map<String, ECKey> keys = new HashMap<>();
+                    for (String pkt : partition.getValue()) {
+                        ECKey key = partition.getKey().getKey(pkt);
+                        if (null != key) {
+                            keys.put(pkt, key);
+                        }
+                    }
+                    return keys;
+                }
+            });
+        }
+        return merge(invokeAll(tasks));
+    }
+
+    public Map<URI, AbstractChain<IdBlock>> getIdChains(Collection<URI> uris, final Set<String> trustRoots)
+            throws Exception {
+        if (null == uris || null == trustRoots) {
+            throw new IllegalArgumentException("uris and trust roots must both be non-null");
+        }
+        Map<Transport, List<URI>> partitions = new LinkedHashMap<>();
+        for (URI uri : uris) {
+            partition(partitions, uri.toString(), uri);
+        }
+        List<Callable<Map<URI, AbstractChain<IdBlock>>>> tasks = new ArrayList<>();
+        for (final Map.Entry<Transport, List<URI>> partition : partitions.entrySet()) {
+            tasks.add(new Callable<Map<URI, AbstractChain<IdBlock>>>() {
+                @Override
+                public Map<URI, AbstractChain<IdBlock>> call() throws Exception {
+                    Map<URI, AbstractChain<IdBlock>> chains = new HashMap<>();
+                    for (URI uri : partition.getValue()) {
+                        AbstractChain<IdBlock> chain = partition.getKey().getIdChain(
+                                new IdBlockValidator(ShardedTransport.this, trustRoots), uri);
+                        if (null != chain) {
+                            chains.put(uri, chain);
+                        }
+                    }
+                    return chains;
+                }
+            });
+        }
+        return merge(invokeAll(tasks));
+    }
+
+    public Map<URI, AbstractChain<AuthBlock>> getAuthChains(Collection<URI> uris, final Set<String> trustRoots)
+            throws Exception {
+        if (null == uris || null == trustRoots) {
+            throw new IllegalArgumentException("uris and trust roots must both be non-null");
+        }
+        Map<Transport, List<URI>> partitions = new LinkedHashMap<>();
+        for (URI uri : uris) {
+            partition(partitions, uri.toString(), uri);
+        }
+        List<Callable<Map<URI, AbstractChain<AuthBlock>>>> tasks = new ArrayList<>();
+        for (final Map.Entry<Transport, List<URI>> partition : partitions.entrySet()) {
+            tasks.add(new Callable<Map<URI, AbstractChain<AuthBlock>>>() {
+                @Override
+                public Map<URI, AbstractChain<AuthBlock>> call() throws Exception {
+                    Map<URI, AbstractChain<AuthBlock>> chains = new HashMap<>();
+                    for (URI uri : partition.getValue()) {
+                        AbstractChain<AuthBlock> chain = partition.getKey().getAuthChain(
+                                new AuthBlockValidator(ShardedTransport.this, trustRoots), uri);
+                        if (null != chain) {
+                            chains.put(uri, chain);
+                        }
+                    }
+                    return chains;
+                }
+            });
+        }
+        return merge(invokeAll(tasks));
+    }
+
+    @Override
+    public void clear() {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (final Transport shard : _shards) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    shard.clear();
+                    return null;
+                }
+            });
+        }
+        try {
+            invokeAll(tasks);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("failed to clear shard transports", e);
+        }
+    }
+
+    private <T> void partition(Map<Transport, List<T>> partitions, String key, T item) {
+        Transport shard = getShard(key);
+        List<T> items = partitions.get(shard);
+        if (null == items) {
+            items = new ArrayList<>();
+            partitions.put(shard, items);
+        }
+        items.add(item);
+    }
+
+    private Transaction partition(Map<Transport, Transaction> partitions, String key) {
+        Transport shard = getShard(key);
+        Transaction transaction = partitions.get(shard);
+        if (null == transaction) {
+            transaction = new Transaction(shard);
+            partitions.put(shard, transaction);
+        }
+        return transaction;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) throws Exception {
+        List<T> results = new ArrayList<>();
+
+        // run in the calling thread if there's no executor or nothing to gain from fanning out
+        if (null == _executor || tasks.size() < 2) {
+            for (Callable<T> task : tasks) {
+                results.add(task.call());
+            }
+            return results;
+        }
+
+        for (Future<T> future : _executor.invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    private static <K, V> Map<K, V> merge(List<Map<K, V>> maps) {
+        Map<K, V> merged = new HashMap<>();
+        for (Map<K, V> map : maps) {
+            merged.putAll(map);
+        }
+        return merged;
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (digest[i] & 0xff);
+            }
+            return value;
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 message digest is not available", e);
+        }
+    }
+
+    private static final class ShardedSnapshot extends ShardedTransport implements Snapshot {
+        private final List<Snapshot> _snapshots;
+
+        ShardedSnapshot(List<Snapshot> snapshots, ExecutorService executor) {
+            super(new ArrayList<Transport>(snapshots), executor);
+            _snapshots = snapshots;
+        }
+
+        @Override
+        public Snapshot snapshot() {
+            return this;
+        }
+
+        @Override
+        public void release() {
+            for (Snapshot snapshot : _snapshots) {
+                snapshot.release();
+            }
+        }
+    }
+}
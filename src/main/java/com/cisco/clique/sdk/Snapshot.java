@@ -0,0 +1,6 @@
+package com.cisco.clique.sdk;
+
+public interface Snapshot extends Transport {
+
+    void release();
+}
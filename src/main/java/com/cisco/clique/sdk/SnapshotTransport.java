@@ -0,0 +1,6 @@
+package com.cisco.clique.sdk;
+
+public interface SnapshotTransport {
+
+    Snapshot snapshot() throws Exception;
+}
@@ -0,0 +1,228 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.AuthBlock;
+import com.cisco.clique.sdk.chains.AuthChain;
+import com.cisco.clique.sdk.chains.IdBlock;
+import com.cisco.clique.sdk.chains.IdChain;
+import com.cisco.clique.sdk.validation.AbstractValidator;
+import com.nimbusds.jose.jwk.ECKey;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class Transaction implements Transport, BatchTransport, ChainPublisher {
+
+    private Transport _transport;
+    private Map<String, ECKey> _keys;
+    private Map<URI, AbstractChain<IdBlock>> _idChains;
+    private Map<URI, AbstractChain<AuthBlock>> _authChains;
+    private Map<URI, AbstractChain<IdBlock>> _idCopies;
+    private Map<URI, AbstractChain<AuthBlock>> _authCopies;
+    private boolean _open;
+    private boolean _rolledBack;
+
+    public Transaction(Transport transport) {
+        if (null == transport) {
+            throw new IllegalArgumentException("transport must be non-null");
+        }
+        _transport = transport;
+        _keys = new LinkedHashMap<>();
+        _idChains = new LinkedHashMap<>();
+        _authChains = new LinkedHashMap<>();
+        _idCopies = new HashMap<>();
+        _authCopies = new HashMap<>();
+        _open = true;
+        _rolledBack = false;
+    }
+
+    public Transport getTransport() {
+        return _transport;
+    }
+
+    public synchronized boolean isOpen() {
+        return _open;
+    }
+
+    public synchronized Collection<ECKey> getKeys() {
+        return new ArrayList<>(_keys.values());
+    }
+
+    public synchronized Collection<AbstractChain<IdBlock>> getIdChains() {
+        return new ArrayList<>(_idChains.values());
+    }
+
+    public synchronized Collection<AbstractChain<AuthBlock>> getAuthChains() {
+        return new ArrayList<>(_authChains.values());
+    }
+
+    public synchronized boolean isEmpty() {
+        return _keys.isEmpty() && _idChains.isEmpty() && _authChains.isEmpty();
+    }
+
+    public synchronized void commit() throws Exception {
+        if (!_open) {
+            throw new IllegalStateException("transaction has already been committed or rolled back");
+        }
+
+        // publish everything in one batch, then behave as a pass-through to the underlying transport
+        if (!isEmpty()) {
+            Transports.commit(_transport, this);
+        }
+        _open = false;
+        discard();
+    }
+
+    public synchronized void rollback() {
+        if (!_open) {
+            throw new IllegalStateException("transaction has already been committed or rolled back");
+        }
+        _open = false;
+        _rolledBack = true;
+        discard();
+    }
+
+    private void discard() {
+        _keys.clear();
+        _idChains.clear();
+        _authChains.clear();
+        _idCopies.clear();
+        _authCopies.clear();
+    }
+
+    private boolean passThrough() {
+
+        // once committed, whatever was created in the transaction keeps publishing directly; once rolled back it
+        // must not, or the writes it was meant to discard would trickle through one at a time
+        if (_rolledBack) {
+            throw new IllegalStateException("transaction has been rolled back");
+        }
+        return !_open;
+    }
+
+    @Override
+    public synchronized void putKey(ECKey key) throws Exception {
+        if (passThrough()) {
+            _transport.putKey(key);
+            return;
+        }
+        _keys.put(key.toPublicJWK().computeThumbprint().toString(), key);
+    }
+
+    @Override
+    public synchronized ECKey getKey(String pkt) throws Exception {
+        ECKey key = _keys.get(pkt);
+        return (null != key) ? key : _transport.getKey(pkt);
+    }
+
+    @Override
+    public synchronized void putIdChain(AbstractChain<IdBlock> chain) throws Exception {
+        if (passThrough()) {
+            _transport.putIdChain(chain);
+            return;
+        }
+
+        // re-publishing the same chain within a transaction just replaces the pending entry
+        _idChains.put(chain.getSubject(), chain);
+    }
+
+    @Override
+    public synchronized AbstractChain<IdBlock> getIdChain(AbstractValidator<IdBlock> validator, URI uri)
+            throws Exception {
+        AbstractChain<IdBlock> chain = _idChains.get(uri);
+        if (null != chain || !_open) {
+            return (null != chain) ? chain : _transport.getIdChain(validator, uri);
+        }
+
+        // published chains may be stored by reference, so appends made in the transaction go to a private copy that
+        // only replaces the published chain on commit
+        chain = _idCopies.get(uri);
+        if (null == chain) {
+            AbstractChain<IdBlock> published = _transport.getIdChain(validator, uri);
+            if (null == published) {
+                return null;
+            }
+            chain = new IdChain((null != validator) ? validator : published.getValidator(), copy(published), false);
+            _idCopies.put(uri, chain);
+        }
+        return chain;
+    }
+
+    @Override
+    public synchronized void putAuthChain(AbstractChain<AuthBlock> chain) throws Exception {
+        if (passThrough()) {
+            _transport.putAuthChain(chain);
+            return;
+        }
+        _authChains.put(chain.getSubject(), chain);
+    }
+
+    @Override
+    public synchronized AbstractChain<AuthBlock> getAuthChain(AbstractValidator<AuthBlock> validator, URI uri)
+            throws Exception {
+        AbstractChain<AuthBlock> chain = _authChains.get(uri);
+        if (null != chain || !_open) {
+            return (null != chain) ? chain : _transport.getAuthChain(validator, uri);
+        }
+        chain = _authCopies.get(uri);
+        if (null == chain) {
+            AbstractChain<AuthBlock> published = _transport.getAuthChain(validator, uri);
+            if (null == published) {
+                return null;
+            }
+            chain = new AuthChain((null != validator) ? validator : published.getValidator(), copy(published), false);
+            _authCopies.put(uri, chain);
+        }
+        return chain;
+    }
+
+    private static ByteBuffer copy(AbstractChain<?> chain) throws Exception {
+        return ByteBuffer.wrap(chain.serialize(false).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public synchronized void commit(Transaction transaction) throws Exception {
+        if (passThrough()) {
+            Transports.commit(_transport, transaction);
+            return;
+        }
+
+        // a nested transaction folds its pending writes into this one
+        for (ECKey key : transaction.getKeys()) {
+            putKey(key);
+        }
+        for (AbstractChain<IdBlock> chain : transaction.getIdChains()) {
+            putIdChain(chain);
+        }
+        for (AbstractChain<AuthBlock> chain : transaction.getAuthChains()) {
+            putAuthChain(chain);
+        }
+    }
+
+    @Override
+    public void subscribe(ChainListener listener) {
+        Transports.publisher(_transport).subscribe(listener);
+    }
+
+    @Override
+    public void subscribe(URI uri, ChainListener listener) {
+        Transports.publisher(_transport).subscribe(uri, listener);
+    }
+
+    @Override
+    public void unsubscribe(ChainListener listener) {
+        Transports.publisher(_transport).unsubscribe(listener);
+    }
+
+    @Override
+    public synchronized void clear() {
+        discard();
+        _transport.clear();
+    }
+}
@@ -0,0 +1,101 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.AuthBlock;
+import com.cisco.clique.sdk.chains.IdBlock;
+import com.nimbusds.jose.jwk.ECKey;
+
+import java.net.URI;
+
+public final class Transports {
+
+    private Transports() {
+    }
+
+    public static void commit(Transport transport, Transaction transaction) throws Exception {
+        if (null == transport || null == transaction) {
+            throw new IllegalArgumentException("transport and transaction must both be non-null");
+        }
+        if (transport instanceof BatchTransport) {
+            ((BatchTransport) transport).commit(transaction);
+            return;
+        }
+
+        // a transport without batches gets the writes one at a time, keys first so every chain's keys are published
+        // before the chain that refers to them
+        for (ECKey key : transaction.getKeys()) {
+            transport.putKey(key);
+        }
+        for (AbstractChain<IdBlock> chain : transaction.getIdChains()) {
+            transport.putIdChain(chain);
+        }
+        for (AbstractChain<AuthBlock> chain : transaction.getAuthChains()) {
+            transport.putAuthChain(chain);
+        }
+    }
+
+    public static Snapshot snapshot(Transport transport) throws Exception {
+        if (null == transport) {
+            throw new IllegalArgumentException("transport must be non-null");
+        }
+        if (transport instanceof SnapshotTransport) {
+            return ((SnapshotTransport) transport).snapshot();
+        }
+        return new PassThroughSnapshot(transport);
+    }
+
+    public static boolean subscribe(Transport transport, ChainListener listener) {
+        if (null == transport || null == listener) {
+            throw new IllegalArgumentException("transport and listener must both be non-null");
+        }
+        if (!(transport instanceof ChainPublisher)) {
+            return false;
+        }
+
+        // wrappers always implement the interface but can only deliver what the transport they wrap publishes
+        try {
+            ((ChainPublisher) transport).subscribe(listener);
+            return true;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    public static boolean subscribe(Transport transport, URI uri, ChainListener listener) {
+        if (null == transport || null == uri || null == listener) {
+            throw new IllegalArgumentException("transport, uri and listener must all be non-null");
+        }
+        if (!(transport instanceof ChainPublisher)) {
+            return false;
+        }
+        try {
+            ((ChainPublisher) transport).subscribe(uri, listener);
+            return true;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    public static void unsubscribe(Transport transport, ChainListener listener) {
+        if (null == transport || null == listener) {
+            throw new IllegalArgumentException("transport and listener must both be non-null");
+        }
+        if (!(transport instanceof ChainPublisher)) {
+            return;
+        }
+        try {
+            ((ChainPublisher) transport).unsubscribe(listener);
+        } catch (UnsupportedOperationException e) {
+            // nothing can have been subscribed
+        }
+    }
+
+    static ChainPublisher publisher(Transport transport) {
+
+        // for wrappers forwarding subscriptions: fail the way a wrapper over a non-publishing transport is expected to
+        if (!(transport instanceof ChainPublisher)) {
+            throw new UnsupportedOperationException("the underlying transport doesn't publish chain events");
+        }
+        return (ChainPublisher) transport;
+    }
+}
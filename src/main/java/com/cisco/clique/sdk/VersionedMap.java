@@ -0,0 +1,97 @@
+package com.cisco.clique.sdk;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+final class VersionedMap<K, V> extends AbstractMap<K, V> {
+
+    private final AtomicLong _clock;
+    private final Map<K, Version<V>> _entries;
+
+    VersionedMap(AtomicLong clock) {
+        _clock = clock;
+        _entries = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public V get(Object key) {
+        return get(key, _clock.get());
+    }
+
+    V get(Object key, long version) {
+
+        // versions are linked newest first, a reader takes the newest one its version can see and never locks
+        for (Version<V> entry = _entries.get(key); null != entry; entry = entry._older) {
+            if (entry._version <= version) {
+                return entry._value;
+            }
+        }
+        return null;
+    }
+
+    void put(K key, V value, long version, long oldestPinned) {
+
+        // writes are serialized by the caller; anything older than the newest version the oldest pinned reader can
+        // see is unreachable and cut off
+        Version<V> entry = new Version<>(version, value, _entries.get(key));
+        for (Version<V> older = entry; null != older; older = older._older) {
+            if (older._version <= oldestPinned) {
+                older._older = null;
+                break;
+            }
+        }
+        _entries.put(key, entry);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return null != get(key);
+    }
+
+    @Override
+    public void clear() {
+        _entries.clear();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        long version = _clock.get();
+        final List<Entry<K, V>> entries = new ArrayList<>();
+        for (K key : _entries.keySet()) {
+            V value = get(key, version);
+            if (null != value) {
+                entries.add(new SimpleImmutableEntry<>(key, value));
+            }
+        }
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return entries.iterator();
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+
+    private static final class Version<V> {
+        private final long _version;
+        private final V _value;
+        private volatile Version<V> _older;
+
+        Version(long version, V value, Version<V> older) {
+            _version = version;
+            _value = value;
+            _older = older;
+        }
+    }
+}
@@ -1,28 +1,43 @@
 package com.cisco.clique.sdk.chains;
 
 import com.cisco.clique.sdk.JsonMapperFactory;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
 import com.nimbusds.jose.crypto.ECDSASigner;
 import com.nimbusds.jose.crypto.ECDSAVerifier;
 import com.nimbusds.jose.jwk.ECKey;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
+import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.binary.Hex;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.text.ParseException;
 
 public abstract class AbstractBlock {
 
-    protected static final ObjectMapper _mapper = JsonMapperFactory.getInstance().createMapper();
-    protected ECKey _key;
-    protected SignedJWT _jwt;
-    protected String _serialization;
+    protected static final ObjectMapper _mapper = JsonMapperFactory.getInstance().getMapper();
+    protected static final ObjectReader _objectReader = JsonMapperFactory.getInstance().getObjectReader();
+    protected static final ObjectReader _treeReader = JsonMapperFactory.getInstance().getTreeReader();
+    protected static final ObjectWriter _writer = JsonMapperFactory.getInstance().getWriter();
+    protected static final ObjectWriter _prettyWriter = JsonMapperFactory.getInstance().getPrettyWriter();
+    protected volatile ECKey _key;
+    protected volatile SignedJWT _jwt;
+    protected volatile String _serialization;
+    private volatile ByteBuffer _raw;
+    private volatile String _kid;
+    private volatile String _hash;
+    private volatile Claims _claims;
+    private volatile BlockSource _source;
 
     protected AbstractBlock(ECKey key, JWTClaimsSet.Builder claimsBuilder) throws Exception {
         if (null == key || null == claimsBuilder) {
@@ -45,16 +60,47 @@ public abstract class AbstractBlock {
         _jwt = SignedJWT.parse(_serialization);
     }
 
-    public SignedJWT getJwt() {
-        return _jwt;
+    protected AbstractBlock(ByteBuffer jws) throws Exception {
+        if (null == jws) {
+            throw new IllegalArgumentException();
+        }
+
+        // keep the compact JWS as its own exact-size copy, so a block doesn't pin the whole response or mapped
+        // segment it was cut from, and decode nothing but the protected header until one of its claims is read
+        ByteBuffer raw = ByteBuffer.wrap(bytes(jws)).asReadOnlyBuffer();
+        int dot = indexOf(raw, (byte) '.', 0);
+        if (dot < 1 || indexOf(raw, (byte) '.', dot + 1) < 0) {
+            throw new ParseException("invalid serialized JWS object: missing part delimiters", 0);
+        }
+        byte[] header = new byte[dot];
+        raw.duplicate().get(header);
+        JsonNode kid = ((ObjectNode) _objectReader.readValue(Base64.decodeBase64(header))).get("kid");
+        _key = null;
+        _serialization = null;
+        _jwt = null;
+        _kid = (null != kid) ? kid.asText() : null;
+        _raw = raw;
+    }
+
+    public SignedJWT getJwt() throws Exception {
+        return jwt();
     }
 
     public String getKid() {
-        return _jwt.getHeader().getKeyID();
+        SignedJWT jwt = _jwt;
+        if (null != jwt) {
+            return jwt.getHeader().getKeyID();
+        }
+        Claims claims = _claims;
+        return (null != claims) ? claims._kid : _kid;
     }
 
     public String getAntecedent() throws ParseException {
-        Object ant = _jwt.getJWTClaimsSet().getClaim("ant");
+        SignedJWT jwt = decoded();
+        if (null == jwt) {
+            return _claims._antecedent;
+        }
+        Object ant = jwt.getJWTClaimsSet().getClaim("ant");
         if (null != ant) {
             return ant.toString();
         }
@@ -64,7 +110,11 @@ public abstract class AbstractBlock {
     public URI getIssuer() {
         URI retval = null;
         try {
-            retval = URI.create(_jwt.getJWTClaimsSet().getIssuer());
+            SignedJWT jwt = decoded();
+            if (null == jwt) {
+                return _claims._issuer;
+            }
+            retval = URI.create(jwt.getJWTClaimsSet().getIssuer());
         } catch (Exception e) {
             // ignore
         }
@@ -74,36 +124,155 @@ public abstract class AbstractBlock {
     public URI getSubject() {
         URI retval = null;
         try {
-            retval = URI.create(_jwt.getJWTClaimsSet().getSubject());
+            SignedJWT jwt = decoded();
+            if (null == jwt) {
+                return _claims._subject;
+            }
+            retval = URI.create(jwt.getJWTClaimsSet().getSubject());
         } catch (Exception e) {
             // ignore
         }
         return retval;
     }
 
+    public boolean isCompact() {
+        return null != _claims;
+    }
+
+    synchronized void compact(BlockSource source) throws Exception {
+        if (null != _claims) {
+            return;
+        }
+
+        // decode everything validation and lookups read before dropping the JWT; the claims are published before the
+        // JWT is cleared, so a reader that finds no JWT always finds the claims
+        getHash();
+        compactClaims();
+        _source = source;
+        _claims = new Claims(getKid(), getAntecedent(), getIssuer(), getSubject());
+        _jwt = null;
+        _serialization = null;
+        _raw = null;
+        _key = null;
+    }
+
+    protected void compactClaims() throws Exception {
+    }
+
+    protected SignedJWT jwt() throws Exception {
+        SignedJWT jwt = decoded();
+        return (null != jwt) ? jwt : SignedJWT.parse(serialize());
+    }
+
+    private SignedJWT decoded() throws ParseException {
+        SignedJWT jwt = _jwt;
+        if (null != jwt || null != _claims) {
+            return jwt;
+        }
+
+        // first claim read on a block parsed from a buffer, the full decode happens once and the slice is let go
+        synchronized (this) {
+            if (null == _jwt && null == _claims) {
+                _jwt = SignedJWT.parse(rawSerialization());
+            }
+            return _jwt;
+        }
+    }
+
+    private synchronized String rawSerialization() {
+        if (null == _serialization) {
+            _serialization = new String(bytes(_raw), StandardCharsets.US_ASCII);
+            _raw = null;
+        }
+        return _serialization;
+    }
+
     public String getHash() throws Exception {
-        byte[] bytes = serialize().getBytes(StandardCharsets.UTF_8);
-        return new String(
-                Hex.encodeHex(MessageDigest.getInstance("SHA-256").digest(bytes)));
+
+        // a block's serialization never changes once signed, so its hash is computed once
+        String hash = _hash;
+        if (null == hash) {
+            ByteBuffer raw = _raw;
+            if (null != raw) {
+
+                // a compact JWS is plain ASCII, so its bytes are exactly the UTF-8 bytes of its string form
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(raw.duplicate());
+                hash = new String(Hex.encodeHex(digest.digest()));
+            } else {
+                hash = hash(serialize());
+            }
+            _hash = hash;
+        }
+        return hash;
+    }
+
+    private static String hash(String serialization) throws Exception {
+        byte[] bytes = serialization.getBytes(StandardCharsets.UTF_8);
+        return new String(Hex.encodeHex(MessageDigest.getInstance("SHA-256").digest(bytes)));
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte value, int from) {
+        for (int i = from; i < buffer.limit(); i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     public String serialize() throws Exception {
-        if (null == _serialization) {
+        String serialization = _serialization;
+        if (null != serialization) {
+            return serialization;
+        }
+        if (null != _claims) {
+            return reload();
+        }
+
+        // compact() drops the serialization, the raw bytes and the JWT together under the lock, so which of them is
+        // still there is checked and read under it too
+        synchronized (this) {
+            if (null != _serialization) {
+                return _serialization;
+            }
+            if (null != _claims) {
+                return reload();
+            }
+            if (null != _raw) {
+
+                // re-serializing a block parsed from a buffer only needs its bytes as a string, not its claims
+                return rawSerialization();
+            }
             if (null == _key) {
                 throw new IllegalStateException();
             }
             _jwt.sign(new ECDSASigner(_key));
             _serialization = _jwt.serialize();
+            return _serialization;
         }
-        return _serialization;
+    }
+
+    private String reload() throws Exception {
+        return _source.load(this);
     }
 
     public boolean verify(ECKey key) throws Exception {
-        return _jwt.verify(new ECDSAVerifier(key.toECPublicKey()));
+        return verify(new ECDSAVerifier(key.toECPublicKey()));
+    }
+
+    public boolean verify(JWSVerifier verifier) throws Exception {
+        return jwt().verify(verifier);
     }
 
     public ObjectNode getPayload() throws Exception {
-        return (ObjectNode) _mapper.readTree(_jwt.getPayload().toString());
+        return (ObjectNode) _objectReader.readValue(jwt().getPayload().toString());
     }
 
     @Override
@@ -116,7 +285,7 @@ public abstract class AbstractBlock {
         }
         AbstractBlock that = (AbstractBlock) obj;
         try {
-            return serialize().equals(that.serialize());
+            return getHash().equals(that.getHash());
         } catch (Exception e) {
             return false;
         }
@@ -124,11 +293,37 @@ public abstract class AbstractBlock {
 
     @Override
     public int hashCode() {
-        return _serialization.hashCode();
+        try {
+            return getHash().hashCode();
+        } catch (Exception e) {
+            return 0;
+        }
     }
 
     @Override
     public String toString() {
-        return _jwt.getPayload().toString();
+        try {
+            return jwt().getPayload().toString();
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    interface BlockSource {
+        String load(AbstractBlock block) throws Exception;
+    }
+
+    private static final class Claims {
+        private final String _kid;
+        private final String _antecedent;
+        private final URI _issuer;
+        private final URI _subject;
+
+        Claims(String kid, String antecedent, URI issuer, URI subject) {
+            _kid = kid;
+            _antecedent = antecedent;
+            _issuer = issuer;
+            _subject = subject;
+        }
     }
 }
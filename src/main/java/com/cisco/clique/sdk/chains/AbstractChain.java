@@ -2,32 +2,67 @@ package com.cisco.clique.sdk.chains;
 
 import com.cisco.clique.sdk.JsonMapperFactory;
 import com.cisco.clique.sdk.validation.AbstractValidator;
+import com.cisco.clique.sdk.validation.ValidationState;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
 
 public abstract class AbstractChain<T extends AbstractBlock> {
 
-    protected static final ObjectMapper _mapper = JsonMapperFactory.getInstance().createMapper();
+    protected static final ObjectMapper _mapper = JsonMapperFactory.getInstance().getMapper();
+    protected static final ObjectReader _chainReader = JsonMapperFactory.getInstance().getChainReader();
+    protected static final ObjectWriter _writer = JsonMapperFactory.getInstance().getWriter();
+    protected static final ObjectWriter _prettyWriter = JsonMapperFactory.getInstance().getPrettyWriter();
     protected AbstractValidator<T> _validator;
-    protected ArrayList<T> _blocks;
+    protected volatile BlockList<T> _blocks;
+    protected volatile ValidationState<T> _state;
+    private final ChainSerializer _prettySerializer;
+    private final ChainSerializer _compactSerializer;
+    private final BlockStore _store;
+    private final AbstractChain<T> _origin;
+    private volatile boolean _lean;
+    private int _compacted;
 
     protected AbstractChain(AbstractValidator<T> validator) {
+        this(validator, (AbstractChain<T>) null);
+    }
+
+    private AbstractChain(AbstractValidator<T> validator, AbstractChain<T> origin) {
+        _origin = origin;
         _validator = validator;
-        _blocks = new ArrayList<>();
+        _blocks = new BlockList<>();
+        _state = validator.initialState();
+        _prettySerializer = new ChainSerializer(_writer, true);
+        _compactSerializer = new ChainSerializer(_writer, false);
+        _store = new BlockStore();
+        _lean = false;
+        _compacted = 0;
     }
 
     protected AbstractChain(AbstractValidator<T> validator, ArrayNode array) throws Exception {
+        this(validator, array, true);
+    }
+
+    protected AbstractChain(AbstractValidator<T> validator, ArrayNode array, boolean validate) throws Exception {
         this(validator);
         if (null == array) {
             throw new IllegalArgumentException();
         }
         for (JsonNode object : array) {
-            addBlock(object.asText());
+            if (validate) {
+                addBlock(object.asText());
+            } else {
+                appendBlock(parseBlock(object.asText()));
+            }
         }
     }
 
@@ -36,30 +71,175 @@ public abstract class AbstractChain<T extends AbstractBlock> {
         if (null == serialization) {
             throw new IllegalArgumentException();
         }
-        ArrayNode array = (ArrayNode) _mapper.readTree(serialization);
+        ArrayNode array = (ArrayNode) _chainReader.readValue(serialization);
         for (JsonNode object : array) {
             addBlock(object.asText());
         }
     }
 
+    protected AbstractChain(AbstractValidator<T> validator, ByteBuffer serialization, boolean validate)
+            throws Exception {
+        this(validator);
+        if (null == serialization) {
+            throw new IllegalArgumentException();
+        }
+
+        // blocks are cut straight out of the buffer; only a chain whose strings carry JSON escapes, which a compact
+        // JWS never needs, has to go through the tree parser
+        List<ByteBuffer> slices = slices(serialization);
+        if (null == slices) {
+            byte[] bytes = new byte[serialization.remaining()];
+            serialization.duplicate().get(bytes);
+            ArrayNode array = (ArrayNode) _chainReader.readValue(bytes);
+            slices = new ArrayList<>(array.size());
+            for (JsonNode object : array) {
+                slices.add(ByteBuffer.wrap(object.asText().getBytes(StandardCharsets.US_ASCII)));
+            }
+        }
+        for (ByteBuffer slice : slices) {
+            if (validate) {
+                addBlock(parseBlock(slice));
+            } else {
+                appendBlock(parseBlock(slice));
+            }
+        }
+    }
+
+    protected AbstractChain(AbstractValidator<T> validator, AbstractChain<T> origin, List<T> blocks)
+            throws Exception {
+        this((null != validator) ? validator : validatorOf(origin), rootOf(origin, blocks));
+        ValidationState<T> state = _origin._state;
+        if (null == blocks || !isPrefix(_origin._blocks, blocks)) {
+            throw new IllegalArgumentException("blocks must be a prefix of the origin chain's blocks");
+        }
+
+        // parsed blocks never change what they say, so a view of another chain's blocks shares them rather than
+        // re-parsing, and is checked by whichever validator it was read with
+        for (T block : blocks) {
+            appendBlock(block);
+        }
+        if (state.getLastValidated() == _blocks.last() && sharesTrustWith(_origin)) {
+            _state = state;
+        }
+    }
+
+    private static <T extends AbstractBlock> AbstractValidator<T> validatorOf(AbstractChain<T> origin) {
+        if (null == origin) {
+            throw new IllegalArgumentException("origin chain must be non-null");
+        }
+        return origin._validator;
+    }
+
+    private static <T extends AbstractBlock> AbstractChain<T> rootOf(AbstractChain<T> origin, List<T> blocks) {
+        if (null == origin) {
+            throw new IllegalArgumentException("origin chain must be non-null");
+        }
+
+        // a view of a view follows the chain that one was taken from while it still holds all of its blocks, so
+        // every view of one history writes through to the same chain
+        AbstractChain<T> root = origin._origin;
+        return (null != root && null != blocks && isPrefix(root._blocks, blocks)) ? root : origin;
+    }
+
+    private static <T extends AbstractBlock> boolean isPrefix(List<T> blocks, List<T> prefix) {
+        return prefix.size() <= blocks.size()
+                && (prefix.isEmpty() || blocks.get(prefix.size() - 1) == prefix.get(prefix.size() - 1));
+    }
+
+    private boolean sharesTrustWith(AbstractChain<T> other) {
+        return _validator.getTrustRoots() == other._validator.getTrustRoots();
+    }
+
     public AbstractValidator<T> getValidator() {
         return _validator;
     }
 
-    public List<? extends AbstractBlock> getBlocks() {
+    public List<T> getBlocks() {
         return _blocks;
     }
 
-    void addBlock(T block) throws Exception {
-        validate();
-        _validator.validate(block);
-        _blocks.add(block);
+    public ValidationState<T> getValidationState() {
+        return _state;
+    }
+
+    synchronized void addBlock(T block) throws Exception {
+
+        // appends are serialized, readers just pick up whichever immutable block list version is current
+        ValidationState<T> state = _validator.validate(validate(), block);
+        T previous = _blocks.last();
+        indexBlock(block);
+        _blocks = _blocks.append(block);
+        _state = state;
+        AbstractChain<T> origin = _origin;
+        if (null != origin) {
+            origin.appendThrough(previous, block, sharesTrustWith(origin) ? state : null);
+        }
+        if (_lean) {
+            compact();
+        }
+    }
+
+    private synchronized void appendThrough(T previous, T block, ValidationState<T> state) throws Exception {
+
+        // a block appended to a view lands on the chain it was taken from as well, unless that chain has moved on
+        // from where the view was, in which case the view has forked from it
+        if (_blocks.last() != previous) {
+            return;
+        }
+        ValidationState<T> current = _state;
+        indexBlock(block);
+        _blocks = _blocks.append(block);
+        if (null != state && current.getLastValidated() == previous) {
+            _state = state;
+        }
+        if (_lean) {
+            compact();
+        }
+    }
+
+    T headForAppend() throws Exception {
+        AbstractChain<T> origin = _origin;
+        if (null != origin) {
+            synchronized (this) {
+
+                // a view about to be appended to first catches up with whatever its origin has gained since it was
+                // taken, so holders of different views of one chain keep adding to a single history
+                ValidationState<T> shared = origin._state;
+                BlockList<T> current = origin._blocks;
+                BlockList<T> blocks = _blocks;
+                if (current.size() > blocks.size() && isPrefix(current, blocks)) {
+                    for (int i = blocks.size(); i < current.size(); i++) {
+                        indexBlock(current.get(i));
+                        blocks = blocks.append(current.get(i));
+                    }
+                    _blocks = blocks;
+                    if (shared.getLastValidated() == blocks.last() && sharesTrustWith(origin)) {
+                        _state = shared;
+                    }
+                }
+            }
+        }
+        return lastBlock();
+    }
+
+    protected void indexBlock(T block) throws Exception {
+    }
+
+    synchronized void appendBlock(T block) throws Exception {
+
+        // used when loading chains that will be validated later (e.g. by whoever fetched them from a transport)
+        indexBlock(block);
+        _blocks = _blocks.append(block);
     }
 
     abstract void addBlock(String serialization) throws Exception;
 
-    public AbstractBlock lastBlock() {
-        return (!_blocks.isEmpty()) ? _blocks.get(_blocks.size() - 1) : null;
+    abstract T parseBlock(String serialization) throws Exception;
+
+    abstract T parseBlock(ByteBuffer serialization) throws Exception;
+
+    public T lastBlock() {
+        return _blocks.last();
     }
 
     public int size() {
@@ -67,38 +247,126 @@ public abstract class AbstractChain<T extends AbstractBlock> {
     }
 
     public URI getIssuer() {
-        return (!_blocks.isEmpty()) ? _blocks.get(0).getIssuer() : null;
+        List<T> blocks = _blocks;
+        return (!blocks.isEmpty()) ? blocks.get(0).getIssuer() : null;
     }
 
     public URI getSubject() {
-        return (!_blocks.isEmpty()) ? _blocks.get(0).getSubject() : null;
+        List<T> blocks = _blocks;
+        return (!blocks.isEmpty()) ? blocks.get(0).getSubject() : null;
     }
 
     public String getHash() throws Exception {
-        return (!_blocks.isEmpty()) ? _blocks.get(0).getHash() : null;
+        List<T> blocks = _blocks;
+        return (!blocks.isEmpty()) ? blocks.get(0).getHash() : null;
+    }
+
+    public String getHeadHash() throws Exception {
+        T head = _blocks.last();
+        return (null != head) ? head.getHash() : null;
     }
 
     public String serialize() throws Exception {
-        ArrayNode array = _mapper.createArrayNode();
-        for (T block : _blocks) {
-            array.add(block.serialize());
+        return serialize(true);
+    }
+
+    public String serialize(boolean pretty) throws Exception {
+
+        // a lean chain doesn't keep a cached serialization around, that would hold on to every block's JWS again
+        if (_lean) {
+            return new ChainSerializer(_writer, pretty).serialize(_blocks);
         }
-        return _mapper
-                .writerWithDefaultPrettyPrinter()
-                .writeValueAsString(array);
+        return (pretty ? _prettySerializer : _compactSerializer).serialize(_blocks);
     }
 
-    public void validate() throws Exception {
-        if (lastBlock() != _validator.lastValidatedBlock()) {
-            _validator.reset();
-            for (T block : _blocks) {
-                _validator.validate(block);
+    public boolean isLean() {
+        return _lean;
+    }
+
+    public void setLean(boolean lean) throws Exception {
+        _lean = lean;
+        if (lean) {
+            compact();
+        }
+    }
+
+    public synchronized int compact() throws Exception {
+
+        // only blocks the current state has already validated are compacted, and never the head, which is what new
+        // blocks are checked against and what gets read most
+        ValidationState<T> state = _state;
+        BlockList<T> blocks = _blocks;
+        T lastValidated = state.getLastValidated();
+        int validated = 0;
+        for (int i = blocks.size() - 1; i >= 0 && null != lastValidated; i--) {
+            if (blocks.get(i) == lastValidated) {
+                validated = i + 1;
+                break;
             }
         }
+        int limit = Math.min(validated, blocks.size() - 1);
+        int count = 0;
+        for (int i = _compacted; i < limit; i++) {
+            T block = blocks.get(i);
+            if (!block.isCompact()) {
+                block.compact(_store.add(block.serialize()));
+                count++;
+            }
+        }
+        _compacted = Math.max(_compacted, limit);
+        if (0 != count) {
+            _prettySerializer.clear();
+            _compactSerializer.clear();
+        }
+        return count;
+    }
+
+    public ValidationState<T> validate() throws Exception {
+
+        // each pass works on its own state value and publishes it when done, so concurrent passes don't interfere;
+        // the state is read before the blocks since appends publish their blocks before their state
+        ValidationState<T> state = _state;
+        BlockList<T> blocks = _blocks;
+        if (blocks.last() == state.getLastValidated()) {
+            return state;
+        }
+
+        // a view shares validation with the chain it was taken from for as long as that chain still ends where the
+        // view does, so a pass through either one counts for both
+        AbstractChain<T> origin = unmovedOrigin(blocks);
+        if (null != origin && !sharesTrustWith(origin)) {
+            origin = null;
+        }
+        ValidationState<T> shared = (null != origin) ? origin._state : null;
+        if (null != shared && blocks.last() == shared.getLastValidated()) {
+            _state = shared;
+            return shared;
+        }
+        state = _validator.initialState();
+        for (T block : blocks) {
+            state = _validator.validate(state, block);
+        }
+        _state = state;
+        if (null != origin) {
+            origin._state = state;
+        }
+        if (_lean) {
+            compact();
+        }
+        return state;
     }
 
     public void resetValidator() {
-        _validator.reset();
+        _state = _validator.initialState();
+        AbstractChain<T> origin = unmovedOrigin(_blocks);
+        if (null != origin) {
+            origin.resetValidator();
+        }
+    }
+
+    private AbstractChain<T> unmovedOrigin(BlockList<T> blocks) {
+        AbstractChain<T> origin = _origin;
+        return (null != origin && origin._blocks.last() == blocks.last()) ? origin : null;
     }
 
     @Override
@@ -110,12 +378,31 @@ public abstract class AbstractChain<T extends AbstractBlock> {
             return false;
         }
         AbstractChain<?> that = (AbstractChain<?>) obj;
-        return _blocks.equals(that._blocks);
+
+        // every block names its antecedent's hash, so equal head hashes (at equal lengths) mean equal chains
+        BlockList<T> blocks = _blocks;
+        BlockList<?> thatBlocks = that._blocks;
+        if (blocks.size() != thatBlocks.size()) {
+            return false;
+        }
+        if (blocks.isEmpty()) {
+            return true;
+        }
+        try {
+            return blocks.last().getHash().equals(((AbstractBlock) thatBlocks.last()).getHash());
+        } catch (Exception e) {
+            return false;
+        }
     }
 
     @Override
     public int hashCode() {
-        return _blocks.hashCode();
+        T head = _blocks.last();
+        try {
+            return (null != head) ? head.getHash().hashCode() : 0;
+        } catch (Exception e) {
+            return 0;
+        }
     }
 
     @Override
@@ -125,12 +412,57 @@ public abstract class AbstractChain<T extends AbstractBlock> {
             for (T block : _blocks) {
                 array.add(block.getPayload());
             }
-            return _mapper
-                    .writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(array);
+            return _prettyWriter.writeValueAsString(array);
         } catch (Exception e) {
             e.printStackTrace();
         }
         return "";
     }
+
+    private static List<ByteBuffer> slices(ByteBuffer buffer) throws ParseException {
+        List<ByteBuffer> slices = new ArrayList<>();
+        int end = buffer.limit();
+        int i = skipWhitespace(buffer, buffer.position(), end);
+        if (i >= end || buffer.get(i) != '[') {
+            throw new ParseException("serialized chain must be a JSON array", i);
+        }
+        i = skipWhitespace(buffer, i + 1, end);
+        if (i < end && buffer.get(i) == ']') {
+            return slices;
+        }
+        while (true) {
+            if (i >= end || buffer.get(i) != '"') {
+                throw new ParseException("serialized chain must be an array of strings", i);
+            }
+            int start = ++i;
+            while (i < end && buffer.get(i) != '"') {
+                if (buffer.get(i) == '\\') {
+                    return null;
+                }
+                i++;
+            }
+            if (i >= end) {
+                throw new ParseException("unterminated string in serialized chain", start);
+            }
+            ByteBuffer slice = buffer.duplicate();
+            slice.limit(i).position(start);
+            slices.add(slice.slice());
+            i = skipWhitespace(buffer, i + 1, end);
+            if (i < end && buffer.get(i) == ']') {
+                return slices;
+            }
+            if (i >= end || buffer.get(i) != ',') {
+                throw new ParseException("expected ',' or ']' in serialized chain", i);
+            }
+            i = skipWhitespace(buffer, i + 1, end);
+        }
+    }
+
+    private static int skipWhitespace(ByteBuffer buffer, int from, int end) {
+        int i = from;
+        while (i < end && Character.isWhitespace(buffer.get(i))) {
+            i++;
+        }
+        return i;
+    }
 }
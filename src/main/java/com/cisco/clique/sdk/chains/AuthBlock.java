@@ -1,5 +1,6 @@
 package com.cisco.clique.sdk.chains;
 
+import com.cisco.clique.sdk.JsonMapperFactory;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.nimbusds.jose.jwk.ECKey;
@@ -10,28 +11,59 @@ import net.minidev.json.JSONObject;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
 public class AuthBlock extends AbstractBlock {
 
-    private AuthBlock(URI issuer, ECKey issuerKey, URI subject, JSONArray grants, String ant) throws Exception {
+    private volatile List<AuthBlock.Grant> _grants;
+    private volatile Boolean _hierarchical;
+
+    private AuthBlock(URI issuer, ECKey issuerKey, URI subject, JSONArray grants, String ant, boolean hierarchical)
+            throws Exception {
         super(issuerKey, new JWTClaimsSet.Builder()
                 .claim("iss", issuer.toString())
                 .claim("sub", (null != subject) ? subject.toString() : null)
                 .claim("grants", grants)
-                .claim("ant", ant));
+                .claim("ant", ant)
+                .claim("hier", hierarchical ? Boolean.TRUE : null));
     }
 
     AuthBlock(String serialization) throws Exception {
         super(serialization);
     }
 
+    AuthBlock(ByteBuffer serialization) throws Exception {
+        super(serialization);
+    }
+
+    @Override
+    protected void compactClaims() throws Exception {
+        _grants = Collections.unmodifiableList(getGrants());
+        _hierarchical = isHierarchical();
+    }
+
+    public boolean isHierarchical() throws Exception {
+        Boolean hierarchical = _hierarchical;
+        if (null != hierarchical) {
+            return hierarchical;
+        }
+        return Boolean.TRUE.equals(jwt().getJWTClaimsSet().getClaim("hier"));
+    }
+
     public List<AuthBlock.Grant> getGrants() throws Exception {
+        List<AuthBlock.Grant> grants = _grants;
+        if (null != grants) {
+            return grants;
+        }
         List<AuthBlock.Grant> grantList = new ArrayList<>();
-        JSONArray grantArray = (JSONArray) _jwt.getJWTClaimsSet().getClaim("grants");
+        JSONArray grantArray = (JSONArray) jwt().getJWTClaimsSet().getClaim("grants");
         for (Object grant : grantArray) {
-            grantList.add(new AuthBlock.Grant(_mapper.readTree(((JSONObject) grant).toJSONString())));
+            grantList.add(new AuthBlock.Grant(_treeReader.readTree(((JSONObject) grant).toJSONString())));
         }
         return grantList;
     }
@@ -42,6 +74,7 @@ public class AuthBlock extends AbstractBlock {
         private URI _subject;
         private ECKey _issuerKey;
         private List<AuthBlock.Grant> _grants;
+        private boolean _hierarchical;
 
         public Builder(AuthChain chain) {
             _chain = chain;
@@ -63,21 +96,26 @@ public class AuthBlock extends AbstractBlock {
             return this;
         }
 
+        public Builder setHierarchical(boolean hierarchical) {
+            _hierarchical = hierarchical;
+            return this;
+        }
+
         public Builder addGrant(AuthBlock.Grant grant) {
             _grants.add(grant);
             return this;
         }
 
         public AuthBlock build() throws Exception {
-            AbstractBlock lastBlock = _chain.lastBlock();
+            AbstractBlock lastBlock = _chain.headForAppend();
             String ant = (null != lastBlock) ? lastBlock.getHash() : null;
 
             JSONArray grantArray = new JSONArray();
             for (AuthBlock.Grant grant : _grants) {
-                grantArray.add(JSONObjectUtils.parse(grant.toString()));
+                grantArray.add(JSONObjectUtils.parse(_writer.writeValueAsString(grant.serializeToJson())));
             }
 
-            AuthBlock block = new AuthBlock(_issuer, _issuerKey, _subject, grantArray, ant);
+            AuthBlock block = new AuthBlock(_issuer, _issuerKey, _subject, grantArray, ant, _hierarchical);
 
             _chain.addBlock(block);
             return block;
@@ -89,14 +127,32 @@ public class AuthBlock extends AbstractBlock {
         private Type _type;
         private String _privilege;
         private URI _grantee;
+        private boolean _group;
+        private Date _notBefore;
+        private Date _expires;
 
         public Grant(Type type, URI grantee, String privilege) throws Exception {
+            this(type, grantee, privilege, false);
+        }
+
+        public Grant(Type type, URI grantee, String privilege, boolean group) throws Exception {
+            this(type, grantee, privilege, group, null, null);
+        }
+
+        public Grant(Type type, URI grantee, String privilege, boolean group, Date notBefore, Date expires)
+                throws Exception {
             if (null == type || null == privilege || null == grantee) {
                 throw new IllegalArgumentException();
             }
+            if (null != notBefore && null != expires && !notBefore.before(expires)) {
+                throw new IllegalArgumentException("a grant must become valid before it expires");
+            }
             _type = type;
             _grantee = grantee;
             _privilege = privilege;
+            _group = group;
+            _notBefore = notBefore;
+            _expires = expires;
         }
 
         public Grant(JsonNode node) {
@@ -115,11 +171,42 @@ public class AuthBlock extends AbstractBlock {
             return _grantee;
         }
 
+        public boolean isGroup() {
+            return _group;
+        }
+
+        public Date getNotBefore() {
+            return _notBefore;
+        }
+
+        public Date getExpires() {
+            return _expires;
+        }
+
+        public long getNotBeforeMillis() {
+            return (null != _notBefore) ? _notBefore.getTime() : Long.MIN_VALUE;
+        }
+
+        public long getExpiresMillis() {
+            return (null != _expires) ? _expires.getTime() : Long.MAX_VALUE;
+        }
+
         private ObjectNode serializeToJson() {
             ObjectNode node = _mapper.createObjectNode();
             node.put("type", _type.toString());
             node.put("privilege", _privilege);
             node.put("grantee", _grantee.toString());
+
+            // only group grants carry the flag, so individual grants serialize (and hash) exactly as they always have
+            if (_group) {
+                node.put("group", true);
+            }
+            if (null != _notBefore) {
+                node.put("notBefore", JsonMapperFactory.getInstance().formatDate(_notBefore));
+            }
+            if (null != _expires) {
+                node.put("expires", JsonMapperFactory.getInstance().formatDate(_expires));
+            }
             return node;
         }
 
@@ -127,14 +214,26 @@ public class AuthBlock extends AbstractBlock {
             _type = Type.valueOf(node.findPath("type").asText());
             _privilege = node.findPath("privilege").asText();
             _grantee = URI.create(node.findPath("grantee").asText());
+            _group = node.findPath("group").asBoolean(false);
+            _notBefore = parseDate(node.findPath("notBefore"));
+            _expires = parseDate(node.findPath("expires"));
+        }
+
+        private static Date parseDate(JsonNode node) {
+            if (node.isMissingNode()) {
+                return null;
+            }
+            try {
+                return JsonMapperFactory.getInstance().parseDate(node.asText());
+            } catch (ParseException e) {
+                throw new IllegalArgumentException("invalid grant date " + node.asText(), e);
+            }
         }
 
         @Override
         public String toString() {
             try {
-                return _mapper
-                        .writerWithDefaultPrettyPrinter()
-                        .writeValueAsString(serializeToJson());
+                return _prettyWriter.writeValueAsString(serializeToJson());
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -1,13 +1,23 @@
 package com.cisco.clique.sdk.chains;
 
 import com.cisco.clique.sdk.validation.AbstractValidator;
+import com.cisco.clique.sdk.validation.AuthBlockValidator;
+import com.cisco.clique.sdk.validation.AuthValidationState;
+import com.cisco.clique.sdk.validation.DecisionCache;
+import com.cisco.clique.sdk.validation.PrivilegeTrie;
+import com.cisco.clique.sdk.validation.ValidationState;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 
 import java.net.URI;
-import java.util.ListIterator;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class AuthChain extends AbstractChain<AuthBlock> {
 
+    private volatile DecisionCache _decisions;
+
     public AuthChain(AbstractValidator<AuthBlock> validator) {
         super(validator);
     }
@@ -16,29 +26,120 @@ public class AuthChain extends AbstractChain<AuthBlock> {
         super(validator, array);
     }
 
+    public AuthChain(AbstractValidator<AuthBlock> validator, ArrayNode array, boolean validate) throws Exception {
+        super(validator, array, validate);
+    }
+
     public AuthChain(AbstractValidator<AuthBlock> validator, String serialization) throws Exception {
         super(validator, serialization);
     }
 
+    public AuthChain(AbstractValidator<AuthBlock> validator, ByteBuffer serialization, boolean validate)
+            throws Exception {
+        super(validator, serialization, validate);
+    }
+
+    public AuthChain(AbstractValidator<AuthBlock> validator, AbstractChain<AuthBlock> origin, List<AuthBlock> blocks)
+            throws Exception {
+        super(validator, origin, blocks);
+    }
+
     public void addBlock(String serialization) throws Exception {
-        addBlock(new AuthBlock(serialization));
+        addBlock(parseBlock(serialization));
+    }
+
+    AuthBlock parseBlock(String serialization) throws Exception {
+        return new AuthBlock(serialization);
+    }
+
+    AuthBlock parseBlock(ByteBuffer serialization) throws Exception {
+        return new AuthBlock(serialization);
     }
 
     public boolean hasPrivilege(URI acct, String privilege) throws Exception {
+        return hasPrivilege(acct, privilege, System.currentTimeMillis());
+    }
+
+    public boolean hasPrivilege(URI acct, String privilege, long now) throws Exception {
         if (null == acct || null == privilege) {
             throw new IllegalArgumentException();
         }
-        ListIterator<AuthBlock> iterator = _blocks.listIterator(_blocks.size());
-        while (iterator.hasPrevious()) {
-            for (AuthBlock.Grant authBlockGrant : iterator.previous().getGrants()) {
-                if (authBlockGrant.getGrantee().equals(acct) && authBlockGrant.getPrivilege().equals(privilege)) {
-                    return !authBlockGrant.getType().equals(AuthBlock.Grant.Type.REVOKE);
+
+        // once validated, grants are indexed per grantee so this is a trie lookup rather than a chain scan; a chain
+        // that hasn't been validated is scanned as it always was, since validating it here could fail the lookup
+        ValidationState<AuthBlock> state = getValidationState();
+        BlockList<AuthBlock> blocks = _blocks;
+        if (!(state instanceof AuthValidationState) || blocks.last() != state.getLastValidated()) {
+            if (blocks.isEmpty()) {
+                return false;
+            }
+            boolean hierarchical = blocks.get(0).isHierarchical();
+            PrivilegeTrie grants = PrivilegeTrie.empty(hierarchical);
+            Map<URI, PrivilegeTrie> groupGrants = new HashMap<>();
+            for (AuthBlock block : blocks) {
+                for (AuthBlock.Grant grant : block.getGrants()) {
+                    if (grant.isGroup()) {
+                        PrivilegeTrie group = groupGrants.get(grant.getGrantee());
+                        if (null == group) {
+                            group = PrivilegeTrie.empty(hierarchical);
+                        }
+                        groupGrants.put(grant.getGrantee(), group.with(grant.getPrivilege(), grant.getType(),
+                                grant.getNotBeforeMillis(), grant.getExpiresMillis()));
+                    } else if (grant.getGrantee().equals(acct)) {
+                        grants = grants.with(grant.getPrivilege(), grant.getType(), grant.getNotBeforeMillis(),
+                                grant.getExpiresMillis());
+                    }
                 }
             }
+            AuthBlock.Grant.Type type = grants.resolve(privilege, now);
+            return (null != type) ? isGranted(type) : isGroupGranted(groupGrants, acct, privilege, now);
+        }
+
+        // decisions are cached until the timing wheel reaches the next instant one of the account's grants starts
+        // or stops applying, so lookups in between don't have to look at validity windows at all
+        AuthValidationState authState = (AuthValidationState) state;
+        DecisionCache decisions = _decisions;
+        if (null == decisions || decisions.getState() != state) {
+            decisions = new DecisionCache(authState, now);
+            _decisions = decisions;
+        }
+        Boolean decision = decisions.get(acct, privilege, now);
+        if (null != decision) {
+            return decision;
+        }
+        PrivilegeTrie grants = authState.getCurrentGrants().get(acct);
+        AuthBlock.Grant.Type type = (null != grants) ? grants.resolve(privilege, now) : null;
+        if (null != type || authState.getGroupGrants().isEmpty()) {
+            decisions.put(acct, privilege, now, isGranted(type));
+            return isGranted(type);
+        }
+
+        // an account's own grants (and revocations) take precedence, otherwise any group holding the privilege that
+        // the account belongs to confers it; since memberships change without this chain changing these decisions
+        // are never cached here
+        return isGroupGranted(authState.getGroupGrants(), acct, privilege, now);
+    }
+
+    private boolean isGroupGranted(Map<URI, PrivilegeTrie> groupGrants, URI acct, String privilege, long now)
+            throws Exception {
+
+        // each group holding the privilege costs one membership lookup through the validator's group index
+        if (groupGrants.isEmpty() || !(_validator instanceof AuthBlockValidator)) {
+            return false;
+        }
+        AuthBlockValidator validator = (AuthBlockValidator) _validator;
+        for (Map.Entry<URI, PrivilegeTrie> entry : groupGrants.entrySet()) {
+            if (isGranted(entry.getValue().resolve(privilege, now)) && validator.isMember(entry.getKey(), acct, now)) {
+                return true;
+            }
         }
         return false;
     }
 
+    private static boolean isGranted(AuthBlock.Grant.Type type) {
+        return null != type && !type.equals(AuthBlock.Grant.Type.REVOKE);
+    }
+
     public AuthBlock.Builder newBlockBuilder() {
         return new AuthBlock.Builder(this);
     }
@@ -0,0 +1,65 @@
+package com.cisco.clique.sdk.chains;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+final class BlockList<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 8;
+    private final Storage _storage;
+    private final int _size;
+
+    BlockList() {
+        this(new Storage(new Object[INITIAL_CAPACITY], 0), 0);
+    }
+
+    private BlockList(Storage storage, int size) {
+        _storage = storage;
+        _size = size;
+    }
+
+    BlockList<T> append(T block) {
+        synchronized (_storage) {
+
+            // share the backing array when this is its newest version and there's room, otherwise copy it
+            if (_size == _storage._used && _size < _storage._elements.length) {
+                _storage._elements[_size] = block;
+                _storage._used = _size + 1;
+                return new BlockList<>(_storage, _size + 1);
+            }
+            Object[] elements = Arrays.copyOf(_storage._elements, Math.max(INITIAL_CAPACITY, _size * 2));
+            Arrays.fill(elements, _size, elements.length, null);
+            elements[_size] = block;
+            return new BlockList<>(new Storage(elements, _size + 1), _size + 1);
+        }
+    }
+
+    T last() {
+        return (0 != _size) ? get(_size - 1) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= _size) {
+            throw new IndexOutOfBoundsException("index " + index + " is out of bounds for size " + _size);
+        }
+        return (T) _storage._elements[index];
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    private static final class Storage {
+        private final Object[] _elements;
+        private int _used;
+
+        Storage(Object[] elements, int used) {
+            _elements = elements;
+            _used = used;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.cisco.clique.sdk.chains;
+
+import java.nio.charset.StandardCharsets;
+
+final class BlockStore {
+
+    static final int CHUNK_BYTES = 64 * 1024;
+    private byte[] _chunk;
+    private int _used;
+    private long _bytes;
+
+    // compacted blocks keep their compact JWS here as ASCII bytes packed back to back into shared chunks, rather than
+    // as a string, a parsed JWT and its base64 parts; chunks are only ever appended to, so a record never moves
+    BlockStore() {
+        _chunk = null;
+        _used = 0;
+        _bytes = 0;
+    }
+
+    synchronized AbstractBlock.BlockSource add(String serialization) {
+        byte[] bytes = serialization.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length > CHUNK_BYTES) {
+            _bytes += bytes.length;
+            return new Record(bytes, 0, bytes.length);
+        }
+        if (null == _chunk || CHUNK_BYTES - _used < bytes.length) {
+            _chunk = new byte[CHUNK_BYTES];
+            _used = 0;
+        }
+        System.arraycopy(bytes, 0, _chunk, _used, bytes.length);
+        Record record = new Record(_chunk, _used, bytes.length);
+        _used += bytes.length;
+        _bytes += bytes.length;
+        return record;
+    }
+
+    synchronized long getBytes() {
+        return _bytes;
+    }
+
+    private static final class Record implements AbstractBlock.BlockSource {
+        private final byte[] _chunk;
+        private final int _offset;
+        private final int _length;
+
+        Record(byte[] chunk, int offset, int length) {
+            _chunk = chunk;
+            _offset = offset;
+            _length = length;
+        }
+
+        @Override
+        public String load(AbstractBlock block) {
+            return new String(_chunk, _offset, _length, StandardCharsets.US_ASCII);
+        }
+    }
+}
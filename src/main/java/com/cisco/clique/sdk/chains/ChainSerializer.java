@@ -0,0 +1,48 @@
+package com.cisco.clique.sdk.chains;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.util.List;
+
+final class ChainSerializer {
+
+    private final ObjectWriter _writer;
+    private final boolean _pretty;
+    private final StringBuilder _prefix;
+    private int _blocks;
+
+    ChainSerializer(ObjectWriter writer, boolean pretty) {
+        _writer = writer;
+        _pretty = pretty;
+        _prefix = new StringBuilder("[");
+        _blocks = 0;
+    }
+
+    synchronized String serialize(List<? extends AbstractBlock> blocks) throws Exception {
+
+        // chains only ever grow, so the cached prefix is always the serialization of the first _blocks blocks and
+        // only the blocks appended since the last call need encoding; the output matches what Jackson would write
+        // for an array of the block strings, pretty-printed or not
+        for (int i = _blocks; i < blocks.size(); i++) {
+            if (0 != i) {
+                _prefix.append(',');
+            }
+            if (_pretty) {
+                _prefix.append(' ');
+            }
+            _prefix.append(_writer.writeValueAsString(blocks.get(i).serialize()));
+        }
+        _blocks = Math.max(_blocks, blocks.size());
+        if (_blocks != blocks.size()) {
+
+            // an older snapshot than the one cached, just encode it from scratch
+            return new ChainSerializer(_writer, _pretty).serialize(blocks);
+        }
+        return _pretty ? _prefix + " ]" : _prefix + "]";
+    }
+
+    synchronized void clear() {
+        _prefix.setLength(1);
+        _blocks = 0;
+    }
+}
@@ -4,9 +4,12 @@ import com.nimbusds.jose.jwk.ECKey;
 import com.nimbusds.jwt.JWTClaimsSet;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
 
 public class IdBlock extends AbstractBlock {
 
+    private volatile String _pkt;
+
     private IdBlock(URI issuer, ECKey issuerKey, URI subject, ECKey subjectPubKey, String ant) throws Exception {
         super(issuerKey, new JWTClaimsSet.Builder()
                 .claim("iss", issuer.toString())
@@ -19,8 +22,18 @@ public class IdBlock extends AbstractBlock {
         super(serialization);
     }
 
+    IdBlock(ByteBuffer serialization) throws Exception {
+        super(serialization);
+    }
+
     public String getPkt() throws Exception {
-        return _jwt.getJWTClaimsSet().getClaim("pkt").toString();
+        String pkt = _pkt;
+        return (null != pkt) ? pkt : jwt().getJWTClaimsSet().getClaim("pkt").toString();
+    }
+
+    @Override
+    protected void compactClaims() throws Exception {
+        _pkt = getPkt();
     }
 
     public static class Builder {
@@ -56,7 +69,7 @@ public class IdBlock extends AbstractBlock {
         }
 
         public IdBlock build() throws Exception {
-            AbstractBlock lastBlock = _chain.lastBlock();
+            AbstractBlock lastBlock = _chain.headForAppend();
             String ant = (null != lastBlock) ? lastBlock.getHash() : null;
             IdBlock block = new IdBlock(_issuer, _issuerKey, _subject, _subjectPubKey, ant);
 
@@ -3,12 +3,15 @@ package com.cisco.clique.sdk.chains;
 import com.cisco.clique.sdk.validation.AbstractValidator;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class IdChain extends AbstractChain<IdBlock> {
 
-    private Set<String> _pkts;
+    private volatile Set<String> _pkts;
 
     public IdChain(AbstractValidator<IdBlock> validator) {
         super(validator);
@@ -18,31 +21,57 @@ public class IdChain extends AbstractChain<IdBlock> {
         super(validator, array);
     }
 
+    public IdChain(AbstractValidator<IdBlock> validator, ArrayNode array, boolean validate) throws Exception {
+        super(validator, array, validate);
+    }
+
     public IdChain(AbstractValidator<IdBlock> validator, String serialization) throws Exception {
         super(validator, serialization);
     }
 
-    void addBlock(IdBlock block) throws Exception {
-        super.addBlock(block);
+    public IdChain(AbstractValidator<IdBlock> validator, ByteBuffer serialization, boolean validate)
+            throws Exception {
+        super(validator, serialization, validate);
+    }
+
+    public IdChain(AbstractValidator<IdBlock> validator, AbstractChain<IdBlock> origin, List<IdBlock> blocks)
+            throws Exception {
+        super(validator, origin, blocks);
+    }
+
+    @Override
+    protected void indexBlock(IdBlock block) throws Exception {
+
+        // index the block's key thumbprint before the block itself becomes visible to readers
         if (null == _pkts) {
-            _pkts = new HashSet<>();
+            _pkts = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
         }
         _pkts.add(block.getPkt());
     }
 
     public void addBlock(String serialization) throws Exception {
-        addBlock(new IdBlock(serialization));
+        addBlock(parseBlock(serialization));
+    }
+
+    IdBlock parseBlock(String serialization) throws Exception {
+        return new IdBlock(serialization);
+    }
+
+    IdBlock parseBlock(ByteBuffer serialization) throws Exception {
+        return new IdBlock(serialization);
     }
 
     public boolean containsPkt(String pkt) throws Exception {
         if (null == pkt) {
             throw new IllegalArgumentException();
         }
-        return null != _pkts && _pkts.contains(pkt);
+        Set<String> pkts = _pkts;
+        return null != pkts && pkts.contains(pkt);
     }
 
     public String getActivePkt() throws Exception {
-        return _blocks.get(_blocks.size() - 1).getPkt();
+        List<IdBlock> blocks = _blocks;
+        return blocks.get(blocks.size() - 1).getPkt();
     }
 
     public IdBlock.Builder newBlockBuilder() {
@@ -3,16 +3,13 @@ package com.cisco.clique.sdk.validation;
 import com.cisco.clique.sdk.Transport;
 import com.cisco.clique.sdk.chains.AbstractBlock;
 import com.cisco.clique.sdk.chains.IdChain;
-import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.JWSVerifier;
 
 import java.net.URI;
 import java.util.Set;
 
 public abstract class AbstractValidator<T extends AbstractBlock> {
 
-    protected T _lastValidated;
-    protected URI _chainIssuer;
-    protected URI _chainSubject;
     protected Transport _transport;
     Set<String> _trustRoots;
 
@@ -29,68 +26,65 @@ public abstract class AbstractValidator<T extends AbstractBlock> {
         return _trustRoots;
     }
 
-    public void reset() {
-        _lastValidated = null;
-        _chainIssuer = null;
-        _chainSubject = null;
-    }
-
     public Transport getTransport() {
         return _transport;
     }
 
-    public T lastValidatedBlock() {
-        return _lastValidated;
+    public ValidationState<T> initialState() {
+        return new ValidationState<>();
     }
 
-    public final void validate(T block) throws Exception {
-        doValidation(block);
-        doPostValidation(block);
+    public final ValidationState<T> validate(ValidationState<T> state, T block) throws Exception {
+        doValidation(state, block);
+        return doPostValidation(state, block);
     }
 
-    protected void doValidation(T block) throws Exception {
+    protected void doValidation(ValidationState<T> state, T block) throws Exception {
 
         if (_trustRoots.contains(block.getHash())) {
             return;
         }
 
         validateSignature(block);
-
-        if (null == _lastValidated) {
-            _chainIssuer = block.getIssuer();
-            _chainSubject = block.getSubject();
-        }
-
-        validateAntecedent(block);
-        validateIssuer(block);
+        validateAntecedent(state, block);
+        validateIssuer(state, block);
     }
 
-    protected void doPostValidation(T block) throws Exception {
+    protected ValidationState<T> doPostValidation(ValidationState<T> state, T block) throws Exception {
+
+        // the genesis block sets the chain-issuer and chain-subject (unless it was accepted as a trust root)
+        URI chainIssuer = state.getChainIssuer();
+        URI chainSubject = state.getChainSubject();
+        if (null == state.getLastValidated() && !_trustRoots.contains(block.getHash())) {
+            chainIssuer = block.getIssuer();
+            chainSubject = block.getSubject();
+        }
 
         // set the validated block as the new current block
-        _lastValidated = block;
+        return new ValidationState<>(block, chainIssuer, chainSubject);
     }
 
-    protected void validateAntecedent(T block) throws Exception {
-        Object ant = block.getJwt().getJWTClaimsSet().getClaim("ant");
+    protected void validateAntecedent(ValidationState<T> state, T block) throws Exception {
+        String ant = block.getAntecedent();
+        T lastValidated = state.getLastValidated();
 
-        // succeed if this is the genesis block (and set the validator's chain-issuer and chain-subject)
-        if (null == ant && null == _lastValidated) {
+        // succeed if this is the genesis block
+        if (null == ant && null == lastValidated) {
             return;
         }
 
-        // fail if ant is null but not _lastValidated
+        // fail if ant is null but not lastValidated
         if (null == ant) {
             throw new InvalidBlockException("block antecedent claim is null but should not be");
         }
 
-        // fail if _lastValidated is null but not ant
-        if (null == _lastValidated) {
+        // fail if lastValidated is null but not ant
+        if (null == lastValidated) {
             throw new InvalidBlockException("block antecedent claim is not null but should be");
         }
 
-        // fail if ant and _lastValidated hash don't match
-        if (!ant.toString().equals(_lastValidated.getHash())) {
+        // fail if ant and lastValidated hash don't match
+        if (!ant.equals(lastValidated.getHash())) {
             throw new InvalidBlockException("block antecedent claim does not match hash of preceding block");
         }
     }
@@ -103,19 +97,28 @@ public abstract class AbstractValidator<T extends AbstractBlock> {
             throw new InvalidBlockException("block JWT header does not contain a key id (kid)");
         }
 
-        // fetch the public key corresponding to the thumbprint
-        ECKey key = _transport.getKey(pkt);
-        if (null == key) {
+        // a block whose hash and key were verified together before (possibly by an earlier run) needs no second
+        // check, the hash covers the signature and the issuer check below still ties the key to the issuer
+        VerifierCache cache = VerifierCache.getInstance();
+        String hash = block.getHash();
+        if (cache.isVerified(hash, pkt)) {
+            return;
+        }
+
+        // get a ready verifier for the thumbprint, fetching and decoding its public key only on a cache miss
+        JWSVerifier verifier = cache.getVerifier(_transport, pkt);
+        if (null == verifier) {
             throw new InvalidBlockException("block signature verification key could not be found");
         }
 
         // verify the block signature
-        if (!block.verify(key)) {
+        if (!block.verify(verifier)) {
             throw new InvalidBlockException("block signature verification failed");
         }
+        cache.recordVerified(hash, pkt);
     }
 
-    protected void validateIssuer(T block) throws Exception {
+    protected void validateIssuer(ValidationState<T> state, T block) throws Exception {
 
         // get the thumbprint of the block's signature verification key from the JWT "kid" header
         String pkt = block.getKid();
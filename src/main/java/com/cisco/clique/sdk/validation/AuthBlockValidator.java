@@ -5,64 +5,120 @@ import com.cisco.clique.sdk.chains.AuthBlock;
 
 import java.net.URI;
 import java.security.InvalidParameterException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
 
 public class AuthBlockValidator extends AbstractValidator<AuthBlock> {
 
-    private Map<URI, Map<String, AuthBlock.Grant.Type>> _currentGrants;
+    private GroupIndex _groupIndex;
 
     public AuthBlockValidator(Transport transport, Set<String> trustRoots) {
+        this(transport, trustRoots, null);
+    }
+
+    public AuthBlockValidator(Transport transport, Set<String> trustRoots, GroupIndex groupIndex) {
         super(transport, trustRoots);
-        _currentGrants = new HashMap<>();
+        _groupIndex = groupIndex;
+    }
+
+    public GroupIndex getGroupIndex() {
+        return _groupIndex;
+    }
+
+    public boolean isMember(URI group, URI acct, long now) throws Exception {
+
+        // without a shared index the group chain has to be fetched and expanded on every check
+        if (null != _groupIndex) {
+            return _groupIndex.isMember(group, acct, now);
+        }
+        return GroupIndex.loadMembers(_transport, getTrustRoots(), group, now).getMembers().contains(acct);
     }
 
     @Override
-    public void reset() {
-        super.reset();
-        _currentGrants.clear();
+    public ValidationState<AuthBlock> initialState() {
+        return new AuthValidationState();
     }
 
     @Override
-    protected void doValidation(AuthBlock block) throws Exception {
-        super.doValidation(block);
-        validateGrants(block);
+    protected void doValidation(ValidationState<AuthBlock> state, AuthBlock block) throws Exception {
+        super.doValidation(state, block);
+        validateGrants((AuthValidationState) state, block);
     }
 
     @Override
-    protected void doPostValidation(AuthBlock block) throws Exception {
-        super.doPostValidation(block);
+    protected ValidationState<AuthBlock> doPostValidation(ValidationState<AuthBlock> state, AuthBlock block)
+            throws Exception {
+        ValidationState<AuthBlock> next = super.doPostValidation(state, block);
 
-        // update the _currentGrants and set new block as _lastValidated
+        // both the grantee map and each grantee's trie are persistent, so a grant only copies the map's path down to
+        // its grantee and the trie's path down to its privilege; groups are kept apart from individual grantees since
+        // they are expanded at lookup time rather than here
+        AuthValidationState authState = (AuthValidationState) state;
+
+        // whether privilege names are hierarchical is settled by the chain's first block, for the life of the chain
+        boolean hierarchical = (null == block.getAntecedent()) ? block.isHierarchical() : authState.isHierarchical();
+        PersistentHashMap<URI, PrivilegeTrie> currentGrants = authState.currentGrants();
+        PersistentHashMap<URI, PrivilegeTrie> groupGrants = authState.groupGrants();
         for (AuthBlock.Grant grant : block.getGrants()) {
-            URI grantee = grant.getGrantee();
-            _currentGrants.putIfAbsent(grantee, new HashMap<String, AuthBlock.Grant.Type>());
-            _currentGrants.get(grantee).put(grant.getPrivilege(), grant.getType());
+            PersistentHashMap<URI, PrivilegeTrie> grants = grant.isGroup() ? groupGrants : currentGrants;
+            PrivilegeTrie granteeGrants = grants.get(grant.getGrantee());
+            if (null == granteeGrants) {
+                granteeGrants = PrivilegeTrie.empty(hierarchical);
+            }
+            grants = grants.with(grant.getGrantee(), granteeGrants.with(grant.getPrivilege(), grant.getType(),
+                    grant.getNotBeforeMillis(), grant.getExpiresMillis()));
+            if (grant.isGroup()) {
+                groupGrants = grants;
+            } else {
+                currentGrants = grants;
+            }
         }
+        return new AuthValidationState(next, currentGrants, groupGrants, hierarchical);
     }
 
-    protected void validateGrants(AuthBlock block) throws Exception {
+    protected void validateGrants(AuthValidationState state, AuthBlock block) throws Exception {
+
+        // a group's membership changes without this chain changing, so it may be given access but never the right to
+        // pass it on
+        for (AuthBlock.Grant grant : block.getGrants()) {
+            if (grant.isGroup() && AuthBlock.Grant.Type.VIRAL_GRANT.equals(grant.getType())) {
+                throw new InvalidBlockException("groups cannot be granted privileges virally");
+            }
+            if (grant.getNotBeforeMillis() >= grant.getExpiresMillis()) {
+                throw new InvalidBlockException("grant expires before it becomes valid");
+            }
+        }
 
         // automatic success if this is the antecedent block
         if (null == block.getAntecedent()) {
             return;
         }
+        if (block.isHierarchical()) {
+            throw new InvalidBlockException("only a chain's first block may declare hierarchical privileges");
+        }
 
         // validate that the issuer has authority to assert the grants contained within the block
         URI issuer = block.getIssuer();
-        Map<String, AuthBlock.Grant.Type> creatorGrants = _currentGrants.get(issuer);
+        PrivilegeTrie creatorGrants = state.getCurrentGrants().get(issuer);
         if (null == creatorGrants) {
             throw new InvalidParameterException("block issuer has no privileges on this chain");
         }
+
+        // a grant on a privilege (or on a whole "prefix.*" subtree) needs a viral grant covering all of it
         for (AuthBlock.Grant grant : block.getGrants()) {
-            AuthBlock.Grant.Type grantType = creatorGrants.get(grant.getPrivilege());
-            if (null == grantType) {
+            if (null == creatorGrants.resolve(grant.getPrivilege())) {
                 throw new InvalidParameterException("block issuer has no grant for the privilege it is granting");
             }
-            if (!grantType.equals(AuthBlock.Grant.Type.VIRAL_GRANT)) {
+            if (!creatorGrants.canGrant(grant.getPrivilege())) {
                 throw new InvalidBlockException("block issuer has insufficient privileges to assert contained grants");
             }
+
+            // validity windows are checked against each other rather than the clock, so a chain never becomes
+            // invalid with time; what a temporary viral grant hands on must lapse no later than the grant itself
+            boolean revoke = AuthBlock.Grant.Type.REVOKE.equals(grant.getType());
+            if (!revoke && !creatorGrants.covers(
+                    grant.getPrivilege(), grant.getNotBeforeMillis(), grant.getExpiresMillis())) {
+                throw new InvalidBlockException("block issuer's grant does not cover the validity period it asserts");
+            }
         }
     }
 }
@@ -0,0 +1,48 @@
+package com.cisco.clique.sdk.validation;
+
+import com.cisco.clique.sdk.chains.AuthBlock;
+
+import java.net.URI;
+import java.util.Map;
+
+public class AuthValidationState extends ValidationState<AuthBlock> {
+
+    private final PersistentHashMap<URI, PrivilegeTrie> _currentGrants;
+    private final PersistentHashMap<URI, PrivilegeTrie> _groupGrants;
+    private final boolean _hierarchical;
+
+    public AuthValidationState() {
+        super();
+        _currentGrants = PersistentHashMap.empty();
+        _groupGrants = PersistentHashMap.empty();
+        _hierarchical = false;
+    }
+
+    AuthValidationState(ValidationState<AuthBlock> state, PersistentHashMap<URI, PrivilegeTrie> currentGrants,
+                        PersistentHashMap<URI, PrivilegeTrie> groupGrants, boolean hierarchical) {
+        super(state);
+        _currentGrants = currentGrants;
+        _groupGrants = groupGrants;
+        _hierarchical = hierarchical;
+    }
+
+    public boolean isHierarchical() {
+        return _hierarchical;
+    }
+
+    public Map<URI, PrivilegeTrie> getCurrentGrants() {
+        return _currentGrants;
+    }
+
+    public Map<URI, PrivilegeTrie> getGroupGrants() {
+        return _groupGrants;
+    }
+
+    PersistentHashMap<URI, PrivilegeTrie> currentGrants() {
+        return _currentGrants;
+    }
+
+    PersistentHashMap<URI, PrivilegeTrie> groupGrants() {
+        return _groupGrants;
+    }
+}
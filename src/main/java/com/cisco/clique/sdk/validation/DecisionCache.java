@@ -0,0 +1,93 @@
+package com.cisco.clique.sdk.validation;
+
+import com.cisco.clique.sdk.chains.AuthBlock;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class DecisionCache {
+
+    public static final long TICK_MILLIS = 1000;
+    public static final int WHEEL_SIZE = 64;
+    public static final int MAX_DECISIONS = 4096;
+    private final ValidationState<AuthBlock> _state;
+    private final TimingWheel<URI> _wheel;
+    private final Map<URI, Map<String, Boolean>> _decisions;
+    private int _count;
+    private long _latest;
+
+    public DecisionCache(AuthValidationState state, long now) {
+        if (null == state) {
+            throw new IllegalArgumentException("validation state must be non-null");
+        }
+        _state = state;
+        _wheel = new TimingWheel<>(TICK_MILLIS, WHEEL_SIZE, now);
+        _decisions = new HashMap<>();
+        _count = 0;
+        _latest = now;
+
+        // every instant at which one of a grantee's grants starts or stops applying is a point after which the
+        // decisions cached for that grantee may no longer hold
+        List<Long> times = new ArrayList<>();
+        for (Map.Entry<URI, PrivilegeTrie> entry : state.getCurrentGrants().entrySet()) {
+            times.clear();
+            entry.getValue().transitions(now, times);
+            for (Long time : times) {
+                _wheel.schedule(time, entry.getKey());
+            }
+        }
+    }
+
+    public ValidationState<AuthBlock> getState() {
+        return _state;
+    }
+
+    public synchronized Boolean get(URI acct, String privilege, long now) {
+        if (!advance(now)) {
+            return null;
+        }
+        Map<String, Boolean> decisions = _decisions.get(acct);
+        return (null != decisions) ? decisions.get(privilege) : null;
+    }
+
+    public synchronized void put(URI acct, String privilege, long now, boolean decision) {
+        if (!advance(now)) {
+            return;
+        }
+        if (_count >= MAX_DECISIONS) {
+            _decisions.clear();
+            _count = 0;
+        }
+        Map<String, Boolean> decisions = _decisions.get(acct);
+        if (null == decisions) {
+            decisions = new HashMap<>();
+            _decisions.put(acct, decisions);
+        }
+        if (null == decisions.put(privilege, decision)) {
+            _count++;
+        }
+    }
+
+    public synchronized int size() {
+        return _count;
+    }
+
+    private boolean advance(long now) {
+
+        // the wheel only runs forwards, a decision for an earlier instant than one already seen is left uncached
+        if (now < _latest) {
+            return false;
+        }
+        _latest = now;
+        for (URI acct : _wheel.advance(now)) {
+            Map<String, Boolean> decisions = _decisions.remove(acct);
+            if (null != decisions) {
+                _count -= decisions.size();
+            }
+        }
+        return true;
+    }
+}
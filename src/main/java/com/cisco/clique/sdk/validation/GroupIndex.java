@@ -0,0 +1,188 @@
+package com.cisco.clique.sdk.validation;
+
+import com.cisco.clique.sdk.ChainEvent;
+import com.cisco.clique.sdk.ChainListener;
+import com.cisco.clique.sdk.Transport;
+import com.cisco.clique.sdk.Transports;
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.AuthBlock;
+import com.cisco.clique.sdk.chains.AuthChain;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GroupIndex {
+
+    public static final String MEMBER_PRIVILEGE = "member";
+    private final Transport _transport;
+    private final Set<String> _trustRoots;
+    private final Map<URI, Members> _members;
+    private final Set<URI> _subscribed;
+    private final AtomicLong _generation;
+    private final ChainListener _invalidator;
+    private final AtomicLong _hits;
+    private final AtomicLong _misses;
+    private volatile boolean _unpublished;
+
+    public GroupIndex(Transport transport, Set<String> trustRoots) {
+        if (null == transport || null == trustRoots) {
+            throw new IllegalArgumentException("transport and trust roots must both be non-null");
+        }
+        _transport = transport;
+        _trustRoots = trustRoots;
+        _members = new ConcurrentHashMap<>();
+        _subscribed = Collections.newSetFromMap(new ConcurrentHashMap<URI, Boolean>());
+        _generation = new AtomicLong();
+        _hits = new AtomicLong();
+        _misses = new AtomicLong();
+        _unpublished = false;
+
+        // a group is just the auth chain of its URI, so publishing a new head for it is what changes its members
+        _invalidator = new ChainListener() {
+            @Override
+            public void chainPublished(ChainEvent event) throws Exception {
+                if (ChainEvent.Type.AUTH_CHAIN == event.getType()) {
+                    invalidate(event.getUri());
+                }
+            }
+        };
+    }
+
+    public Transport getTransport() {
+        return _transport;
+    }
+
+    public boolean isMember(URI group, URI acct) throws Exception {
+        return isMember(group, acct, System.currentTimeMillis());
+    }
+
+    public boolean isMember(URI group, URI acct, long now) throws Exception {
+        if (null == group || null == acct) {
+            throw new IllegalArgumentException("group and acct URIs must both be non-null");
+        }
+        return getMembers(group, now).contains(acct);
+    }
+
+    public Set<URI> getMembers(URI group) throws Exception {
+        return getMembers(group, System.currentTimeMillis());
+    }
+
+    public Set<URI> getMembers(URI group, long now) throws Exception {
+        if (null == group) {
+            throw new IllegalArgumentException("group URI must be non-null");
+        }
+
+        // an expansion also goes stale once a time-bounded membership starts or lapses
+        Members members = _members.get(group);
+        if (null != members && members.isCurrent(now)) {
+            _hits.incrementAndGet();
+            return members.getMembers();
+        }
+        _misses.incrementAndGet();
+
+        // subscribe before loading so a change published while the group is being expanded is not missed, and only
+        // keep the expansion if nothing was invalidated in the meantime; without events nothing would ever
+        // invalidate it, so a transport that publishes none gets no caching at all
+        if (_subscribed.add(group) && !Transports.subscribe(_transport, group, _invalidator)) {
+            _unpublished = true;
+        }
+        long generation = _generation.get();
+        members = loadMembers(_transport, _trustRoots, group, now);
+        if (!_unpublished && generation == _generation.get()) {
+            _members.put(group, members);
+        }
+        return members.getMembers();
+    }
+
+    public void invalidate(URI group) {
+        _generation.incrementAndGet();
+        _members.remove(group);
+    }
+
+    public int size() {
+        return _members.size();
+    }
+
+    public long getHits() {
+        return _hits.get();
+    }
+
+    public long getMisses() {
+        return _misses.get();
+    }
+
+    public void clear() {
+        _generation.incrementAndGet();
+        _members.clear();
+        _hits.set(0);
+        _misses.set(0);
+    }
+
+    public void close() {
+        Transports.unsubscribe(_transport, _invalidator);
+        _subscribed.clear();
+        clear();
+    }
+
+    public static Members loadMembers(Transport transport, Set<String> trustRoots, URI group, long now)
+            throws Exception {
+        AbstractChain<AuthBlock> chain = transport.getAuthChain(new AuthBlockValidator(transport, trustRoots), group);
+        if (!(chain instanceof AuthChain)) {
+            return new Members(Collections.<URI>emptySet(), now, Long.MAX_VALUE);
+        }
+
+        // members are whoever directly holds the member privilege on the group's own chain right now; group grants
+        // on a group chain are not expanded, so groups don't nest and expanding one can never recurse
+        AuthChain authChain = (AuthChain) chain;
+        ValidationState<AuthBlock> state = authChain.validate();
+        Set<URI> members = new HashSet<>();
+        long until = Long.MAX_VALUE;
+        if (state instanceof AuthValidationState) {
+            for (Map.Entry<URI, PrivilegeTrie> entry : ((AuthValidationState) state).getCurrentGrants().entrySet()) {
+                if (isGranted(entry.getValue().resolve(MEMBER_PRIVILEGE, now))) {
+                    members.add(entry.getKey());
+                }
+                until = Math.min(until, entry.getValue().nextTransition(now));
+            }
+        } else {
+            for (AuthBlock block : authChain.getBlocks()) {
+                for (AuthBlock.Grant grant : block.getGrants()) {
+                    if (!grant.isGroup() && authChain.hasPrivilege(grant.getGrantee(), MEMBER_PRIVILEGE, now)) {
+                        members.add(grant.getGrantee());
+                    }
+                }
+            }
+            until = now + 1;
+        }
+        return new Members(Collections.unmodifiableSet(members), now, until);
+    }
+
+    static boolean isGranted(AuthBlock.Grant.Type type) {
+        return null != type && !AuthBlock.Grant.Type.REVOKE.equals(type);
+    }
+
+    public static final class Members {
+        private final Set<URI> _members;
+        private final long _from;
+        private final long _until;
+
+        Members(Set<URI> members, long from, long until) {
+            _members = members;
+            _from = from;
+            _until = until;
+        }
+
+        public Set<URI> getMembers() {
+            return _members;
+        }
+
+        public boolean isCurrent(long now) {
+            return _from <= now && now < _until;
+        }
+    }
+}
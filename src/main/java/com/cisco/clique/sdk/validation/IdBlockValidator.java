@@ -13,17 +13,19 @@ public class IdBlockValidator extends AbstractValidator<IdBlock> {
     }
 
     @Override
-    protected void validateIssuer(IdBlock block) throws Exception {
+    protected void validateIssuer(ValidationState<IdBlock> state, IdBlock block) throws Exception {
+        IdBlock lastValidated = state.getLastValidated();
 
         // succeed if block's signature verification key thumbprint matches thumbprint published in the previous block
-        if ((null != _lastValidated) && block.getKid().equals(_lastValidated.getPkt())) {
+        if ((null != lastValidated) && block.getKid().equals(lastValidated.getPkt())) {
             return;
         }
 
         // do default issuer validation if block issuer matches issuer of chain's genesis block (but not self-issued)
         URI issuerUri = block.getIssuer();
-        if (((null == _lastValidated) || issuerUri.equals(_chainIssuer)) && !issuerUri.equals(block.getSubject())) {
-            super.validateIssuer(block);
+        if (((null == lastValidated) || issuerUri.equals(state.getChainIssuer()))
+                && !issuerUri.equals(block.getSubject())) {
+            super.validateIssuer(state, block);
             return;
         }
 
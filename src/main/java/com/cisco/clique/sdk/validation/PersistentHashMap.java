@@ -0,0 +1,201 @@
+package com.cisco.clique.sdk.validation;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentHashMap<Object, Object> EMPTY = new PersistentHashMap<>(null, 0);
+    private final Object _root;
+    private final int _size;
+
+    // a hash trie branching 32 ways on successive 5-bit slices of the key's hash; adding a key copies only the
+    // branches on the path down to it and shares everything else with the map it was added to
+    private PersistentHashMap(Object root, int size) {
+        _root = root;
+        _size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    PersistentHashMap<K, V> with(K key, V value) {
+        if (null == key) {
+            throw new IllegalArgumentException("key must be non-null");
+        }
+        boolean[] added = new boolean[1];
+        Object root = put(_root, 0, key.hashCode(), new Leaf<>(key, value), added);
+        return new PersistentHashMap<>(root, added[0] ? _size + 1 : _size);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (null == key) {
+            return null;
+        }
+        int hash = key.hashCode();
+        Object node = _root;
+        for (int shift = 0; null != node; shift += BITS) {
+            if (node instanceof Leaf) {
+                Leaf<?, ?> leaf = (Leaf<?, ?>) node;
+                return key.equals(leaf.getKey()) ? (V) leaf.getValue() : null;
+            }
+            if (node instanceof Leaf[]) {
+                for (Leaf<?, ?> leaf : (Leaf<?, ?>[]) node) {
+                    if (key.equals(leaf.getKey())) {
+                        return (V) leaf.getValue();
+                    }
+                }
+                return null;
+            }
+            Branch branch = (Branch) node;
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if (0 == (branch._bitmap & bit)) {
+                return null;
+            }
+            node = branch._children[Integer.bitCount(branch._bitmap & (bit - 1))];
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return null != get(key);
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                List<Entry<K, V>> entries = new ArrayList<>(_size);
+                collect(_root, entries);
+                return entries.iterator();
+            }
+
+            @Override
+            public int size() {
+                return _size;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collect(Object node, List<Entry<K, V>> entries) {
+        if (null == node) {
+            return;
+        }
+        if (node instanceof Leaf) {
+            entries.add((Leaf<K, V>) node);
+        } else if (node instanceof Leaf[]) {
+            for (Leaf<?, ?> leaf : (Leaf<?, ?>[]) node) {
+                entries.add((Leaf<K, V>) leaf);
+            }
+        } else {
+            for (Object child : ((Branch) node)._children) {
+                collect(child, entries);
+            }
+        }
+    }
+
+    private static Object put(Object node, int shift, int hash, Leaf<?, ?> leaf, boolean[] added) {
+        if (null == node) {
+            added[0] = true;
+            return leaf;
+        }
+        if (node instanceof Leaf) {
+            Leaf<?, ?> existing = (Leaf<?, ?>) node;
+            if (existing.getKey().equals(leaf.getKey())) {
+                return leaf;
+            }
+            added[0] = true;
+            int existingHash = existing.getKey().hashCode();
+            if (existingHash == hash) {
+                return new Leaf<?, ?>[]{existing, leaf};
+            }
+            return pair(shift, existing, existingHash, leaf, hash);
+        }
+        if (node instanceof Leaf[]) {
+
+            // keys whose whole hashes collide share a flat array, which only ever holds a handful of entries
+            Leaf<?, ?>[] leaves = (Leaf<?, ?>[]) node;
+            int collisionHash = leaves[0].getKey().hashCode();
+            if (collisionHash != hash) {
+                added[0] = true;
+                return pair(shift, node, collisionHash, leaf, hash);
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].getKey().equals(leaf.getKey())) {
+                    Leaf<?, ?>[] copy = leaves.clone();
+                    copy[i] = leaf;
+                    return copy;
+                }
+            }
+            added[0] = true;
+            Leaf<?, ?>[] copy = Arrays.copyOf(leaves, leaves.length + 1);
+            copy[leaves.length] = leaf;
+            return copy;
+        }
+        Branch branch = (Branch) node;
+        int bit = 1 << ((hash >>> shift) & MASK);
+        int index = Integer.bitCount(branch._bitmap & (bit - 1));
+        if (0 == (branch._bitmap & bit)) {
+            added[0] = true;
+            Object[] children = new Object[branch._children.length + 1];
+            System.arraycopy(branch._children, 0, children, 0, index);
+            children[index] = leaf;
+            System.arraycopy(branch._children, index, children, index + 1, branch._children.length - index);
+            return new Branch(branch._bitmap | bit, children);
+        }
+        Object[] children = branch._children.clone();
+        children[index] = put(children[index], shift + BITS, hash, leaf, added);
+        return new Branch(branch._bitmap, children);
+    }
+
+    private static Object pair(int shift, Object first, int firstHash, Object second, int secondHash) {
+
+        // the two hashes differ, so some slice of them must too; add branches until it's reached
+        int firstIndex = (firstHash >>> shift) & MASK;
+        int secondIndex = (secondHash >>> shift) & MASK;
+        if (firstIndex == secondIndex) {
+            return new Branch(1 << firstIndex,
+                    new Object[]{pair(shift + BITS, first, firstHash, second, secondHash)});
+        }
+        return new Branch((1 << firstIndex) | (1 << secondIndex), (firstIndex < secondIndex)
+                ? new Object[]{first, second}
+                : new Object[]{second, first});
+    }
+
+    private static final class Branch {
+        private final int _bitmap;
+        private final Object[] _children;
+
+        Branch(int bitmap, Object[] children) {
+            _bitmap = bitmap;
+            _children = children;
+        }
+    }
+
+    private static final class Leaf<K, V> extends SimpleImmutableEntry<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        Leaf(K key, V value) {
+            super(key, value);
+        }
+    }
+}
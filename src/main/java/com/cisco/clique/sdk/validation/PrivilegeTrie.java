@@ -0,0 +1,235 @@
+package com.cisco.clique.sdk.validation;
+
+import com.cisco.clique.sdk.chains.AuthBlock;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class PrivilegeTrie {
+
+    public static final String SEPARATOR = ".";
+    public static final String WILDCARD = "*";
+    public static final PrivilegeTrie EMPTY = new PrivilegeTrie(
+            Collections.<String, PrivilegeTrie>emptyMap(), null, null, true);
+    public static final PrivilegeTrie LITERAL = new PrivilegeTrie(
+            Collections.<String, PrivilegeTrie>emptyMap(), null, null, false);
+    private final Map<String, PrivilegeTrie> _children;
+    private final Slot _exact;
+    private final Slot _wildcard;
+    private final boolean _hierarchical;
+    private final boolean _allViral;
+    private final long _sequence;
+
+    // a node holds the grant on its own name and the grant on "name.*" (everything strictly below it); the root's
+    // wildcard is the bare "*" grant. A literal trie treats every privilege as one opaque name, the way chains that
+    // don't declare hierarchical privileges always have
+    private PrivilegeTrie(Map<String, PrivilegeTrie> children, Slot exact, Slot wildcard, boolean hierarchical) {
+        _children = children;
+        _exact = exact;
+        _wildcard = wildcard;
+        _hierarchical = hierarchical;
+        boolean allViral = isViral(exact) && isViral(wildcard);
+        long sequence = Math.max(sequence(exact), sequence(wildcard));
+        for (PrivilegeTrie child : children.values()) {
+            allViral &= child._allViral;
+            sequence = Math.max(sequence, child._sequence);
+        }
+        _allViral = allViral;
+        _sequence = sequence;
+    }
+
+    public static PrivilegeTrie empty(boolean hierarchical) {
+        return hierarchical ? EMPTY : LITERAL;
+    }
+
+    public boolean isHierarchical() {
+        return _hierarchical;
+    }
+
+    public PrivilegeTrie with(String privilege, AuthBlock.Grant.Type type) {
+        return with(privilege, type, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public PrivilegeTrie with(String privilege, AuthBlock.Grant.Type type, long notBefore, long expires) {
+        if (null == privilege || null == type) {
+            throw new IllegalArgumentException("privilege and grant type must both be non-null");
+        }
+        if (notBefore >= expires) {
+            throw new IllegalArgumentException("a grant must become valid before it expires");
+        }
+        String[] segments = segments(privilege);
+        boolean wildcard = isWildcard(segments);
+        return with(segments, 0, wildcard ? segments.length - 1 : segments.length, wildcard,
+                new Slot(type, notBefore, expires, _sequence + 1));
+    }
+
+    public AuthBlock.Grant.Type resolve(String privilege) {
+        Slot slot = find(privilege, null);
+        return (null != slot) ? slot._type : null;
+    }
+
+    public AuthBlock.Grant.Type resolve(String privilege, long now) {
+
+        // a grant outside its validity window is treated as absent, so the next less specific grant applies
+        Slot slot = find(privilege, now);
+        return (null != slot) ? slot._type : null;
+    }
+
+    public boolean covers(String privilege, long notBefore, long expires) {
+        Slot slot = find(privilege, null);
+        return null != slot && slot._notBefore <= notBefore && expires <= slot._expires;
+    }
+
+    public boolean canGrant(String privilege) {
+        if (!AuthBlock.Grant.Type.VIRAL_GRANT.equals(resolve(privilege))) {
+            return false;
+        }
+
+        // passing on a wildcard hands out the whole subtree, so nothing beneath it may be held less than virally
+        String[] segments = segments(privilege);
+        if (!isWildcard(segments)) {
+            return true;
+        }
+        PrivilegeTrie node = this;
+        for (int i = 0; i < segments.length - 1 && null != node; i++) {
+            node = node._children.get(segments[i]);
+        }
+        if (null == node) {
+            return true;
+        }
+        for (PrivilegeTrie child : node._children.values()) {
+            if (!child._allViral) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void transitions(long after, Collection<Long> times) {
+        addTransitions(_exact, after, times);
+        addTransitions(_wildcard, after, times);
+        for (PrivilegeTrie child : _children.values()) {
+            child.transitions(after, times);
+        }
+    }
+
+    public long nextTransition(long after) {
+        long next = Math.min(slotTransition(_exact, after), slotTransition(_wildcard, after));
+        for (PrivilegeTrie child : _children.values()) {
+            next = Math.min(next, child.nextTransition(after));
+        }
+        return next;
+    }
+
+    public boolean isEmpty() {
+        return null == _exact && null == _wildcard && _children.isEmpty();
+    }
+
+    private Slot find(String privilege, Long now) {
+        if (null == privilege) {
+            throw new IllegalArgumentException("privilege must be non-null");
+        }
+
+        // the most specific grant wins: an exact grant, else the wildcard on the nearest ancestor that has one. The
+        // exception is a wildcard revocation, which also takes away whatever beneath it was granted before it
+        String[] segments = segments(privilege);
+        boolean wildcard = isWildcard(segments);
+        int depth = wildcard ? segments.length - 1 : segments.length;
+        Slot best = null;
+        PrivilegeTrie node = this;
+        for (int i = 0; i < depth; i++) {
+            best = narrow(best, node._wildcard, now);
+            node = node._children.get(segments[i]);
+            if (null == node) {
+                return best;
+            }
+        }
+        return narrow(best, wildcard ? node._wildcard : node._exact, now);
+    }
+
+    private static Slot narrow(Slot best, Slot slot, Long now) {
+        if (!isActive(slot, now)) {
+            return best;
+        }
+        boolean revoked = null != best && AuthBlock.Grant.Type.REVOKE.equals(best._type)
+                && best._sequence > slot._sequence;
+        return revoked ? best : slot;
+    }
+
+    private PrivilegeTrie with(String[] segments, int index, int depth, boolean wildcard, Slot slot) {
+
+        // path copying: only the nodes from the root down to the granted name are rebuilt
+        if (index == depth) {
+            return wildcard
+                    ? new PrivilegeTrie(_children, _exact, slot, _hierarchical)
+                    : new PrivilegeTrie(_children, slot, _wildcard, _hierarchical);
+        }
+        PrivilegeTrie child = _children.get(segments[index]);
+        if (null == child) {
+            child = empty(_hierarchical);
+        }
+        Map<String, PrivilegeTrie> children = new HashMap<>(_children);
+        children.put(segments[index], child.with(segments, index + 1, depth, wildcard, slot));
+        return new PrivilegeTrie(Collections.unmodifiableMap(children), _exact, _wildcard, _hierarchical);
+    }
+
+    private String[] segments(String privilege) {
+        return _hierarchical ? privilege.split("\\" + SEPARATOR, -1) : new String[]{privilege};
+    }
+
+    private boolean isWildcard(String[] segments) {
+        return _hierarchical && WILDCARD.equals(segments[segments.length - 1]);
+    }
+
+    private static boolean isViral(Slot slot) {
+        return null == slot || AuthBlock.Grant.Type.VIRAL_GRANT.equals(slot._type);
+    }
+
+    private static long sequence(Slot slot) {
+        return (null != slot) ? slot._sequence : 0;
+    }
+
+    private static boolean isActive(Slot slot, Long now) {
+        return null != slot && (null == now || (slot._notBefore <= now && now < slot._expires));
+    }
+
+    private static void addTransitions(Slot slot, long after, Collection<Long> times) {
+        if (null == slot) {
+            return;
+        }
+        if (slot._notBefore > after && slot._notBefore != Long.MIN_VALUE) {
+            times.add(slot._notBefore);
+        }
+        if (slot._expires > after && slot._expires != Long.MAX_VALUE) {
+            times.add(slot._expires);
+        }
+    }
+
+    private static long slotTransition(Slot slot, long after) {
+        if (null == slot) {
+            return Long.MAX_VALUE;
+        }
+        if (slot._notBefore > after) {
+            return slot._notBefore;
+        }
+        return (slot._expires > after) ? slot._expires : Long.MAX_VALUE;
+    }
+
+    private static final class Slot {
+        private final AuthBlock.Grant.Type _type;
+        private final long _notBefore;
+        private final long _expires;
+        private final long _sequence;
+
+        // the sequence orders slots by when they were added to the trie, so a revocation can tell which of the
+        // grants beneath it came before it
+        Slot(AuthBlock.Grant.Type type, long notBefore, long expires, long sequence) {
+            _type = type;
+            _notBefore = notBefore;
+            _expires = expires;
+            _sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.cisco.clique.sdk.validation;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+public class TimingWheel<T> {
+
+    private final Level _root;
+    private final List<Timer<T>> _current;
+    private int _size;
+
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis < 1 || wheelSize < 2) {
+            throw new IllegalArgumentException("tick must be positive and a wheel needs at least two buckets");
+        }
+        _root = new Level(tickMillis, wheelSize, startMillis);
+        _current = new ArrayList<>();
+        _size = 0;
+    }
+
+    public synchronized long getCurrentTime() {
+        return _root._currentTime;
+    }
+
+    public synchronized int size() {
+        return _size;
+    }
+
+    public synchronized void schedule(long deadline, T item) {
+        place(new Timer<>(deadline, item));
+        _size++;
+    }
+
+    public synchronized List<T> advance(long now) {
+
+        // cascade: every bucket the clock passed over is emptied and its timers re-placed from the bottom level,
+        // landing either in a finer bucket or in the current tick
+        List<Timer<T>> drained = new ArrayList<>();
+        _root.advanceTo(now, drained);
+        for (Timer<T> timer : drained) {
+            place(timer);
+        }
+
+        // the current tick is the only place timers are compared against the exact time, so nothing fires early
+        List<T> due = new ArrayList<>();
+        Iterator<Timer<T>> iterator = _current.iterator();
+        while (iterator.hasNext()) {
+            Timer<T> timer = iterator.next();
+            if (timer._deadline <= now) {
+                due.add(timer._item);
+                iterator.remove();
+            }
+        }
+        _size -= due.size();
+        return due;
+    }
+
+    private void place(Timer<T> timer) {
+        if (!_root.add(timer)) {
+            _current.add(timer);
+        }
+    }
+
+    private final class Level {
+        private final long _tickMillis;
+        private final long _interval;
+        private final List<List<Timer<T>>> _buckets;
+        private long _currentTime;
+        private Level _overflow;
+
+        Level(long tickMillis, int wheelSize, long startMillis) {
+            _tickMillis = tickMillis;
+            _interval = tickMillis * wheelSize;
+            _buckets = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                _buckets.add(new ArrayList<Timer<T>>());
+            }
+            _currentTime = startMillis - floorMod(startMillis, tickMillis);
+        }
+
+        boolean add(Timer<T> timer) {
+
+            // anything inside the current tick is left to the caller, further out than this level spans goes to the
+            // next coarser level, created the first time it is needed
+            if (timer._deadline < _currentTime + _tickMillis) {
+                return false;
+            }
+            if (timer._deadline < _currentTime + _interval) {
+                _buckets.get(index(timer._deadline)).add(timer);
+                return true;
+            }
+            if (null == _overflow) {
+                _overflow = new Level(_interval, _buckets.size(), _currentTime);
+            }
+            return _overflow.add(timer);
+        }
+
+        void advanceTo(long now, List<Timer<T>> drained) {
+            long target = now - floorMod(now, _tickMillis);
+            if (target <= _currentTime) {
+                return;
+            }
+
+            // a jump of a whole revolution or more passes over every bucket, so no more than one pass is needed
+            long steps = (target - _currentTime) / _tickMillis;
+            int count = (int) Math.min(steps, _buckets.size());
+            for (int i = 1; i <= count; i++) {
+                List<Timer<T>> bucket = _buckets.get(index(_currentTime + i * _tickMillis));
+                drained.addAll(bucket);
+                bucket.clear();
+            }
+            _currentTime = target;
+            if (null != _overflow) {
+                _overflow.advanceTo(now, drained);
+            }
+        }
+
+        private int index(long time) {
+            long ticks = (time - floorMod(time, _tickMillis)) / _tickMillis;
+            return (int) floorMod(ticks, _buckets.size());
+        }
+    }
+
+    private static long floorMod(long value, long divisor) {
+        long mod = value % divisor;
+        return (mod < 0) ? mod + divisor : mod;
+    }
+
+    private static final class Timer<T> {
+        private final long _deadline;
+        private final T _item;
+
+        Timer(long deadline, T item) {
+            _deadline = deadline;
+            _item = item;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.cisco.clique.sdk.validation;
+
+import com.cisco.clique.sdk.chains.AbstractChain;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ValidationScheduler {
+
+    public static final int DEFAULT_QUEUE_LIMIT = 256;
+    private final ThreadPoolExecutor _executor;
+    private final Map<Key, Task> _inFlight;
+    private final AtomicLong _submitted;
+    private final AtomicLong _coalesced;
+    private final AtomicLong _shed;
+    private final AtomicLong _started;
+    private final AtomicLong _totalWaitNanos;
+    private final AtomicLong _maxWaitNanos;
+
+    public ValidationScheduler(int threads) {
+        this(threads, DEFAULT_QUEUE_LIMIT);
+    }
+
+    public ValidationScheduler(int threads, int queueLimit) {
+        if (threads < 1 || queueLimit < 1) {
+            throw new IllegalArgumentException("thread count and queue limit must both be positive");
+        }
+
+        // a fixed pool in front of a bounded queue: once both are full new work is refused rather than piled up
+        _executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueLimit), new ThreadPoolExecutor.AbortPolicy());
+        _inFlight = new ConcurrentHashMap<>();
+        _submitted = new AtomicLong();
+        _coalesced = new AtomicLong();
+        _shed = new AtomicLong();
+        _started = new AtomicLong();
+        _totalWaitNanos = new AtomicLong();
+        _maxWaitNanos = new AtomicLong();
+    }
+
+    public <C extends AbstractChain<?>> C validate(final C chain) throws Exception {
+        return validate(chain, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                chain.validate();
+                return null;
+            }
+        });
+    }
+
+    public <C extends AbstractChain<?>> C validate(C chain, Callable<?> validation) throws Exception {
+        if (null == chain || null == validation) {
+            throw new IllegalArgumentException("chain and validation must both be non-null");
+        }
+
+        // requests for the same chain at the same head, checked against the same trust roots, share whichever
+        // validation got there first, and get back the chain that validation ran on (theirs would be an unvalidated
+        // copy of it); a chain validated against somebody else's trust roots vouches for nothing
+        Key key = new Key(chain.getClass(), chain.getSubject(), chain.getHeadHash(),
+                chain.getValidator().getTrustRoots());
+        Task task = new Task(key, chain, validation);
+        Task running = _inFlight.putIfAbsent(key, task);
+        if (null != running) {
+            _coalesced.incrementAndGet();
+            task = running;
+        } else {
+            try {
+                _executor.execute(task);
+                _submitted.incrementAndGet();
+            } catch (RejectedExecutionException e) {
+                _inFlight.remove(key, task);
+                _shed.incrementAndGet();
+                throw new RejectedExecutionException("validation queue is full, shedding " + key._uri, e);
+            }
+        }
+        try {
+            @SuppressWarnings("unchecked")
+            C validated = (C) task.get();
+            return validated;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public int getQueueDepth() {
+        return _executor.getQueue().size();
+    }
+
+    public int getInFlight() {
+        return _inFlight.size();
+    }
+
+    public long getSubmitted() {
+        return _submitted.get();
+    }
+
+    public long getCoalesced() {
+        return _coalesced.get();
+    }
+
+    public long getShed() {
+        return _shed.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long started = _started.get();
+        return (0 == started) ? 0 : _totalWaitNanos.get() / (started * 1e6);
+    }
+
+    public double getMaxWaitMillis() {
+        return _maxWaitNanos.get() / 1e6;
+    }
+
+    public void shutdown() {
+        _executor.shutdown();
+    }
+
+    private void started(long waitNanos) {
+        _started.incrementAndGet();
+        _totalWaitNanos.addAndGet(waitNanos);
+        long max = _maxWaitNanos.get();
+        while (waitNanos > max && !_maxWaitNanos.compareAndSet(max, waitNanos)) {
+            max = _maxWaitNanos.get();
+        }
+    }
+
+    private final class Task extends FutureTask<AbstractChain<?>> {
+        private final Key _key;
+        private final long _queuedNanos;
+
+        Task(Key key, final AbstractChain<?> chain, final Callable<?> validation) {
+            super(new Callable<AbstractChain<?>>() {
+                @Override
+                public AbstractChain<?> call() throws Exception {
+                    validation.call();
+                    return chain;
+                }
+            });
+            _key = key;
+            _queuedNanos = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            started(System.nanoTime() - _queuedNanos);
+            super.run();
+        }
+
+        @Override
+        protected void done() {
+
+            // only in-flight work is shared, a later request for the same head validates (or hits caches) afresh
+            _inFlight.remove(_key, this);
+        }
+    }
+
+    private static final class Key {
+        private final Class<?> _type;
+        private final URI _uri;
+        private final String _headHash;
+        private final Set<String> _trustRoots;
+
+        Key(Class<?> type, URI uri, String headHash, Set<String> trustRoots) {
+            _type = type;
+            _uri = uri;
+            _headHash = headHash;
+            _trustRoots = trustRoots;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) obj;
+            return _type.equals(that._type)
+                    && _trustRoots == that._trustRoots
+                    && (null == _uri ? null == that._uri : _uri.equals(that._uri))
+                    && (null == _headHash ? null == that._headHash : _headHash.equals(that._headHash));
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = _type.hashCode();
+            hash = 31 * hash + System.identityHashCode(_trustRoots);
+            hash = 31 * hash + ((null != _uri) ? _uri.hashCode() : 0);
+            return 31 * hash + ((null != _headHash) ? _headHash.hashCode() : 0);
+        }
+    }
+}
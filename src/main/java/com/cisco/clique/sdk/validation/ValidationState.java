@@ -0,0 +1,38 @@
+package com.cisco.clique.sdk.validation;
+
+import com.cisco.clique.sdk.chains.AbstractBlock;
+
+import java.net.URI;
+
+public class ValidationState<T extends AbstractBlock> {
+
+    private final T _lastValidated;
+    private final URI _chainIssuer;
+    private final URI _chainSubject;
+
+    public ValidationState() {
+        this(null, null, null);
+    }
+
+    public ValidationState(T lastValidated, URI chainIssuer, URI chainSubject) {
+        _lastValidated = lastValidated;
+        _chainIssuer = chainIssuer;
+        _chainSubject = chainSubject;
+    }
+
+    protected ValidationState(ValidationState<T> state) {
+        this(state._lastValidated, state._chainIssuer, state._chainSubject);
+    }
+
+    public T getLastValidated() {
+        return _lastValidated;
+    }
+
+    public URI getChainIssuer() {
+        return _chainIssuer;
+    }
+
+    public URI getChainSubject() {
+        return _chainSubject;
+    }
+}
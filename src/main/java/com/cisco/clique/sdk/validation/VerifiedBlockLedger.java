@@ -0,0 +1,194 @@
+package com.cisco.clique.sdk.validation;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class VerifiedBlockLedger {
+
+    public static final int MIN_SECRET_BYTES = 32;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int RECORD_BYTES = 32;
+    private static final byte[] MAGIC = "CLQVBL01".getBytes(StandardCharsets.US_ASCII);
+    private final File _file;
+    private final SecretKeySpec _secret;
+    private final Set<ByteBuffer> _records;
+    private OutputStream _out;
+    private long _hits;
+    private long _misses;
+    private long _writeFailures;
+
+    public VerifiedBlockLedger(File file, byte[] secret) throws Exception {
+        if (null == file || null == secret || secret.length < MIN_SECRET_BYTES) {
+            throw new IllegalArgumentException("a ledger file and a secret of at least 32 bytes are required");
+        }
+        _file = file;
+        _secret = new SecretKeySpec(secret.clone(), MAC_ALGORITHM);
+        _records = new HashSet<>();
+        load();
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    public boolean isVerified(String hash, String pkt) throws Exception {
+        ByteBuffer record = ByteBuffer.wrap(record(hash, pkt));
+        synchronized (this) {
+            if (_records.contains(record)) {
+                _hits++;
+                return true;
+            }
+            _misses++;
+            return false;
+        }
+    }
+
+    public void recordVerified(String hash, String pkt) throws Exception {
+        byte[] record = record(hash, pkt);
+        synchronized (this) {
+            if (!_records.add(ByteBuffer.wrap(record))) {
+                return;
+            }
+
+            // the ledger only ever saves work, so a closed ledger or a failed write is counted rather than failing
+            // the validation that asked for it; after a failed write the file stops growing, since appending past a
+            // torn record would misalign everything after it
+            if (null == _out) {
+                _writeFailures++;
+                return;
+            }
+            try {
+                _out.write(record);
+                _out.flush();
+            } catch (IOException e) {
+                _writeFailures++;
+                closeQuietly();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return _records.size();
+    }
+
+    public synchronized long getHits() {
+        return _hits;
+    }
+
+    public synchronized long getMisses() {
+        return _misses;
+    }
+
+    public synchronized long getWriteFailures() {
+        return _writeFailures;
+    }
+
+    public synchronized void clear() throws Exception {
+        closeQuietly();
+        _records.clear();
+        _hits = 0;
+        _misses = 0;
+        _writeFailures = 0;
+        create();
+    }
+
+    public void close() throws IOException {
+
+        // a closed ledger can't record anything, so stop validation from consulting it at all
+        VerifierCache.getInstance().detachLedger(this);
+        synchronized (this) {
+            closeStream();
+        }
+    }
+
+    private void closeStream() throws IOException {
+        if (null != _out) {
+            OutputStream out = _out;
+            _out = null;
+            out.close();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            closeStream();
+        } catch (IOException e) {
+            // the stream is dropped either way
+        }
+    }
+
+    private void load() throws Exception {
+
+        // a file that isn't a ledger is somebody else's data and is never overwritten; a ledger written under
+        // another secret, or one whose header was torn while being created, can't vouch for anything and starts over
+        byte[] bytes = _file.isFile() ? Files.readAllBytes(_file.toPath()) : new byte[0];
+        byte[] header = header();
+        if (bytes.length < header.length || !Arrays.equals(Arrays.copyOf(bytes, header.length), header)) {
+            int magic = Math.min(bytes.length, MAGIC.length);
+            if (!Arrays.equals(Arrays.copyOf(bytes, magic), Arrays.copyOf(MAGIC, magic))) {
+                throw new IllegalArgumentException(_file + " is not a verified block ledger");
+            }
+            create();
+            return;
+        }
+
+        // a partial record left by a crash mid-append is dropped, the rest are kept as they were written
+        int end = header.length + (bytes.length - header.length) / RECORD_BYTES * RECORD_BYTES;
+        for (int offset = header.length; offset < end; offset += RECORD_BYTES) {
+            _records.add(ByteBuffer.wrap(Arrays.copyOfRange(bytes, offset, offset + RECORD_BYTES)));
+        }
+        if (end != bytes.length) {
+            rewrite();
+        } else {
+            _out = new FileOutputStream(_file, true);
+        }
+    }
+
+    private void create() throws Exception {
+        _out = new FileOutputStream(_file, false);
+        _out.write(header());
+        _out.flush();
+    }
+
+    private void rewrite() throws Exception {
+        create();
+        for (ByteBuffer record : _records) {
+            _out.write(record.array());
+        }
+        _out.flush();
+    }
+
+    private byte[] header() throws Exception {
+
+        // the header names the format and carries a MAC of it, so the secret a ledger was written under is checkable
+        byte[] header = Arrays.copyOf(MAGIC, MAGIC.length + RECORD_BYTES);
+        System.arraycopy(mac(MAGIC), 0, header, MAGIC.length, RECORD_BYTES);
+        return header;
+    }
+
+    private byte[] record(String hash, String pkt) throws Exception {
+        if (null == hash || null == pkt) {
+            throw new IllegalArgumentException("block hash and key thumbprint must both be non-null");
+        }
+
+        // each record is a MAC over the pair rather than the pair itself: it's fixed-size, and nobody without the
+        // secret can add a record that would let a block skip its signature check
+        return mac((hash + "." + pkt).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private byte[] mac(byte[] bytes) throws Exception {
+        Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(_secret);
+        return mac.doFinal(bytes);
+    }
+}
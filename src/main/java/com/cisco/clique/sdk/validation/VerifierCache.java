@@ -0,0 +1,144 @@
+package com.cisco.clique.sdk.validation;
+
+import com.cisco.clique.sdk.Transport;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.jwk.ECKey;
+
+import java.security.interfaces.ECPublicKey;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class VerifierCache {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    private final int _capacity;
+    private final Map<String, Entry> _entries;
+    private volatile VerifiedBlockLedger _ledger;
+    private long _hits;
+    private long _misses;
+
+    public VerifierCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        _capacity = capacity;
+        _entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > _capacity;
+            }
+        };
+    }
+
+    public static VerifierCache getInstance() {
+        return VerifierCacheSingleton.INSTANCE;
+    }
+
+    public JWSVerifier getVerifier(Transport transport, String pkt) throws Exception {
+        Entry entry = lookup(transport, pkt);
+        return (null != entry) ? entry._verifier : null;
+    }
+
+    public ECPublicKey getPublicKey(Transport transport, String pkt) throws Exception {
+        Entry entry = lookup(transport, pkt);
+        return (null != entry) ? entry._publicKey : null;
+    }
+
+    public VerifiedBlockLedger getLedger() {
+        return _ledger;
+    }
+
+    public synchronized void setLedger(VerifiedBlockLedger ledger) {
+        _ledger = ledger;
+    }
+
+    synchronized void detachLedger(VerifiedBlockLedger ledger) {
+        if (_ledger == ledger) {
+            _ledger = null;
+        }
+    }
+
+    public boolean isVerified(String hash, String pkt) throws Exception {
+        VerifiedBlockLedger ledger = _ledger;
+        return null != ledger && ledger.isVerified(hash, pkt);
+    }
+
+    public void recordVerified(String hash, String pkt) throws Exception {
+        VerifiedBlockLedger ledger = _ledger;
+        if (null != ledger) {
+            ledger.recordVerified(hash, pkt);
+        }
+    }
+
+    public synchronized boolean isCached(String pkt) {
+        return _entries.containsKey(pkt);
+    }
+
+    public synchronized int size() {
+        return _entries.size();
+    }
+
+    public int getCapacity() {
+        return _capacity;
+    }
+
+    public synchronized long getHits() {
+        return _hits;
+    }
+
+    public synchronized long getMisses() {
+        return _misses;
+    }
+
+    public synchronized void clear() {
+        _entries.clear();
+        _hits = 0;
+        _misses = 0;
+    }
+
+    private Entry lookup(Transport transport, String pkt) throws Exception {
+        if (null == transport || null == pkt) {
+            throw new IllegalArgumentException("transport and key thumbprint must both be non-null");
+        }
+        synchronized (this) {
+            Entry entry = _entries.get(pkt);
+            if (null != entry) {
+                _hits++;
+                return entry;
+            }
+            _misses++;
+        }
+
+        // fetch and decode outside the lock, racing misses for the same key just produce equivalent entries
+        ECKey key = transport.getKey(pkt);
+        if (null == key) {
+            return null;
+        }
+
+        // a thumbprint names exactly one key, so only cache a key that really hashes to the thumbprint asked for
+        if (!pkt.equals(key.computeThumbprint().toString())) {
+            throw new InvalidBlockException("signature verification key does not match its thumbprint");
+        }
+        ECPublicKey publicKey = key.toECPublicKey();
+        Entry entry = new Entry(publicKey, new ECDSAVerifier(publicKey));
+        synchronized (this) {
+            _entries.put(pkt, entry);
+        }
+        return entry;
+    }
+
+    private static class Entry {
+        private final ECPublicKey _publicKey;
+        private final JWSVerifier _verifier;
+
+        Entry(ECPublicKey publicKey, JWSVerifier verifier) {
+            _publicKey = publicKey;
+            _verifier = verifier;
+        }
+    }
+
+    private static class VerifierCacheSingleton {
+        private static final VerifierCache INSTANCE = new VerifierCache(DEFAULT_CAPACITY);
+    }
+}
@@ -0,0 +1,218 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractBlock;
+import com.cisco.clique.sdk.chains.AuthChain;
+import com.cisco.clique.sdk.validation.AuthBlockValidator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.security.Security;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.testng.Assert.*;
+
+public class AntiEntropySyncTest {
+    URI _mintUri;
+    URI _aliceUri;
+    URI _resourceUri;
+    MemoryTransport _first;
+    MemoryTransport _second;
+    Set<String> _trustRoots;
+    Clique _clique;
+    Identity _alice;
+    Policy _policy;
+
+    @BeforeTest
+    public void suiteSetUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        _mintUri = URI.create("uri:clique:mint");
+        _aliceUri = URI.create("uri:clique:alice");
+        _resourceUri = URI.create("uri:some:protected:resource");
+    }
+
+    @BeforeMethod
+    public void testSetUp() throws Exception {
+        _first = new MemoryTransport();
+        _second = new MemoryTransport();
+        _trustRoots = new HashSet<>();
+        _clique = new Clique(_first, _trustRoots);
+        Identity mint = _clique.createIdentity(_mintUri);
+        _alice = _clique.createIdentity(mint, _aliceUri);
+        _policy = _clique.createPolicy(_alice, _resourceUri)
+                .hierarchical()
+                .viralGrant(_alice, "*")
+                .build();
+    }
+
+    @Test
+    public void initialSyncTest() throws Exception {
+        AntiEntropySync sync = new AntiEntropySync(_trustRoots);
+        AntiEntropySync.Result result = sync.sync(_first, _second);
+        assertEquals(result.getChains(), 3);
+        assertTrue(result.getKeys() > 0);
+        assertEquals(result.getConflicts(), 0);
+
+        // the replica now validates everything on its own
+        Clique replica = new Clique(_second, _trustRoots);
+        assertTrue(replica.getPolicy(_resourceUri).hasPrivilege(replica.getPublicIdentity(_aliceUri), "read"));
+        assertEquals(_second.getHeadHashes(ChainEvent.Type.AUTH_CHAIN),
+                _first.getHeadHashes(ChainEvent.Type.AUTH_CHAIN));
+
+        // replicas that agree exchange nothing but the roots of their digests, both ways for both kinds of chain
+        result = sync.reconcile(_first, _second);
+        assertEquals(result.getChains(), 0);
+        assertEquals(result.getBlocks(), 0);
+        assertEquals(result.getHashes(), 8);
+    }
+
+    @Test
+    public void incrementalSyncTest() throws Exception {
+        AntiEntropySync sync = new AntiEntropySync(_trustRoots);
+        AntiEntropySync.Result initial = sync.sync(_first, _second);
+        _policy.update(_alice)
+                .grant(_alice, "write")
+                .build();
+
+        // only the policy's new block crosses over
+        AntiEntropySync.Result result = sync.reconcile(_first, _second);
+        assertEquals(result.getChains(), 1);
+        assertEquals(result.getBlocks(), 1);
+        assertTrue(result.getBytes() < initial.getBytes());
+
+        // the whole policy is rewritten on the target, so the bytes count both of its blocks
+        long policyBytes = 0;
+        for (AbstractBlock block : _first.getAuthChain(null, _resourceUri).getBlocks()) {
+            policyBytes += block.serialize().length();
+        }
+        assertEquals(result.getBytes(), policyBytes);
+
+        // one changed chain costs a path of node pairs per direction, nowhere near the whole tree
+        assertTrue(result.getHashes() < 4 * (2 * MerkleDigest.DEFAULT_DEPTH + 4));
+        Clique replica = new Clique(_second, _trustRoots);
+        assertTrue(replica.getPolicy(_resourceUri).hasPrivilege(replica.getPublicIdentity(_aliceUri), "write"));
+
+        // and changes made on the replica flow back the other way
+        replica.getPolicy(_resourceUri).update(_alice)
+                .grant(_alice, "admin")
+                .build();
+        result = sync.reconcile(_first, _second);
+        assertEquals(result.getBlocks(), 1);
+        assertTrue(_clique.getPolicy(_resourceUri).hasPrivilege(_alice, "admin"));
+    }
+
+    @Test
+    public void conflictTest() throws Exception {
+        AntiEntropySync sync = new AntiEntropySync(_trustRoots);
+        sync.sync(_first, _second);
+        _policy.update(_alice)
+                .grant(_alice, "write")
+                .build();
+        new Clique(_second, _trustRoots).getPolicy(_resourceUri).update(_alice)
+                .grant(_alice, "admin")
+                .build();
+
+        // forked heads can't be merged by copying blocks, both sides keep theirs and the fork is reported
+        String head = _first.getAuthChain(null, _resourceUri).getHeadHash();
+        AntiEntropySync.Result result = sync.reconcile(_first, _second);
+        assertEquals(result.getConflicts(), 2);
+        assertEquals(result.getChains(), 0);
+        assertEquals(_first.getAuthChain(null, _resourceUri).getHeadHash(), head);
+    }
+
+    @Test
+    public void forgedTailTest() throws Exception {
+        AntiEntropySync sync = new AntiEntropySync(_trustRoots);
+        sync.sync(_first, _second);
+        String head = _second.getAuthChain(null, _resourceUri).getHeadHash();
+
+        // a block that doesn't follow the policy's head is appended on the source without validation
+        _clique.createPolicy(_alice, URI.create("uri:some:other:resource"))
+                .grant(_alice, "read")
+                .build();
+        ArrayNode array = new ObjectMapper().createArrayNode();
+        array.add(_first.getAuthChain(null, _resourceUri).getBlocks().get(0).serialize());
+        array.add(_first.getAuthChain(null, URI.create("uri:some:other:resource")).getBlocks().get(0).serialize());
+        _first.putAuthChain(new AuthChain(new AuthBlockValidator(_first, _trustRoots), array, false));
+
+        // the target keeps the head it trusted and the forged chain is reported as a conflict
+        AntiEntropySync.Result result = sync.sync(_first, _second);
+        assertEquals(result.getConflicts(), 1);
+        assertEquals(result.getChains(), 1);
+        assertEquals(_second.getAuthChain(null, _resourceUri).getHeadHash(), head);
+        assertTrue(new Clique(_second, _trustRoots).getPolicy(_resourceUri).hasPrivilege(
+                new Clique(_second, _trustRoots).getPublicIdentity(_aliceUri), "read"));
+    }
+
+    @Test
+    public void directoryTest() throws Exception {
+        Map<URI, String> heads = _first.getHeadHashes(ChainEvent.Type.ID_CHAIN);
+        MerkleDigest digest = new MerkleDigest(heads, 4);
+        assertEquals(_first.getNodeHash(ChainEvent.Type.ID_CHAIN, 4, 0, 0), digest.getRoot());
+        assertEquals(_first.getNodeHash(ChainEvent.Type.ID_CHAIN, 4, 2, 3), digest.getNode(2, 3));
+        int entries = 0;
+        for (int i = 0; i < 16; i++) {
+            assertEquals(_first.getLeafHeads(ChainEvent.Type.ID_CHAIN, 4, i), digest.getLeaf(i));
+            entries += digest.getLeaf(i).size();
+        }
+        assertEquals(entries, heads.size());
+
+        // a write is reflected in the next hash asked for
+        String root = _first.getNodeHash(ChainEvent.Type.AUTH_CHAIN, 4, 0, 0);
+        _policy.update(_alice)
+                .grant(_alice, "write")
+                .build();
+        assertNotEquals(_first.getNodeHash(ChainEvent.Type.AUTH_CHAIN, 4, 0, 0), root);
+
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                _first.getNodeHash(ChainEvent.Type.ID_CHAIN, 4, 5, 0);
+            }
+        });
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                _first.getLeafHeads(ChainEvent.Type.ID_CHAIN, 4, 16);
+            }
+        });
+    }
+
+    @Test
+    public void digestTest() throws Exception {
+        Map<URI, String> heads = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            heads.put(URI.create("uri:clique:user:" + i), "head-" + i);
+        }
+        MerkleDigest digest = new MerkleDigest(heads);
+        assertEquals(new MerkleDigest(new HashMap<>(heads)).getRoot(), digest.getRoot());
+        assertTrue(digest.diff(new MerkleDigest(heads)).isEmpty());
+
+        Map<URI, String> changed = new HashMap<>(heads);
+        changed.put(URI.create("uri:clique:user:7"), "head-7b");
+        changed.remove(URI.create("uri:clique:user:8"));
+        changed.put(URI.create("uri:clique:user:new"), "head-new");
+        MerkleDigest other = new MerkleDigest(changed);
+        assertNotEquals(other.getRoot(), digest.getRoot());
+        Set<URI> expected = new HashSet<>();
+        expected.add(URI.create("uri:clique:user:7"));
+        expected.add(URI.create("uri:clique:user:8"));
+        expected.add(URI.create("uri:clique:user:new"));
+        assertEquals(digest.diff(other), expected);
+        assertEquals(other.diff(digest), expected);
+
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new MerkleDigest(new HashMap<URI, String>(), 2).diff(new MerkleDigest(new HashMap<URI, String>(), 3));
+            }
+        });
+    }
+}
@@ -0,0 +1,167 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.AuthBlock;
+import com.cisco.clique.sdk.chains.AuthChain;
+import com.cisco.clique.sdk.chains.IdBlock;
+import com.cisco.clique.sdk.chains.IdChain;
+import com.cisco.clique.sdk.validation.IdBlockValidator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.Security;
+import java.util.HashSet;
+
+import static org.testng.Assert.*;
+
+public class CachingTransportTest {
+    File _directory;
+    MemoryTransport _backing;
+    CachingTransport _transport;
+    Clique _clique;
+    URI _mintUri;
+    URI _aliceUri;
+    URI _bobUri;
+    URI _resourceUri;
+
+    @BeforeTest
+    public void suiteSetUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        _mintUri = URI.create("uri:clique:mint");
+        _aliceUri = URI.create("uri:clique:alice");
+        _bobUri = URI.create("uri:clique:bob");
+        _resourceUri = URI.create("uri:clique:some:resource");
+    }
+
+    @BeforeMethod
+    public void testSetUp() throws Exception {
+        _directory = Files.createTempDirectory("clique-cache").toFile();
+        _backing = new MemoryTransport();
+
+        // an L1 budget this small only ever holds the most recently used chain
+        _transport = new CachingTransport(_backing, 1, _directory, 64 * 1024, 4);
+        _clique = new Clique(_transport, new HashSet<String>());
+    }
+
+    @AfterMethod
+    public void testTearDown() {
+        _transport.close();
+        _transport.clear();
+        assertTrue(_directory.delete());
+    }
+
+    @Test
+    public void tiersTest() throws Exception {
+        Identity mint = _clique.createIdentity(_mintUri);
+        Identity alice = _clique.createIdentity(mint, _aliceUri);
+        _clique.createIdentity(mint, _bobUri);
+        assertTrue(_transport.getL1Bytes() > 0);
+
+        // alice was pushed down to L2 and comes back as a fresh, valid chain
+        long l2Hits = _transport.getL2Hits();
+        PublicIdentity alicePublic = _clique.getPublicIdentity(_aliceUri);
+        assertTrue(_transport.getL2Hits() > l2Hits);
+        assertEquals(alicePublic.getActivePublicKey().computeThumbprint(),
+                alice.getActiveKeyPair().computeThumbprint());
+
+        Policy policy = _clique.createPolicy(mint, _resourceUri)
+                .grant(alicePublic, "read")
+                .build();
+        long l1Hits = _transport.getL1Hits();
+        assertEquals(_clique.getPolicy(_resourceUri), policy);
+        assertTrue(_transport.getL1Hits() > l1Hits);
+        assertTrue(_clique.getPolicy(_resourceUri).hasPrivilege(alicePublic, "read"));
+
+        // closing leaves no segment files behind
+        _transport.close();
+        assertEquals(_directory.list().length, 0);
+        assertEquals(_transport.getL1Bytes(), 0);
+    }
+
+    @Test
+    public void sizeAwareEvictionTest() throws Exception {
+        _transport.close();
+        _transport.clear();
+        _transport = new CachingTransport(_backing, 1024 * 1024, _directory, 64 * 1024, 4);
+        _clique = new Clique(_transport, new HashSet<String>());
+        Identity mint = _clique.createIdentity(_mintUri);
+        _clique.createIdentity(mint, _aliceUri);
+        _clique.createIdentity(mint, _bobUri);
+
+        // everything fits within a generous byte budget, so nothing is served from L2
+        _clique.getPublicIdentity(_mintUri);
+        _clique.getPublicIdentity(_aliceUri);
+        _clique.getPublicIdentity(_bobUri);
+        assertEquals(_transport.getL2Hits(), 0);
+        assertTrue(_transport.getL1Bytes() <= 1024 * 1024);
+    }
+
+    @Test
+    public void growthTest() throws Exception {
+        _transport.close();
+        _transport.clear();
+        _transport = new CachingTransport(_backing, 1024 * 1024, _directory, 64 * 1024, 4);
+        _clique = new Clique(_transport, new HashSet<String>());
+        Identity mint = _clique.createIdentity(_mintUri);
+        PublicIdentity alicePublic = _clique.getPublicIdentity(_clique.createIdentity(mint, _aliceUri).getAcct());
+        _clique.createPolicy(mint, _resourceUri)
+                .viralGrant(mint, "read")
+                .build();
+
+        // a block appended straight onto the cached chain is charged to L1 once the chain is next read from it
+        AbstractChain<AuthBlock> chain = _transport.getAuthChain(null, _resourceUri);
+        long bytes = _transport.getL1Bytes();
+        int length = chain.serialize(false).length();
+        new AuthBlock.Builder((AuthChain) chain)
+                .setIssuer(_mintUri)
+                .setIssuerKey(mint.getActiveKeyPair())
+                .setSubject(_resourceUri)
+                .addGrant(new AuthBlock.Grant(AuthBlock.Grant.Type.GRANT, alicePublic.getAcct(), "read"))
+                .build();
+        assertSame(_transport.getAuthChain(null, _resourceUri), chain);
+        assertEquals(_transport.getL1Bytes(), bytes + chain.serialize(false).length() - length);
+    }
+
+    @Test
+    public void invalidationTest() throws Exception {
+        Identity mint = _clique.createIdentity(_mintUri);
+        Identity alice = _clique.createIdentity(mint, _aliceUri);
+        String original = alice.getActiveKeyPair().computeThumbprint().toString();
+        AbstractChain<IdBlock> chain = _backing.getIdChain(null, _aliceUri);
+        String serialization = chain.serialize();
+        alice.rotateKeyPair();
+        assertNotEquals(_clique.getPublicIdentity(_aliceUri).getActivePublicKey().computeThumbprint().toString(),
+                original);
+
+        // a different version published straight to the backing transport must not be hidden by either tier
+        _backing.putIdChain(new IdChain(new IdBlockValidator(_backing, new HashSet<String>()),
+                (ArrayNode) new ObjectMapper().readTree(serialization), false));
+        assertEquals(_clique.getPublicIdentity(_aliceUri).getActivePublicKey().computeThumbprint().toString(),
+                original);
+    }
+
+    @Test
+    public void sharedDirectoryTest() throws Exception {
+        MappedChainLog first = new MappedChainLog(_directory, 1024, 2);
+        ByteBuffer record = first.read(first.append("first".getBytes(StandardCharsets.US_ASCII)));
+
+        // a second log over the same directory writes its own files and leaves the first one's mapped records alone
+        MappedChainLog second = new MappedChainLog(_directory, 1024, 2);
+        second.append("other".getBytes(StandardCharsets.US_ASCII));
+        byte[] bytes = new byte[record.remaining()];
+        record.duplicate().get(bytes);
+        assertEquals(new String(bytes, StandardCharsets.US_ASCII), "first");
+        first.clear();
+        second.clear();
+    }
+}
@@ -0,0 +1,163 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.AuthBlock;
+import com.cisco.clique.sdk.chains.AuthChain;
+import com.cisco.clique.sdk.validation.AuthBlockValidator;
+import com.nimbusds.jose.jwk.ECKey;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.Security;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.testng.Assert.*;
+
+public class ChainDictionaryTest {
+    URI _mintUri;
+    URI _aliceUri;
+    URI _bobUri;
+    Set<String> _trustRoots;
+    ChainDictionary _dictionary;
+    MemoryTransport _transport;
+    Clique _clique;
+    Identity _mint;
+    Identity _alice;
+    Identity _bob;
+
+    @BeforeTest
+    public void suiteSetUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        _mintUri = URI.create("uri:clique:mint");
+        _aliceUri = URI.create("uri:clique:alice");
+        _bobUri = URI.create("uri:clique:bob");
+    }
+
+    @BeforeMethod
+    public void testSetUp() throws Exception {
+        _trustRoots = new HashSet<>();
+        _dictionary = new ChainDictionary();
+        _transport = new MemoryTransport(new HashMap<String, ECKey>(), _dictionary);
+        _clique = new Clique(_transport, _trustRoots);
+        _mint = _clique.createIdentity(_mintUri);
+        _alice = _clique.createIdentity(_mint, _aliceUri);
+        _bob = _clique.createIdentity(_mint, _bobUri);
+    }
+
+    private Policy createPolicy(URI resource) throws Exception {
+        return _clique.createPolicy(_alice, resource)
+                .hierarchical()
+                .viralGrant(_alice, "*")
+                .grant(_bob, "read")
+                .grant(_bob, "write")
+                .build();
+    }
+
+    @Test
+    public void roundTripTest() throws Exception {
+        URI resource = URI.create("uri:some:protected:resource");
+        createPolicy(resource).update(_alice)
+                .grant(_bob, "admin")
+                .build();
+
+        // the decoded chain has the very same blocks, byte for byte, so hashes and signatures still check out
+        AbstractChain<AuthBlock> original = _transport.getAuthChain(null, resource);
+        byte[] encoded = _dictionary.encode(original);
+        AuthChain decoded = new AuthChain(new AuthBlockValidator(_transport, _trustRoots),
+                ByteBuffer.wrap(_dictionary.decode(ByteBuffer.wrap(encoded))), true);
+        assertEquals(decoded.getBlocks().size(), original.getBlocks().size());
+        for (int i = 0; i < original.getBlocks().size(); i++) {
+            assertEquals(decoded.getBlocks().get(i).serialize(), original.getBlocks().get(i).serialize());
+            assertEquals(decoded.getBlocks().get(i).getHash(), original.getBlocks().get(i).getHash());
+        }
+        assertEquals(decoded.getHeadHash(), original.getHeadHash());
+    }
+
+    @Test
+    public void compressionTest() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            createPolicy(URI.create("uri:some:protected:resource:" + i));
+        }
+
+        // issuer, grantee and privilege values repeat across every policy and end up stored once
+        assertTrue(_dictionary.size() > 0);
+        assertTrue(_dictionary.getEncodedBytes() * 2 < _dictionary.getRawBytes());
+    }
+
+    @Test
+    public void transportTest() throws Exception {
+        URI resource = URI.create("uri:some:protected:resource");
+        Policy policy = createPolicy(resource);
+        Snapshot snapshot = _transport.snapshot();
+        try {
+            policy.update(_alice)
+                    .grant(_bob, "admin")
+                    .build();
+
+            // every read hands back a fresh copy of what was stored, snapshots included
+            assertNotSame(_transport.getAuthChain(null, resource), _transport.getAuthChain(null, resource));
+            assertEquals(snapshot.getAuthChain(null, resource).getBlocks().size(), 1);
+            assertEquals(_transport.getAuthChain(null, resource).getBlocks().size(), 2);
+        } finally {
+            snapshot.release();
+        }
+        assertTrue(_clique.getPolicy(resource).hasPrivilege(_clique.getPublicIdentity(_bobUri), "admin"));
+        assertEquals(_transport.getHeadHashes(ChainEvent.Type.AUTH_CHAIN).get(resource),
+                _transport.getAuthChain(null, resource).getHeadHash());
+    }
+
+    @Test
+    public void cachingTransportTest() throws Exception {
+        File directory = Files.createTempDirectory("clique-cache").toFile();
+        CachingTransport transport = new CachingTransport(new MemoryTransport(), 1, directory, 64 * 1024, 4,
+                new ChainDictionary());
+        try {
+            Clique clique = new Clique(transport, new HashSet<String>());
+            Identity mint = clique.createIdentity(_mintUri);
+            Identity alice = clique.createIdentity(mint, _aliceUri);
+            clique.createIdentity(mint, _bobUri);
+
+            // alice was pushed down to the dictionary-encoded L2 and comes back as a fresh, valid chain
+            long l2Hits = transport.getL2Hits();
+            PublicIdentity alicePublic = clique.getPublicIdentity(_aliceUri);
+            assertTrue(transport.getL2Hits() > l2Hits);
+            assertEquals(alicePublic.getActivePublicKey().computeThumbprint(),
+                    alice.getActiveKeyPair().computeThumbprint());
+            assertTrue(transport.getL2Dictionary().getEncodedBytes() > 0);
+        } finally {
+            transport.close();
+            transport.clear();
+            assertTrue(directory.delete());
+        }
+    }
+
+    @Test
+    public void badArgumentsTest() throws Exception {
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new ChainDictionary(0);
+            }
+        });
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                _dictionary.encode(null);
+            }
+        });
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                _dictionary.decode(null);
+            }
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package com.cisco.clique.sdk;
+
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.util.Base64URL;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.security.Security;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+public class CompactKeyStoreTest {
+    Random _random;
+
+    @BeforeTest
+    public void suiteSetUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        _random = new Random(42);
+    }
+
+    private ECKey randomKey(int xLength) {
+        byte[] x = new byte[xLength];
+        byte[] y = new byte[32];
+        _random.nextBytes(x);
+        _random.nextBytes(y);
+        return new ECKey.Builder(ECKey.Curve.P_256, Base64URL.encode(x), Base64URL.encode(y)).build();
+    }
+
+    @Test
+    public void roundTripTest() throws Exception {
+        CompactKeyStore store = new CompactKeyStore();
+        Map<String, ECKey> expected = new HashMap<>();
+
+        // enough keys to span several slabs and force the index to grow
+        for (int i = 0; i < 40000; i++) {
+            ECKey key = randomKey((0 == i % 100) ? 31 : 32);
+            String pkt = key.computeThumbprint().toString();
+            assertNull(store.put(pkt, key));
+            expected.put(pkt, key);
+        }
+        assertEquals(store.size(), expected.size());
+        assertEquals(store.compactSize(), expected.size());
+
+        for (Map.Entry<String, ECKey> entry : expected.entrySet()) {
+            ECKey key = store.get(entry.getKey());
+            assertNotNull(key);
+            assertEquals(key.toJSONString(), entry.getValue().toJSONString());
+            assertEquals(key.computeThumbprint().toString(), entry.getKey());
+        }
+        assertEquals(new HashSet<>(store.keySet()), expected.keySet());
+
+        assertNull(store.get(randomKey(32).computeThumbprint().toString()));
+        assertNull(store.get("not-a-thumbprint"));
+        store.clear();
+        assertTrue(store.isEmpty());
+        assertNull(store.get(expected.keySet().iterator().next()));
+    }
+
+    @Test
+    public void overflowTest() throws Exception {
+        CompactKeyStore store = new CompactKeyStore();
+        ECKey plain = randomKey(32);
+        ECKey key = new ECKey.Builder(ECKey.Curve.P_256, plain.getX(), plain.getY()).keyID("some-key").build();
+        String pkt = key.computeThumbprint().toString();
+        store.put(pkt, key);
+        assertEquals(store.compactSize(), 0);
+        assertEquals(store.get(pkt).getKeyID(), "some-key");
+        assertEquals(store.size(), 1);
+    }
+
+    @Test
+    public void transportTest() throws Exception {
+        CompactKeyStore store = new CompactKeyStore();
+        Clique clique = new Clique(new MemoryTransport(store), new HashSet<String>());
+        Identity mint = clique.createIdentity(URI.create("uri:clique:mint"));
+        Identity alice = clique.createIdentity(mint, URI.create("uri:clique:alice"));
+        assertEquals(store.compactSize(), 2);
+
+        PublicIdentity publicAlice = clique.getPublicIdentity(alice.getAcct());
+        Policy policy = clique.createPolicy(mint, URI.create("uri:clique:some:resource"))
+                .grant(publicAlice, "read")
+                .build();
+        assertTrue(clique.getPolicy(URI.create("uri:clique:some:resource")).hasPrivilege(publicAlice, "read"));
+        assertNotNull(policy);
+    }
+}
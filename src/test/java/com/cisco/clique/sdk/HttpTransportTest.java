@@ -0,0 +1,239 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.IdBlock;
+import com.cisco.clique.sdk.validation.AbstractValidator;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class HttpTransportTest {
+    AtomicInteger _idChainGets;
+    MemoryTransport _backing;
+    HttpTransportServer _server;
+    HttpTransport _transport;
+    Clique _clique;
+    URI _mintUri;
+    URI _aliceUri;
+    URI _bobUri;
+    URI _resourceUri;
+
+    @BeforeTest
+    public void suiteSetUp() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        _idChainGets = new AtomicInteger();
+        _backing = new MemoryTransport() {
+            @Override
+            public AbstractChain<IdBlock> getIdChain(AbstractValidator<IdBlock> validator, URI uri) throws Exception {
+                _idChainGets.incrementAndGet();
+                return super.getIdChain(validator, uri);
+            }
+        };
+        _server = new HttpTransportServer(_backing);
+        _server.start();
+        _transport = new HttpTransport(_server.getUri());
+        _clique = new Clique(_transport, new HashSet<String>());
+        _mintUri = URI.create("uri:clique:mint");
+        _aliceUri = URI.create("uri:clique:alice");
+        _bobUri = URI.create("uri:clique:bob");
+        _resourceUri = URI.create("uri:clique:some:resource");
+    }
+
+    @AfterTest
+    public void suiteTearDown() {
+        _server.stop();
+    }
+
+    @BeforeMethod
+    public void testSetUp() {
+        _clique.getTransport().clear();
+        _clique.getTrustRoots().clear();
+        _clique.setPrefetchExecutor(null);
+    }
+
+    @Test
+    public void roundTripTest() throws Exception {
+        Identity mint = _clique.createIdentity(_mintUri);
+        Identity alice = _clique.createIdentity(mint, _aliceUri);
+        assertEquals(_backing._idChains.size(), 2);
+
+        PublicIdentity alicePublic = _clique.getPublicIdentity(_aliceUri);
+        assertNotNull(alicePublic);
+        assertEquals(alicePublic.getActivePublicKey().computeThumbprint(),
+                alice.getActiveKeyPair().computeThumbprint());
+
+        Policy policy = _clique.createPolicy(mint, _resourceUri)
+                .grant(alicePublic, "read")
+                .build();
+        assertNotNull(policy);
+        Policy fetched = _clique.getPolicy(_resourceUri);
+        assertEquals(fetched, policy);
+        assertTrue(fetched.hasPrivilege(alicePublic, "read"));
+        assertFalse(fetched.hasPrivilege(alicePublic, "write"));
+
+        assertNull(_transport.getIdChain(null, URI.create("uri:clique:nobody")));
+        assertNull(_transport.getAuthChain(null, URI.create("uri:clique:no:resource")));
+        assertNull(_transport.getKey("no-such-thumbprint"));
+    }
+
+    @Test
+    public void transactionTest() throws Exception {
+        Identity mint = _clique.createIdentity(_mintUri);
+        Clique transaction = _clique.beginTransaction();
+        Identity bob = transaction.createIdentity(mint, _bobUri);
+        assertNull(_backing._idChains.get(_bobUri));
+        transaction.commit();
+
+        assertNotNull(_backing._idChains.get(_bobUri));
+        assertNotNull(_backing._keys.get(bob.getActiveKeyPair().computeThumbprint().toString()));
+        assertNotNull(_clique.getPublicIdentity(_bobUri));
+    }
+
+    @Test
+    public void concurrentGetTest() throws Exception {
+        final Identity mint = _clique.createIdentity(_mintUri);
+        final PublicIdentity alice = _clique.getPublicIdentity(_clique.createIdentity(mint, _aliceUri).getAcct());
+        _clique.createPolicy(mint, _resourceUri)
+                .grant(alice, "read")
+                .build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return _clique.getPolicy(_resourceUri).hasPrivilege(alice, "read");
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void prefetchTest() throws Exception {
+        Identity mint = _clique.createIdentity(_mintUri);
+        Identity alice = _clique.createIdentity(mint, _aliceUri);
+        PublicIdentity bob = _clique.getPublicIdentity(_clique.createIdentity(mint, _bobUri).getAcct());
+        Policy policy = _clique.createPolicy(alice, _resourceUri)
+                .viralGrant(alice, "read")
+                .viralGrant(alice, "write")
+                .build();
+        for (int i = 0; i < 5; i++) {
+            policy.update(alice)
+                    .grant(bob, (0 == i % 2) ? "read" : "write")
+                    .build();
+        }
+
+        _idChainGets.set(0);
+        Policy plain = _clique.getPolicy(_resourceUri);
+        int plainGets = _idChainGets.get();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            _clique.setPrefetchExecutor(executor);
+            _idChainGets.set(0);
+            Policy prefetched = _clique.getPolicy(_resourceUri);
+
+            // issuer chains are fetched once each up front rather than once per block that names them
+            assertEquals(prefetched, plain);
+            assertTrue(_idChainGets.get() < plainGets);
+            assertTrue(prefetched.hasPrivilege(bob, "read"));
+            assertEquals(_clique.getPublicIdentity(_bobUri), bob);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void clearTest() throws Exception {
+        _clique.createIdentity(_mintUri);
+        assertFalse(_backing._idChains.isEmpty());
+        _transport.clear();
+        assertTrue(_backing._idChains.isEmpty());
+        assertTrue(_backing._keys.isEmpty());
+    }
+
+    @Test
+    public void statusTest() throws Exception {
+        MemoryTransport failing = new MemoryTransport() {
+            @Override
+            public AbstractChain<IdBlock> getIdChain(AbstractValidator<IdBlock> validator, URI uri) throws Exception {
+                throw new IOException("backing store unavailable");
+            }
+        };
+        HttpTransportServer server = new HttpTransportServer(failing);
+        server.start();
+        try {
+
+            // malformed requests are the client's fault, a failing backing transport is the server's
+            assertEquals(status(server, "PUT", HttpTransport.KEYS_PATH, "not a key"),
+                    HttpURLConnection.HTTP_BAD_REQUEST);
+            assertEquals(status(server, "PUT", HttpTransport.ID_CHAINS_PATH, "{}"),
+                    HttpURLConnection.HTTP_BAD_REQUEST);
+            assertEquals(status(server, "POST", HttpTransport.COMMIT_PATH, "[]"),
+                    HttpURLConnection.HTTP_BAD_REQUEST);
+            assertEquals(status(server, "GET", HttpTransport.ID_CHAINS_PATH + "/uri%3Aclique%3Amint", null),
+                    HttpURLConnection.HTTP_INTERNAL_ERROR);
+            assertEquals(status(server, "GET", HttpTransport.AUTH_CHAINS_PATH + "/uri%3Aclique%3Amint", null),
+                    HttpURLConnection.HTTP_NOT_FOUND);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void badArgumentsTest() throws Exception {
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new HttpTransport(null);
+            }
+        });
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new HttpTransport(_server.getUri(), 0, 1, 1);
+            }
+        });
+    }
+
+    private static int status(HttpTransportServer server, String method, String path, String body) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) server.getUri().resolve(path).toURL().openConnection();
+        connection.setRequestMethod(method);
+        if (null != body) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        connection.disconnect();
+        return status;
+    }
+}
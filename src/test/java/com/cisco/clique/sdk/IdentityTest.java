@@ -10,6 +10,11 @@ import org.testng.annotations.Test;
 
 import java.net.URI;
 import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.testng.Assert.*;
 
@@ -89,6 +94,41 @@ public class IdentityTest {
         assertNotEquals(key, oldKey);
     }
 
+    @Test
+    public void createIdentitiesTest() throws Exception {
+        Identity mint = _clique.createIdentity(_mintUri);
+        _clique.createIdentity(mint, _aliceUri);
+
+        List<URI> accts = new ArrayList<>();
+        accts.add(_aliceUri);
+        for (int i = 0; i < 40; i++) {
+            accts.add(URI.create("uri:clique:device" + i));
+        }
+        accts.add(URI.create("uri:clique:device0"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Map<URI, ProvisioningResult> results;
+        try {
+            results = _clique.createIdentities(mint, accts, executor, 8);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(results.size(), 41);
+        assertEquals(results.get(_aliceUri).getStatus(), ProvisioningResult.Status.ALREADY_EXISTS);
+        for (int i = 0; i < 40; i++) {
+            URI acct = URI.create("uri:clique:device" + i);
+            ProvisioningResult result = results.get(acct);
+            assertEquals(result.getStatus(), ProvisioningResult.Status.CREATED);
+            assertEquals(result.getIdentity().getAcct(), acct);
+        }
+
+        PublicIdentity device = _clique.getPublicIdentity(URI.create("uri:clique:device17"));
+        assertNotNull(device);
+        assertEquals(device.getActivePublicKey().computeThumbprint(),
+                results.get(device.getAcct()).getIdentity().getActiveKeyPair().computeThumbprint());
+    }
+
     @Test
     public void blockDuplicateIdentitiesOnOneTransportTest() throws Exception {
         ThrowingRunnable newMintIdentity = new ThrowingRunnable() {
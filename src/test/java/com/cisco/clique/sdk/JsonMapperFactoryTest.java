@@ -0,0 +1,94 @@
+package com.cisco.clique.sdk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.*;
+
+public class JsonMapperFactoryTest {
+
+    @Test
+    public void sharedInstancesTest() throws Exception {
+        JsonMapperFactory factory = JsonMapperFactory.getInstance();
+        assertSame(factory.getMapper(), JsonMapperFactory.getInstance().getMapper());
+        assertSame(factory.getPrettyWriter(), JsonMapperFactory.getInstance().getPrettyWriter());
+        assertNotSame(factory.createMapper(), factory.getMapper());
+
+        ObjectNode node = factory.getMapper().createObjectNode();
+        node.put("date", factory.formatDate(new Date(0)));
+        String json = factory.getWriter().writeValueAsString(node);
+        assertEquals(json, "{\"date\":\"1970-01-01T00:00:00.000Z\"}");
+        assertEquals(factory.getObjectReader().readValue(json), node);
+        assertEquals(factory.getWriter().writeValueAsString(new Date(0)), "\"1970-01-01T00:00:00.000Z\"");
+        assertEquals(factory.getMapper().readValue("\"1970-01-01T00:00:01.000Z\"", Date.class), new Date(1000));
+    }
+
+    @Test
+    public void concurrentDatesTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final long offset = i * 86400000L * 397;
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        JsonMapperFactory factory = JsonMapperFactory.getInstance();
+                        for (int j = 0; j < 2000; j++) {
+                            Date date = new Date(offset + j * 1234567L);
+                            if (!date.equals(factory.parseDate(factory.formatDate(date)))) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void allocationTest() throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+        long thread = Thread.currentThread().getId();
+        ObjectMapper mapper = JsonMapperFactory.getInstance().getMapper();
+        ObjectNode node = mapper.createObjectNode().put("type", "GRANT").put("privilege", "read");
+
+        // a writer built per call allocates its configuration every time, the shared one doesn't
+        for (int i = 0; i < 1000; i++) {
+            mapper.writerWithDefaultPrettyPrinter().writeValueAsString(node);
+            JsonMapperFactory.getInstance().getPrettyWriter().writeValueAsString(node);
+        }
+        long start = allocation.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 10000; i++) {
+            mapper.writerWithDefaultPrettyPrinter().writeValueAsString(node);
+        }
+        long perCall = allocation.getThreadAllocatedBytes(thread) - start;
+        start = allocation.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 10000; i++) {
+            JsonMapperFactory.getInstance().getPrettyWriter().writeValueAsString(node);
+        }
+        long shared = allocation.getThreadAllocatedBytes(thread) - start;
+        assertTrue(shared < perCall, "shared writer allocated " + shared + " bytes, per-call writers " + perCall);
+    }
+}
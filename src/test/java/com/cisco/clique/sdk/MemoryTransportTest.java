@@ -1,5 +1,10 @@
 package com.cisco.clique.sdk;
 
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.AuthBlock;
+import com.cisco.clique.sdk.chains.IdBlock;
+import com.cisco.clique.sdk.validation.AbstractValidator;
+import com.nimbusds.jose.jwk.ECKey;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.BeforeTest;
@@ -7,12 +12,17 @@ import org.testng.annotations.Test;
 
 import java.net.URI;
 import java.security.Security;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 public class MemoryTransportTest {
     Clique _clique;
@@ -69,4 +79,166 @@ public class MemoryTransportTest {
         assertNotNull(transportString);
         assertTrue(transportString.length() > 0);
     }
+
+    @Test
+    public void subscribeTest() throws Exception {
+        final List<ChainEvent> allEvents = new ArrayList<>();
+        final List<ChainEvent> resourceEvents = new ArrayList<>();
+        ChainListener allListener = new ChainListener() {
+            @Override
+            public void chainPublished(ChainEvent event) {
+                allEvents.add(event);
+            }
+        };
+        ChainListener resourceListener = new ChainListener() {
+            @Override
+            public void chainPublished(ChainEvent event) {
+                resourceEvents.add(event);
+            }
+        };
+        ChainPublisher transport = (ChainPublisher) _clique.getTransport();
+        transport.subscribe(allListener);
+        transport.subscribe(_resourceUri, resourceListener);
+
+        try {
+            Identity mint = _clique.createIdentity(_mintUri);
+            Identity alice = _clique.createIdentity(mint, _aliceUri);
+            assertEquals(allEvents.size(), 2);
+            assertEquals(allEvents.get(1).getType(), ChainEvent.Type.ID_CHAIN);
+            assertEquals(allEvents.get(1).getUri(), _aliceUri);
+            assertTrue(resourceEvents.isEmpty());
+
+            Policy policy = _clique.createPolicy(alice, _resourceUri)
+                    .viralGrant(alice, "read")
+                    .build();
+            policy.update(alice)
+                    .grant(mint, "read")
+                    .build();
+            assertEquals(resourceEvents.size(), 2);
+            ChainEvent event = resourceEvents.get(1);
+            assertEquals(event.getType(), ChainEvent.Type.AUTH_CHAIN);
+            assertEquals(event.getUri(), _resourceUri);
+            assertEquals(event.getAppendedBlocks().size(), 1);
+            assertEquals(event.getHeadHash(), event.getChain().lastBlock().getHash());
+
+            // a batch of appends published in one transaction arrives as one event carrying every new block
+            URI otherResourceUri = URI.create("uri:clique:other:resource");
+            int count = allEvents.size();
+            Clique transaction = _clique.beginTransaction();
+            Identity bob = transaction.createIdentity(mint, _bobUri);
+            Policy pending = transaction.createPolicy(alice, otherResourceUri)
+                    .viralGrant(alice, "read")
+                    .build();
+            pending.update(alice).grant(bob, "read").build();
+            pending.update(alice).grant(mint, "read").build();
+            assertEquals(allEvents.size(), count);
+            transaction.commit();
+            assertEquals(allEvents.size(), count + 2);
+            ChainEvent batched = allEvents.get(count + 1);
+            assertEquals(batched.getUri(), otherResourceUri);
+            assertEquals(batched.getAppendedBlocks().size(), 3);
+            assertEquals(resourceEvents.size(), 2);
+
+            transport.unsubscribe(allListener);
+            transport.unsubscribe(resourceListener);
+            count = allEvents.size();
+            alice.rotateKeyPair();
+            assertEquals(allEvents.size(), count);
+        } finally {
+            transport.unsubscribe(allListener);
+            transport.unsubscribe(resourceListener);
+        }
+    }
+
+    @Test
+    public void failingListenerTest() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("listener failed");
+        final List<ChainEvent> events = new ArrayList<>();
+        ChainListener failing = new ChainListener() {
+            @Override
+            public void chainPublished(ChainEvent event) {
+                throw failure;
+            }
+        };
+        ChainListener counting = new ChainListener() {
+            @Override
+            public void chainPublished(ChainEvent event) {
+                events.add(event);
+            }
+        };
+        ChainPublisher transport = (ChainPublisher) _clique.getTransport();
+        transport.subscribe(failing);
+        transport.subscribe(counting);
+
+        // the failure reaches the publisher, but only after the chain is stored and every listener has the event
+        try {
+            _clique.createIdentity(_mintUri);
+            fail("the listener's failure should have been reported");
+        } catch (IllegalStateException e) {
+            assertSame(e, failure);
+        } finally {
+            transport.unsubscribe(failing);
+            transport.unsubscribe(counting);
+        }
+        assertEquals(events.size(), 1);
+        assertNotNull(_clique.getTransport().getIdChain(null, _mintUri));
+    }
+
+    @Test
+    public void plainTransportTest() throws Exception {
+
+        // a transport implementing nothing but the basic reads and writes still gets transactions, snapshots and
+        // group expansion, just without batching, pinning or cached memberships
+        final MemoryTransport memory = new MemoryTransport();
+        Transport plain = new Transport() {
+            @Override
+            public void putKey(ECKey key) throws Exception {
+                memory.putKey(key);
+            }
+
+            @Override
+            public ECKey getKey(String pkt) throws Exception {
+                return memory.getKey(pkt);
+            }
+
+            @Override
+            public void putIdChain(AbstractChain<IdBlock> chain) throws Exception {
+                memory.putIdChain(chain);
+            }
+
+            @Override
+            public AbstractChain<IdBlock> getIdChain(AbstractValidator<IdBlock> validator, URI uri) throws Exception {
+                return memory.getIdChain(validator, uri);
+            }
+
+            @Override
+            public void putAuthChain(AbstractChain<AuthBlock> chain) throws Exception {
+                memory.putAuthChain(chain);
+            }
+
+            @Override
+            public AbstractChain<AuthBlock> getAuthChain(AbstractValidator<AuthBlock> validator, URI uri)
+                    throws Exception {
+                return memory.getAuthChain(validator, uri);
+            }
+
+            @Override
+            public void clear() {
+                memory.clear();
+            }
+        };
+        Clique clique = new Clique(plain, new HashSet<String>());
+        Identity mint = clique.createIdentity(_mintUri);
+        Clique transaction = clique.beginTransaction();
+        Identity alice = transaction.createIdentity(mint, _aliceUri);
+        transaction.createPolicy(alice, _resourceUri)
+                .viralGrant(alice, "read")
+                .build();
+        assertFalse(memory.getHeadHashes(ChainEvent.Type.ID_CHAIN).containsKey(_aliceUri));
+        transaction.commit();
+        assertTrue(memory.getHeadHashes(ChainEvent.Type.ID_CHAIN).containsKey(_aliceUri));
+        assertTrue(clique.getPolicy(_resourceUri).hasPrivilege(alice, "read"));
+        assertTrue(clique.getGroupIndex().getMembers(_resourceUri).isEmpty());
+        assertEquals(clique.getGroupIndex().size(), 0);
+    }
 }
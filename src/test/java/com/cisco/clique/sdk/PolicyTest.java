@@ -1,5 +1,10 @@
 package com.cisco.clique.sdk;
 
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.AuthBlock;
+import com.cisco.clique.sdk.chains.AuthChain;
+import com.cisco.clique.sdk.validation.AuthBlockValidator;
+import com.cisco.clique.sdk.validation.GroupIndex;
 import com.cisco.clique.sdk.validation.InvalidBlockException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -10,8 +15,22 @@ import org.testng.annotations.Test;
 import org.testng.internal.ClonedMethod;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidParameterException;
 import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.testng.Assert.*;
 
@@ -144,6 +163,120 @@ public class PolicyTest {
         assertFalse(policy.hasPrivilege(_diane, _readPrivilege));
     }
 
+    @Test
+    public void transactionTest() throws Exception {
+        MemoryTransport backing = (MemoryTransport) _clique.getTransport();
+        Clique view = _clique.beginTransaction();
+        Transaction transaction = view.getTransaction();
+        assertEquals(view.getTransport(), transaction);
+        assertEquals(_clique.getTransport(), backing);
+
+        URI erinUri = URI.create("uri:clique:erin");
+        Identity erin = view.createIdentity(erinUri);
+        Policy policy = view.createPolicy(_alice, _resourceUri)
+                .viralGrant(erin, _readPrivilege)
+                .build();
+        policy.update(erin)
+                .grant(_chuck, _readPrivilege)
+                .build();
+        erin.rotateKeyPair();
+        policy.update(erin)
+                .grant(_diane, _readPrivilege)
+                .build();
+        policy.update(erin)
+                .revoke(_diane, _readPrivilege)
+                .build();
+
+        // nothing is visible in the backing transport until the transaction is committed
+        assertNull(backing._authChains.get(_resourceUri));
+        assertNull(backing._idChains.get(erinUri));
+        assertEquals(transaction.getAuthChains().size(), 1);
+        assertEquals(transaction.getIdChains().size(), 1);
+        assertEquals(transaction.getKeys().size(), 2);
+
+        view.commit();
+        assertFalse(transaction.isOpen());
+
+        Policy published = _clique.getPolicy(_resourceUri);
+        assertEquals(published, policy);
+        assertTrue(published.hasPrivilege(_chuck, _readPrivilege));
+        assertFalse(published.hasPrivilege(_diane, _readPrivilege));
+        assertEquals(_clique.getPublicIdentity(erinUri).getActivePublicKey().computeThumbprint(),
+                erin.getActiveKeyPair().computeThumbprint());
+
+        // the committed transaction now passes updates straight through
+        policy.update(erin)
+                .grant(_bob, _readPrivilege)
+                .build();
+        assertTrue(_clique.getPolicy(_resourceUri).hasPrivilege(_bob, _readPrivilege));
+    }
+
+    @Test
+    public void transactionIsolationTest() throws Exception {
+        MemoryTransport backing = (MemoryTransport) _clique.getTransport();
+        _clique.createPolicy(_alice, _resourceUri)
+                .viralGrant(_alice, _readPrivilege)
+                .build();
+        String published = _clique.getPolicy(_resourceUri).serialize();
+
+        // appends to a chain that is already published go to the transaction's own copy of it
+        Clique view = _clique.beginTransaction();
+        view.getPolicy(_resourceUri).update(_alice)
+                .grant(_bob, _readPrivilege)
+                .build();
+        assertTrue(view.getPolicy(_resourceUri).hasPrivilege(_bob, _readPrivilege));
+        assertFalse(_clique.getPolicy(_resourceUri).hasPrivilege(_bob, _readPrivilege));
+        assertEquals(_clique.getPolicy(_resourceUri).serialize(), published);
+
+        // and writes made through the shared clique meanwhile go straight to the transport
+        _clique.createPolicy(_alice, URI.create("uri:clique:other:resource"))
+                .viralGrant(_alice, _readPrivilege)
+                .build();
+        assertNotNull(backing._authChains.get(URI.create("uri:clique:other:resource")));
+        assertEquals(view.getTransaction().getAuthChains().size(), 1);
+
+        view.commit();
+        assertTrue(_clique.getPolicy(_resourceUri).hasPrivilege(_bob, _readPrivilege));
+    }
+
+    @Test
+    public void transactionRollbackTest() throws Exception {
+        final Clique view = _clique.beginTransaction();
+        view.createPolicy(_alice, _resourceUri)
+                .viralGrant(_bob, _readPrivilege)
+                .build();
+        final Identity erin = view.createIdentity(URI.create("uri:clique:erin"));
+        view.rollback();
+
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                _clique.getPolicy(_resourceUri);
+            }
+        });
+        assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                view.commit();
+            }
+        });
+
+        // whatever was created in a rolled back transaction can't publish anything any more
+        assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                erin.rotateKeyPair();
+            }
+        });
+        assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                _clique.commit();
+            }
+        });
+        assertNull(((MemoryTransport) _clique.getTransport())._idChains.get(URI.create("uri:clique:erin")));
+    }
+
     @Test
     public void serializeDeserializePolicy() throws Exception {
 
@@ -306,6 +439,39 @@ public class PolicyTest {
         });
     }
 
+    @Test
+    public void concurrentValidationTest() throws Exception {
+        final Policy policy = _clique.createPolicy(_alice, _resourceUri)
+                .viralGrant(_bob, _readPrivilege)
+                .build();
+        policy.update(_bob)
+                .grant(_chuck, _readPrivilege)
+                .build();
+
+        // many threads re-validate and query the same shared chains from scratch
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        policy.resetValidator();
+                        _bob.resetValidator();
+                        Policy fetched = _clique.getPolicy(_resourceUri);
+                        return fetched.hasPrivilege(_chuck, _readPrivilege)
+                                && !fetched.hasPrivilege(_diane, _readPrivilege);
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void badDeserializePolicy() throws Exception {
         assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
@@ -322,4 +488,312 @@ public class PolicyTest {
         });
     }
 
+    @Test
+    public void incrementalSerializationTest() throws Exception {
+        List<PublicIdentity> grantees = new ArrayList<>();
+        grantees.add(_clique.getPublicIdentity(_bobUri));
+        grantees.add(_clique.getPublicIdentity(_chuckUri));
+        grantees.add(_clique.getPublicIdentity(_dianeUri));
+        Policy policy = _clique.createPolicy(_alice, _resourceUri)
+                .viralGrant(_alice, _readPrivilege)
+                .build();
+        AbstractChain<AuthBlock> chain = _clique.getTransport().getAuthChain(null, _resourceUri);
+
+        for (int i = 0; i < 3; i++) {
+
+            // cached output must stay identical to a from-scratch encoding after each append
+            ArrayNode array = _mapper.createArrayNode();
+            for (AuthBlock block : chain.getBlocks()) {
+                array.add(block.serialize());
+            }
+            assertEquals(policy.serialize(), _mapper.writerWithDefaultPrettyPrinter().writeValueAsString(array));
+            assertEquals(chain.serialize(false), _mapper.writeValueAsString(array));
+            assertEquals(_clique.deserializePolicy(chain.serialize(false)), policy);
+
+            policy.update(_alice)
+                    .grant(grantees.get(i), _readPrivilege)
+                    .build();
+        }
+    }
+
+    @Test
+    public void headHashEqualityTest() throws Exception {
+        PublicIdentity bobPublic = _clique.getPublicIdentity(_bobUri);
+        Policy policy = _clique.createPolicy(_alice, _resourceUri)
+                .viralGrant(_alice, _readPrivilege)
+                .build();
+        Policy copy = _clique.deserializePolicy(policy.serialize());
+        assertEquals(copy, policy);
+        assertEquals(copy.hashCode(), policy.hashCode());
+
+        Set<Policy> policies = new HashSet<>();
+        policies.add(policy);
+        assertTrue(policies.contains(copy));
+
+        // the original grows past the copy and they stop being equal
+        policy.update(_alice)
+                .grant(bobPublic, _readPrivilege)
+                .build();
+        assertNotEquals(copy, policy);
+        assertEquals(_clique.deserializePolicy(policy.serialize()), policy);
+    }
+
+    @Test
+    public void preloadTest() throws Exception {
+        PublicIdentity bobPublic = _clique.getPublicIdentity(_bobUri);
+        Policy policy = _clique.createPolicy(_alice, _resourceUri)
+                .viralGrant(_alice, _readPrivilege)
+                .grant(bobPublic, _readPrivilege)
+                .build();
+        assertNotNull(policy);
+        AbstractChain<AuthBlock> chain = _clique.getTransport().getAuthChain(null, _resourceUri);
+        chain.resetValidator();
+
+        final List<URI> reported = Collections.synchronizedList(new ArrayList<URI>());
+        URI missing = URI.create("uri:clique:missing");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Map<URI, Exception> failures = _clique.preload(Arrays.asList(_aliceUri, _bobUri, missing),
+                    Arrays.asList(_resourceUri), executor, new PreloadListener() {
+                        @Override
+                        public void preloaded(URI uri, Exception error, int completed, int total) {
+                            assertEquals(total, 4);
+                            reported.add(uri);
+                        }
+                    });
+            assertEquals(failures.keySet(), Collections.singleton(missing));
+        } finally {
+            executor.shutdown();
+        }
+
+        // the stored policy chain comes out of preloading already validated
+        assertEquals(reported.size(), 4);
+        assertEquals(reported.get(3), _resourceUri);
+        assertEquals(chain.getValidationState().getLastValidated(), chain.lastBlock());
+
+        // a listener's own failure is handed back as that chain's failure rather than lost
+        final IllegalStateException failure = new IllegalStateException("listener failed");
+        executor = Executors.newFixedThreadPool(2);
+        try {
+            Map<URI, Exception> failures = _clique.preload(Arrays.asList(_aliceUri, _bobUri),
+                    Collections.<URI>emptyList(), executor, new PreloadListener() {
+                        @Override
+                        public void preloaded(URI uri, Exception error, int completed, int total) {
+                            if (_bobUri.equals(uri)) {
+                                throw failure;
+                            }
+                        }
+                    });
+            assertEquals(failures.keySet(), Collections.singleton(_bobUri));
+            assertSame(failures.get(_bobUri), failure);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void hierarchicalPrivilegeTest() throws Exception {
+        final PublicIdentity bobPublic = _clique.getPublicIdentity(_bobUri);
+        PublicIdentity chuckPublic = _clique.getPublicIdentity(_chuckUri);
+        final Policy policy = _clique.createPolicy(_alice, _resourceUri)
+                .hierarchical()
+                .viralGrant(_alice, "docs.*")
+                .build();
+        policy.update(_alice)
+                .grant(bobPublic, "docs.*")
+                .viralGrant(chuckPublic, "docs.reports.*")
+                .build();
+        policy.update(_alice)
+                .revoke(bobPublic, "docs.secret")
+                .build();
+
+        assertTrue(policy.hasPrivilege(bobPublic, "docs.read"));
+        assertTrue(policy.hasPrivilege(bobPublic, "docs.reports.q1"));
+        assertFalse(policy.hasPrivilege(bobPublic, "docs.secret"));
+        assertFalse(policy.hasPrivilege(bobPublic, "docs"));
+        assertTrue(policy.hasPrivilege(chuckPublic, "docs.reports.q1"));
+        assertFalse(policy.hasPrivilege(chuckPublic, "docs.read"));
+
+        // chuck can pass on what sits under his viral prefix, bob holds nothing virally
+        policy.update(_chuck)
+                .grant(_clique.getPublicIdentity(_dianeUri), "docs.reports.q2")
+                .build();
+        assertTrue(policy.hasPrivilege(_clique.getPublicIdentity(_dianeUri), "docs.reports.q2"));
+        assertThrows(InvalidBlockException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                policy.update(_bob)
+                        .grant(bobPublic, "docs.read")
+                        .build();
+            }
+        });
+        assertTrue(_clique.getPolicy(_resourceUri).hasPrivilege(bobPublic, "docs.read"));
+    }
+
+    @Test
+    public void literalPrivilegeTest() throws Exception {
+        final PublicIdentity bobPublic = _clique.getPublicIdentity(_bobUri);
+        final Policy policy = _clique.createPolicy(_alice, _resourceUri)
+                .viralGrant(_alice, "docs.*")
+                .viralGrant(_alice, "docs.read")
+                .build();
+        policy.update(_alice)
+                .grant(bobPublic, "docs.*")
+                .grant(bobPublic, "docs.read")
+                .build();
+
+        // a chain that doesn't declare hierarchical privileges keeps treating names with "." or "*" as opaque
+        assertTrue(policy.hasPrivilege(bobPublic, "docs.*"));
+        assertTrue(policy.hasPrivilege(bobPublic, "docs.read"));
+        assertFalse(policy.hasPrivilege(bobPublic, "docs.write"));
+        assertFalse(policy.hasPrivilege(_clique.getPublicIdentity(_chuckUri), "docs.read"));
+        assertThrows(InvalidParameterException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                policy.update(_alice)
+                        .grant(bobPublic, "docs.write")
+                        .build();
+            }
+        });
+
+        // only the first block may make a chain hierarchical
+        assertThrows(InvalidBlockException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                policy.update(_alice)
+                        .hierarchical()
+                        .grant(bobPublic, "docs.read")
+                        .build();
+            }
+        });
+
+        // a chain that was never validated is scanned rather than validated, so a lookup can't fail on validation
+        AuthBlockValidator validator = new AuthBlockValidator(new MemoryTransport(), _clique.getTrustRoots());
+        final AuthChain unvalidated = new AuthChain(validator,
+                ByteBuffer.wrap(policy.serialize().getBytes(StandardCharsets.US_ASCII)), false);
+        assertTrue(unvalidated.hasPrivilege(_bobUri, "docs.read"));
+        assertFalse(unvalidated.hasPrivilege(_bobUri, "docs.write"));
+        assertThrows(Exception.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                unvalidated.validate();
+            }
+        });
+    }
+
+    @Test
+    public void groupGrantTest() throws Exception {
+        final URI groupUri = URI.create("uri:clique:group:eng");
+        PublicIdentity bobPublic = _clique.getPublicIdentity(_bobUri);
+        PublicIdentity chuckPublic = _clique.getPublicIdentity(_chuckUri);
+        PublicIdentity dianePublic = _clique.getPublicIdentity(_dianeUri);
+        Policy group = _clique.createPolicy(_alice, groupUri)
+                .viralGrant(_alice, GroupIndex.MEMBER_PRIVILEGE)
+                .grant(bobPublic, GroupIndex.MEMBER_PRIVILEGE)
+                .grant(dianePublic, GroupIndex.MEMBER_PRIVILEGE)
+                .build();
+        final Policy policy = _clique.createPolicy(_alice, _resourceUri)
+                .viralGrant(_alice, "read")
+                .build();
+        policy.update(_alice)
+                .groupGrant(groupUri, "read")
+                .revoke(dianePublic, "read")
+                .build();
+
+        // members get the privilege through the group, an account's own revocation still wins
+        GroupIndex index = _clique.getGroupIndex();
+        assertTrue(policy.hasPrivilege(bobPublic, "read"));
+        assertFalse(policy.hasPrivilege(chuckPublic, "read"));
+        assertFalse(policy.hasPrivilege(dianePublic, "read"));
+        assertEquals(index.getMisses(), 1);
+        assertEquals(index.getHits(), 1);
+        assertEquals(index.getMembers(groupUri).size(), 3);
+
+        // a chain that hasn't been validated resolves its group grants the same way
+        AuthChain unvalidated = new AuthChain(new AuthBlockValidator(_clique.getTransport(), _clique.getTrustRoots(),
+                index), ByteBuffer.wrap(policy.serialize().getBytes(StandardCharsets.US_ASCII)), false);
+        assertTrue(unvalidated.hasPrivilege(_bobUri, "read"));
+        assertFalse(unvalidated.hasPrivilege(_chuckUri, "read"));
+        assertFalse(unvalidated.hasPrivilege(_dianeUri, "read"));
+        assertNull(unvalidated.getValidationState().getLastValidated());
+
+        // changing the group invalidates its cached membership
+        group.update(_alice)
+                .grant(chuckPublic, GroupIndex.MEMBER_PRIVILEGE)
+                .revoke(bobPublic, GroupIndex.MEMBER_PRIVILEGE)
+                .build();
+        assertEquals(index.size(), 0);
+        assertTrue(policy.hasPrivilege(chuckPublic, "read"));
+        assertFalse(policy.hasPrivilege(bobPublic, "read"));
+        assertTrue(_clique.getPolicy(_resourceUri).hasPrivilege(chuckPublic, "read"));
+
+        // revoking the group takes the privilege away from everyone who only held it through the group
+        policy.update(_alice)
+                .groupRevoke(groupUri, "read")
+                .build();
+        assertFalse(policy.hasPrivilege(chuckPublic, "read"));
+
+        // groups can be given access but not the right to pass it on
+        assertThrows(InvalidBlockException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new AuthBlock.Builder(new AuthChain(new AuthBlockValidator(_clique.getTransport(),
+                        _clique.getTrustRoots())))
+                        .setIssuer(_aliceUri)
+                        .setIssuerKey(_alice.getActiveKeyPair())
+                        .setSubject(_resourceUri)
+                        .addGrant(new AuthBlock.Grant(AuthBlock.Grant.Type.VIRAL_GRANT, groupUri, "read", true))
+                        .build();
+            }
+        });
+    }
+
+    @Test
+    public void timeBoundedGrantTest() throws Exception {
+        final PublicIdentity bobPublic = _clique.getPublicIdentity(_bobUri);
+        PublicIdentity chuckPublic = _clique.getPublicIdentity(_chuckUri);
+        long now = System.currentTimeMillis();
+        final Date start = new Date(now + 60000);
+        final Date end = new Date(now + 120000);
+        final Policy policy = _clique.createPolicy(_alice, _resourceUri)
+                .viralGrant(_alice, "read")
+                .build();
+        policy.update(_alice)
+                .grant(bobPublic, "read", start, end)
+                .viralGrant(_clique.getPublicIdentity(_chuckUri), "read", null, end)
+                .build();
+
+        assertFalse(policy.hasPrivilege(bobPublic, "read", new Date(now)));
+        assertTrue(policy.hasPrivilege(bobPublic, "read", start));
+        assertTrue(policy.hasPrivilege(bobPublic, "read", new Date(now + 90000)));
+        assertFalse(policy.hasPrivilege(bobPublic, "read", end));
+        assertTrue(policy.hasPrivilege(chuckPublic, "read"));
+
+        // the windows survive serialization and are part of what the blocks sign
+        Policy copy = _clique.deserializePolicy(policy.serialize());
+        assertTrue(copy.hasPrivilege(bobPublic, "read", start));
+        assertFalse(copy.hasPrivilege(bobPublic, "read", end));
+
+        // a temporary viral grant can only hand on access that lapses with it
+        assertThrows(InvalidBlockException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                policy.update(_chuck)
+                        .grant(_clique.getPublicIdentity(_dianeUri), "read")
+                        .build();
+            }
+        });
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                policy.update(_alice)
+                        .grant(bobPublic, "read", end, start)
+                        .build();
+            }
+        });
+        policy.update(_chuck)
+                .grant(_clique.getPublicIdentity(_dianeUri), "read", start, end)
+                .build();
+        assertTrue(policy.hasPrivilege(_clique.getPublicIdentity(_dianeUri), "read", start));
+    }
 }
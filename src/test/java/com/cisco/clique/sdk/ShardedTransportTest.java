@@ -0,0 +1,141 @@
+package com.cisco.clique.sdk;
+
+import com.nimbusds.jose.jwk.ECKey;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.testng.Assert.*;
+
+public class ShardedTransportTest {
+    ExecutorService _executor;
+    List<MemoryTransport> _shards;
+    ShardedTransport _transport;
+    Clique _clique;
+    URI _mintUri;
+    URI _resourceUri;
+
+    @BeforeTest
+    public void suiteSetUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        _executor = Executors.newFixedThreadPool(4);
+        _shards = Arrays.asList(new MemoryTransport(), new MemoryTransport(), new MemoryTransport());
+        _transport = new ShardedTransport(new ArrayList<Transport>(_shards), _executor);
+        _clique = new Clique(_transport, new HashSet<String>());
+        _mintUri = URI.create("uri:clique:mint");
+        _resourceUri = URI.create("uri:clique:some:resource");
+    }
+
+    @AfterTest
+    public void suiteTearDown() {
+        _executor.shutdown();
+    }
+
+    @BeforeMethod
+    public void testSetUp() {
+        _clique.getTransport().clear();
+        _clique.getTrustRoots().clear();
+    }
+
+    @Test
+    public void routingIsStableTest() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            String key = "uri:clique:user" + i;
+            assertSame(_transport.getShard(key), _transport.getShard(key));
+        }
+    }
+
+    @Test
+    public void identitiesAndPoliciesAcrossShardsTest() throws Exception {
+        Identity mint = _clique.createIdentity(_mintUri);
+        List<URI> accts = new ArrayList<>();
+        List<String> pkts = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            URI acct = URI.create("uri:clique:user" + i);
+            Identity identity = _clique.createIdentity(mint, acct);
+            accts.add(acct);
+            pkts.add(identity.getActiveKeyPair().computeThumbprint().toString());
+        }
+
+        // every shard should have received a share of the chains
+        for (MemoryTransport shard : _shards) {
+            assertFalse(shard._idChains.isEmpty());
+        }
+
+        PublicIdentity user = _clique.getPublicIdentity(accts.get(0));
+        assertNotNull(user);
+        Policy policy = _clique.createPolicy(mint, _resourceUri)
+                .grant(user, "read")
+                .build();
+        assertNotNull(policy);
+        assertTrue(_clique.getPolicy(_resourceUri).hasPrivilege(user, "read"));
+
+        Map<String, ECKey> keys = _transport.getKeys(pkts);
+        assertEquals(keys.size(), pkts.size());
+
+        Map<URI, ?> chains = _transport.getIdChains(accts, _clique.getTrustRoots());
+        assertEquals(chains.keySet(), new HashSet<>(accts));
+
+        Map<URI, ?> authChains = _transport.getAuthChains(Arrays.asList(_resourceUri, _mintUri),
+                _clique.getTrustRoots());
+        assertEquals(authChains.keySet(), new HashSet<>(Arrays.asList(_resourceUri)));
+
+        _transport.clear();
+        for (MemoryTransport shard : _shards) {
+            assertTrue(shard._idChains.isEmpty());
+            assertTrue(shard._keys.isEmpty());
+        }
+    }
+
+    @Test
+    public void createIdentitiesAcrossShardsTest() throws Exception {
+        Identity mint = _clique.createIdentity(_mintUri);
+        List<URI> accts = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            accts.add(URI.create("uri:clique:device" + i));
+        }
+        _clique.createIdentity(mint, accts.get(3));
+
+        // existing accounts are found by one fan-out across the shards before any batch is built; batches get a
+        // pool of their own since their commits fan out on the shards' pool
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Map<URI, ProvisioningResult> results;
+        try {
+            results = _clique.createIdentities(mint, accts, executor, 6);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(results.size(), accts.size());
+        assertEquals(results.get(accts.get(3)).getStatus(), ProvisioningResult.Status.ALREADY_EXISTS);
+        assertEquals(results.get(accts.get(4)).getStatus(), ProvisioningResult.Status.CREATED);
+        assertEquals(_transport.getIdChains(accts, _clique.getTrustRoots()).size(), accts.size());
+    }
+
+    @Test
+    public void badShardsTest() throws Exception {
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new ShardedTransport(new ArrayList<Transport>());
+            }
+        });
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new ShardedTransport(Arrays.asList((Transport) null));
+            }
+        });
+    }
+}
@@ -0,0 +1,222 @@
+package com.cisco.clique.sdk;
+
+import com.cisco.clique.sdk.chains.AbstractChain;
+import com.cisco.clique.sdk.chains.AuthBlock;
+import com.cisco.clique.sdk.chains.IdBlock;
+import com.cisco.clique.sdk.validation.AbstractValidator;
+import com.cisco.clique.sdk.validation.AuthBlockValidator;
+import com.nimbusds.jose.jwk.ECKey;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.testng.Assert.*;
+
+public class SnapshotTest {
+    URI _mintUri;
+    URI _aliceUri;
+    URI _resourceUri;
+    MemoryTransport _transport;
+    Clique _clique;
+    Identity _alice;
+    Policy _policy;
+
+    @BeforeTest
+    public void suiteSetUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        _mintUri = URI.create("uri:clique:mint");
+        _aliceUri = URI.create("uri:clique:alice");
+        _resourceUri = URI.create("uri:some:protected:resource");
+    }
+
+    @BeforeMethod
+    public void testSetUp() throws Exception {
+        _transport = new MemoryTransport();
+        _clique = new Clique(_transport, new HashSet<String>());
+        Identity mint = _clique.createIdentity(_mintUri);
+        _alice = _clique.createIdentity(mint, _aliceUri);
+        _policy = _clique.createPolicy(_alice, _resourceUri)
+                .hierarchical()
+                .viralGrant(_alice, "*")
+                .build();
+    }
+
+    @Test
+    public void isolationTest() throws Exception {
+        String policyHead = _transport.getAuthChain(null, _resourceUri).getHeadHash();
+        String aliceHead = _transport.getIdChain(null, _aliceUri).getHeadHash();
+        Snapshot snapshot = _transport.snapshot();
+        assertEquals(_transport.getPinnedSnapshots(), 1);
+
+        // a chain read before anything moves is the snapshot's own, not the live one that's about to grow
+        AbstractChain<AuthBlock> early = snapshot.getAuthChain(null, _resourceUri);
+        assertNotSame(early, _transport.getAuthChain(null, _resourceUri));
+
+        // the policy chain grows in place and alice rotates her key, the snapshot still sees the earlier state
+        _policy.update(_alice)
+                .grant(_alice, "write")
+                .build();
+        _alice.rotateKeyPair();
+        AbstractChain<AuthBlock> live = _transport.getAuthChain(null, _resourceUri);
+        AbstractChain<AuthBlock> pinned = snapshot.getAuthChain(null, _resourceUri);
+        assertEquals(live.getBlocks().size(), 2);
+        assertEquals(pinned.getBlocks().size(), 1);
+        assertEquals(pinned.getHeadHash(), policyHead);
+        assertEquals(early.getBlocks().size(), 1);
+        assertEquals(early.getHeadHash(), policyHead);
+        AbstractChain<IdBlock> alice = snapshot.getIdChain(null, _aliceUri);
+        assertEquals(alice.getHeadHash(), aliceHead);
+        assertNotEquals(_transport.getIdChain(null, _aliceUri).getHeadHash(), aliceHead);
+
+        // once released the snapshot unpins its version and reads whatever is current
+        snapshot.release();
+        assertEquals(_transport.getPinnedSnapshots(), 0);
+        assertEquals(snapshot.getAuthChain(null, _resourceUri).getHeadHash(), live.getHeadHash());
+        snapshot.release();
+        assertEquals(_transport.getPinnedSnapshots(), 0);
+    }
+
+    @Test
+    public void commitTest() throws Exception {
+        Snapshot snapshot = _transport.snapshot();
+        try {
+            Transaction transaction = new Transaction(_transport);
+            new Clique(transaction, _clique.getTrustRoots()).getPolicy(_resourceUri).update(_alice)
+                    .grant(_alice, "write")
+                    .build();
+            transaction.commit();
+
+            // a committed batch lands at a single version, invisible to a snapshot taken before it
+            assertEquals(_transport.getAuthChain(null, _resourceUri).getBlocks().size(), 2);
+            assertEquals(snapshot.getAuthChain(null, _resourceUri).getBlocks().size(), 1);
+            assertNull(snapshot.getAuthChain(null, URI.create("uri:some:other:resource")));
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    @Test
+    public void cliqueTest() throws Exception {
+
+        // reads through clique go through a snapshot and leave nothing pinned behind
+        assertTrue(_clique.getPolicy(_resourceUri).hasPrivilege(_clique.getPublicIdentity(_aliceUri), "read"));
+        assertEquals(_transport.getPinnedSnapshots(), 0);
+        _clique.getPolicy(_resourceUri).update(_alice)
+                .grant(_alice, "admin")
+                .build();
+        assertTrue(_clique.getPolicy(_resourceUri).hasPrivilege(_alice, "admin"));
+        assertEquals(_transport.getPinnedSnapshots(), 0);
+    }
+
+    @Test
+    public void twoHoldersTest() throws Exception {
+        Policy first = _clique.getPolicy(_resourceUri);
+        Policy second = _clique.getPolicy(_resourceUri);
+
+        // two holders of one policy appending in turn both land in its history, neither write drops the other's
+        first.update(_alice)
+                .grant(_alice, "write")
+                .build();
+        second.update(_alice)
+                .grant(_alice, "admin")
+                .build();
+        List<AuthBlock> blocks = _transport.getAuthChain(null, _resourceUri).getBlocks();
+        assertEquals(blocks.size(), 3);
+        assertEquals(blocks.get(1).getGrants().get(0).getPrivilege(), "write");
+        assertEquals(blocks.get(2).getGrants().get(0).getPrivilege(), "admin");
+        first.update(_alice)
+                .grant(_alice, "delete")
+                .build();
+        assertEquals(_clique.getPolicy(_resourceUri).serialize(), first.serialize());
+        assertEquals(_transport.getAuthChain(null, _resourceUri).getBlocks().size(), 4);
+    }
+
+    @Test
+    public void validationReadsTest() throws Exception {
+        String aliceHead = _transport.getIdChain(null, _aliceUri).getHeadHash();
+        final Snapshot snapshot = _transport.snapshot();
+        try {
+            _alice.rotateKeyPair();
+
+            // validating a pinned chain looks its issuer up through the snapshot it was read from, not the live store
+            final List<String> heads = new ArrayList<>();
+            Transport recording = new Transport() {
+                @Override
+                public void putKey(ECKey key) throws Exception {
+                    snapshot.putKey(key);
+                }
+
+                @Override
+                public ECKey getKey(String pkt) throws Exception {
+                    return snapshot.getKey(pkt);
+                }
+
+                @Override
+                public void putIdChain(AbstractChain<IdBlock> chain) throws Exception {
+                    snapshot.putIdChain(chain);
+                }
+
+                @Override
+                public AbstractChain<IdBlock> getIdChain(AbstractValidator<IdBlock> validator, URI uri)
+                        throws Exception {
+                    AbstractChain<IdBlock> chain = snapshot.getIdChain(validator, uri);
+                    if (null != chain) {
+                        heads.add(chain.getHeadHash());
+                    }
+                    return chain;
+                }
+
+                @Override
+                public void putAuthChain(AbstractChain<AuthBlock> chain) throws Exception {
+                    snapshot.putAuthChain(chain);
+                }
+
+                @Override
+                public AbstractChain<AuthBlock> getAuthChain(AbstractValidator<AuthBlock> validator, URI uri)
+                        throws Exception {
+                    return snapshot.getAuthChain(validator, uri);
+                }
+
+                @Override
+                public void clear() {
+                    snapshot.clear();
+                }
+            };
+
+            // a trust-root set of its own keeps the read from borrowing the live chain's validation
+            AbstractChain<AuthBlock> chain = recording.getAuthChain(
+                    new AuthBlockValidator(recording, new HashSet<>(_clique.getTrustRoots())), _resourceUri);
+            assertSame(chain.getValidator().getTransport(), recording);
+            chain.validate();
+            assertTrue(heads.contains(aliceHead));
+            assertFalse(heads.contains(_transport.getIdChain(null, _aliceUri).getHeadHash()));
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    @Test
+    public void versionedMapTest() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        VersionedMap<String, String> map = new VersionedMap<>(clock);
+        map.put("key", "one", clock.incrementAndGet(), 0);
+        map.put("key", "two", clock.incrementAndGet(), 1);
+        assertEquals(map.get("key"), "two");
+        assertEquals(map.get("key", 1), "one");
+        assertNull(map.get("key", 0));
+        assertEquals(map.size(), 1);
+
+        // with nothing pinned at or before version one it is pruned on the next write
+        map.put("key", "three", clock.incrementAndGet(), 2);
+        assertEquals(map.get("key", 2), "two");
+        assertNull(map.get("key", 1));
+    }
+}
@@ -0,0 +1,67 @@
+package com.cisco.clique.sdk.chains;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+public class BlockListTest {
+
+    @Test
+    public void appendSharesStorageTest() {
+        BlockList<String> empty = new BlockList<>();
+        BlockList<String> one = empty.append("a");
+        BlockList<String> two = one.append("b");
+        BlockList<String> three = two.append("c");
+
+        // earlier versions are unaffected by later appends
+        assertEquals(empty.size(), 0);
+        assertNull(empty.last());
+        assertEquals(one, Arrays.asList("a"));
+        assertEquals(two, Arrays.asList("a", "b"));
+        assertEquals(three, Arrays.asList("a", "b", "c"));
+        assertEquals(three.last(), "c");
+    }
+
+    @Test
+    public void appendToOlderVersionCopiesTest() {
+        BlockList<String> one = new BlockList<String>().append("a");
+        BlockList<String> two = one.append("b");
+        BlockList<String> fork = one.append("x");
+
+        assertEquals(two, Arrays.asList("a", "b"));
+        assertEquals(fork, Arrays.asList("a", "x"));
+        assertEquals(two.append("c"), Arrays.asList("a", "b", "c"));
+        assertEquals(fork.append("y"), Arrays.asList("a", "x", "y"));
+    }
+
+    @Test
+    public void growthTest() {
+        BlockList<Integer> list = new BlockList<>();
+        BlockList<Integer> snapshot = null;
+        for (int i = 0; i < 1000; i++) {
+            list = list.append(i);
+            if (i == 500) {
+                snapshot = list;
+            }
+        }
+        assertEquals(list.size(), 1000);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(list.get(i), Integer.valueOf(i));
+        }
+        assertNotNull(snapshot);
+        assertEquals(snapshot.size(), 501);
+        assertEquals(snapshot.last(), Integer.valueOf(500));
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void outOfBoundsTest() {
+        new BlockList<String>().append("a").append("b").get(2);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void immutableTest() {
+        new BlockList<String>().append("a").add("b");
+    }
+}
@@ -0,0 +1,134 @@
+package com.cisco.clique.sdk.chains;
+
+import com.cisco.clique.sdk.Clique;
+import com.cisco.clique.sdk.Identity;
+import com.cisco.clique.sdk.validation.AuthBlockValidator;
+import com.cisco.clique.sdk.validation.IdBlockValidator;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Security;
+import java.text.ParseException;
+
+import static org.testng.Assert.*;
+
+public class BufferParsingTest {
+    Clique _clique;
+    URI _mintUri;
+    URI _aliceUri;
+    URI _resourceUri;
+
+    @BeforeTest
+    public void suiteSetUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        _clique = new Clique();
+        _mintUri = URI.create("uri:clique:mint");
+        _aliceUri = URI.create("uri:clique:alice");
+        _resourceUri = URI.create("uri:some:protected:resource");
+    }
+
+    @BeforeMethod
+    public void testSetUp() {
+        _clique.getTransport().clear();
+        _clique.getTrustRoots().clear();
+    }
+
+    @Test
+    public void headerOnlyTest() throws Exception {
+        Identity alice = aliceIdentity();
+        _clique.createPolicy(alice, _resourceUri)
+                .hierarchical()
+                .viralGrant(alice, "*")
+                .build()
+                .update(alice)
+                .grant(alice, "write")
+                .build();
+        AuthChain expected = (AuthChain) _clique.getTransport().getAuthChain(null, _resourceUri);
+        String serialization = expected.serialize();
+
+        // the chain sits in the middle of a larger buffer, as it would in a mapped file or a network buffer
+        byte[] bytes = ("xx" + serialization + "yy").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 2, bytes.length - 4);
+        AuthChain chain = new AuthChain(new AuthBlockValidator(_clique.getTransport(), _clique.getTrustRoots()),
+                buffer, false);
+        assertEquals(chain.getBlocks().size(), 2);
+        for (int i = 0; i < chain.getBlocks().size(); i++) {
+            AuthBlock block = chain.getBlocks().get(i);
+
+            // the key id and the hash come from the header and the raw bytes, the payload is left undecoded
+            assertEquals(block.getKid(), expected.getBlocks().get(i).getKid());
+            assertEquals(block.getHash(), expected.getBlocks().get(i).getHash());
+            assertNull(block._jwt);
+            assertEquals(block.serialize(), expected.getBlocks().get(i).serialize());
+            assertNull(block._jwt);
+
+            assertEquals(block.getIssuer(), _aliceUri);
+            assertNotNull(block._jwt);
+            assertEquals(block.getGrants().size(), 1);
+        }
+        assertEquals(chain.serialize(), serialization);
+        assertTrue(chain.hasPrivilege(_aliceUri, "write"));
+    }
+
+    @Test
+    public void validatedTest() throws Exception {
+        String serialization = aliceChain().serialize();
+        IdChain chain = new IdChain(validator(),
+                ByteBuffer.wrap(serialization.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer(), true);
+        assertEquals(chain.getSubject(), _aliceUri);
+        assertEquals(chain.getHeadHash(), aliceChain().getHeadHash());
+        assertEquals(chain, aliceChain());
+    }
+
+    @Test
+    public void escapedStringTest() throws Exception {
+        String serialization = aliceChain().serialize();
+
+        // every compact JWS starts "ey", an escaped 'e' forces the tree parser fallback but means the same chain
+        String escaped = serialization.replace("\"ey", "\"\\u0065y");
+        assertNotEquals(escaped, serialization);
+        IdChain chain = new IdChain(validator(), ByteBuffer.wrap(escaped.getBytes(StandardCharsets.UTF_8)), true);
+        assertEquals(chain.serialize(), serialization);
+    }
+
+    @Test
+    public void badBufferTest() throws Exception {
+        for (String bad : new String[]{"", "{}", "[\"abc\"", "[\"abc\" \"def\"]", "[1]"}) {
+            try {
+                new IdChain(validator(), ByteBuffer.wrap(bad.getBytes(StandardCharsets.UTF_8)), false);
+                fail("parsed " + bad);
+            } catch (ParseException e) {
+                // expected
+            }
+        }
+        try {
+            new IdChain(validator(), ByteBuffer.wrap("[\"abc\"]".getBytes(StandardCharsets.UTF_8)), false);
+            fail("parsed a block without part delimiters");
+        } catch (ParseException e) {
+            // expected
+        }
+        assertEquals(new IdChain(validator(), ByteBuffer.wrap(" [ ] ".getBytes(StandardCharsets.UTF_8)), false)
+                .getBlocks().size(), 0);
+    }
+
+    private Identity aliceIdentity() throws Exception {
+        Identity mint = _clique.createIdentity(_mintUri);
+        return _clique.createIdentity(mint, _aliceUri);
+    }
+
+    private IdChain aliceChain() throws Exception {
+        if (null == _clique.getTransport().getIdChain(null, _aliceUri)) {
+            aliceIdentity();
+        }
+        return (IdChain) _clique.getTransport().getIdChain(null, _aliceUri);
+    }
+
+    private IdBlockValidator validator() {
+        return new IdBlockValidator(_clique.getTransport(), _clique.getTrustRoots());
+    }
+}
@@ -0,0 +1,47 @@
+package com.cisco.clique.sdk.chains;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.Date;
+
+import static org.testng.Assert.*;
+
+public class GrantTest {
+
+    @Test
+    public void roundTripTest() throws Exception {
+        Date notBefore = new Date(1000000L);
+        Date expires = new Date(2000000L);
+        AuthBlock.Grant grant = new AuthBlock.Grant(AuthBlock.Grant.Type.GRANT, URI.create("uri:clique:bob"),
+                "read", true, notBefore, expires);
+        AuthBlock.Grant parsed = new AuthBlock.Grant(new ObjectMapper().readTree(grant.toString()));
+        assertEquals(parsed.getType(), AuthBlock.Grant.Type.GRANT);
+        assertEquals(parsed.getGrantee(), URI.create("uri:clique:bob"));
+        assertEquals(parsed.getPrivilege(), "read");
+        assertTrue(parsed.isGroup());
+        assertEquals(parsed.getNotBefore(), notBefore);
+        assertEquals(parsed.getExpires(), expires);
+
+        // a grant without a validity window reads back without one
+        parsed = new AuthBlock.Grant(new ObjectMapper().readTree(
+                new AuthBlock.Grant(AuthBlock.Grant.Type.REVOKE, URI.create("uri:clique:bob"), "read").toString()));
+        assertNull(parsed.getNotBefore());
+        assertNull(parsed.getExpires());
+        assertFalse(parsed.isGroup());
+    }
+
+    @Test
+    public void badDateTest() throws Exception {
+        final JsonNode node = new ObjectMapper().readTree(
+                "{\"type\":\"GRANT\",\"privilege\":\"read\",\"grantee\":\"uri:clique:bob\",\"expires\":\"soon\"}");
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new AuthBlock.Grant(node);
+            }
+        });
+    }
+}
@@ -0,0 +1,159 @@
+package com.cisco.clique.sdk.chains;
+
+import com.cisco.clique.sdk.Clique;
+import com.cisco.clique.sdk.Identity;
+import com.cisco.clique.sdk.MemoryTransport;
+import com.cisco.clique.sdk.Policy;
+import com.cisco.clique.sdk.PublicIdentity;
+import com.cisco.clique.sdk.validation.AuthBlockValidator;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Security;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.*;
+
+public class LeanChainTest {
+    Clique _clique;
+    URI _mintUri;
+    URI _aliceUri;
+    URI _bobUri;
+    URI _resourceUri;
+
+    @BeforeTest
+    public void suiteSetUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        _clique = new Clique(new MemoryTransport(), new HashSet<String>());
+        _mintUri = URI.create("uri:clique:mint");
+        _aliceUri = URI.create("uri:clique:alice");
+        _bobUri = URI.create("uri:clique:bob");
+        _resourceUri = URI.create("uri:clique:some:resource");
+    }
+
+    @BeforeMethod
+    public void testSetUp() {
+        _clique.getTransport().clear();
+        _clique.getTrustRoots().clear();
+    }
+
+    @Test
+    public void sharedChainTest() throws Exception {
+        Identity mint = buildPolicy();
+
+        // the memory transport hands out the very chain it stores, so the compacted blocks can only come back from
+        // the chain's own store
+        AuthChain chain = (AuthChain) _clique.getTransport().getAuthChain(null, _resourceUri);
+        assertSame(_clique.getTransport().getAuthChain(null, _resourceUri), chain);
+        String serialization = chain.serialize();
+        chain.setLean(true);
+        assertTrue(chain.isLean());
+        assertCompacted(chain);
+        assertTrue(chain.hasPrivilege(_bobUri, "read"));
+        assertFalse(chain.hasPrivilege(_aliceUri, "read"));
+        assertEquals(chain.serialize(), serialization);
+        assertEquals(chain.getBlocks().get(1).getIssuer(), _mintUri);
+        assertTrue(chain.getBlocks().get(1).verify(mint.getActiveKeyPair()));
+
+        // everything that reads the raw blocks keeps working: revalidation, snapshot reads and further appends
+        chain.resetValidator();
+        chain.validate();
+        assertTrue(chain.hasPrivilege(_bobUri, "read"));
+        Policy policy = _clique.getPolicy(_resourceUri);
+        assertTrue(policy.hasPrivilege(_clique.getPublicIdentity(_bobUri), "read"));
+        assertEquals(policy.serialize(), chain.serialize(true));
+        policy.update(mint).revoke(_clique.getPublicIdentity(_bobUri), "read").build();
+        assertFalse(_clique.getPolicy(_resourceUri).hasPrivilege(_clique.getPublicIdentity(_bobUri), "read"));
+
+        // nor does it depend on the transport still holding the chain
+        chain.compact();
+        String updated = chain.serialize();
+        _clique.getTransport().clear();
+        assertEquals(chain.serialize(), updated);
+    }
+
+    @Test
+    public void bufferChainTest() throws Exception {
+        buildPolicy();
+        String serialization = _clique.getTransport().getAuthChain(null, _resourceUri).serialize();
+        AuthChain chain = new AuthChain(new AuthBlockValidator(_clique.getTransport(), _clique.getTrustRoots()),
+                ByteBuffer.wrap(serialization.getBytes(StandardCharsets.US_ASCII)), false);
+        chain.setLean(true);
+
+        // nothing is compacted before it has been validated
+        for (AuthBlock block : chain.getBlocks()) {
+            assertFalse(block.isCompact());
+        }
+        chain.validate();
+        assertCompacted(chain);
+        assertEquals(chain.serialize(), serialization);
+        assertTrue(chain.hasPrivilege(_bobUri, "read"));
+        assertEquals(chain.compact(), 0);
+    }
+
+    @Test
+    public void concurrentCompactTest() throws Exception {
+        buildPolicy();
+        final String serialization = _clique.getTransport().getAuthChain(null, _resourceUri).serialize();
+        for (int i = 0; i < 50; i++) {
+            final AuthChain chain = new AuthChain(
+                    new AuthBlockValidator(_clique.getTransport(), _clique.getTrustRoots()),
+                    ByteBuffer.wrap(serialization.getBytes(StandardCharsets.US_ASCII)), false);
+            chain.validate();
+
+            // blocks parsed from a buffer are re-serialized while another thread compacts them away underneath
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread compactor = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        chain.compact();
+                    } catch (Throwable t) {
+                        failure.set(t);
+                    }
+                }
+            });
+            compactor.start();
+            start.countDown();
+            for (int j = 0; j < 10; j++) {
+                assertEquals(chain.serialize(), serialization);
+            }
+            compactor.join();
+            assertNull(failure.get());
+            assertEquals(chain.serialize(), serialization);
+        }
+    }
+
+    private Identity buildPolicy() throws Exception {
+        Identity mint = _clique.createIdentity(_mintUri);
+        PublicIdentity alicePublic = _clique.getPublicIdentity(_clique.createIdentity(mint, _aliceUri).getAcct());
+        PublicIdentity bobPublic = _clique.getPublicIdentity(_clique.createIdentity(mint, _bobUri).getAcct());
+        Policy policy = _clique.createPolicy(mint, _resourceUri)
+                .viralGrant(mint, "read")
+                .build();
+        policy.update(mint).grant(alicePublic, "read").build();
+        policy.update(mint).grant(bobPublic, "read").build();
+        policy.update(mint).revoke(alicePublic, "read").build();
+        return mint;
+    }
+
+    private static void assertCompacted(AuthChain chain) {
+
+        // everything validated except the head is compacted down to its hash and decoded claims
+        List<AuthBlock> blocks = chain.getBlocks();
+        for (int i = 0; i < blocks.size() - 1; i++) {
+            assertTrue(blocks.get(i).isCompact());
+        }
+        assertFalse(chain.lastBlock().isCompact());
+    }
+}
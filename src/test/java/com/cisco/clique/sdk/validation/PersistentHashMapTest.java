@@ -0,0 +1,55 @@
+package com.cisco.clique.sdk.validation;
+
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+public class PersistentHashMapTest {
+
+    @Test
+    public void withTest() throws Exception {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            map = map.with("key" + i, i);
+            expected.put("key" + i, i);
+        }
+        assertEquals(map.size(), 5000);
+        assertEquals(map, expected);
+        assertEquals(map.get("key1234"), Integer.valueOf(1234));
+        assertNull(map.get("key5000"));
+        assertNull(map.get(null));
+
+        // older versions are untouched by anything added on top of them
+        PersistentHashMap<String, Integer> replaced = map.with("key7", -7);
+        assertEquals(replaced.size(), 5000);
+        assertEquals(replaced.get("key7"), Integer.valueOf(-7));
+        assertEquals(map.get("key7"), Integer.valueOf(7));
+    }
+
+    @Test
+    public void collisionTest() throws Exception {
+
+        // "Aa" and "BB" share a hash code, "Ab" differs from it in the lowest bit only
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        PersistentHashMap<String, String> map = PersistentHashMap.<String, String>empty()
+                .with("Aa", "first")
+                .with("BB", "second")
+                .with("Ab", "third")
+                .with("BB", "replaced");
+        assertEquals(map.size(), 3);
+        assertEquals(map.get("Aa"), "first");
+        assertEquals(map.get("BB"), "replaced");
+        assertEquals(map.get("Ab"), "third");
+        assertEquals(map.entrySet().size(), 3);
+        assertThrows(UnsupportedOperationException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                PersistentHashMap.<String, String>empty().put("key", "value");
+            }
+        });
+    }
+}
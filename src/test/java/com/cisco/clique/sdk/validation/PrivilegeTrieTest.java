@@ -0,0 +1,136 @@
+package com.cisco.clique.sdk.validation;
+
+import com.cisco.clique.sdk.chains.AuthBlock;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class PrivilegeTrieTest {
+
+    @Test
+    public void resolveTest() throws Exception {
+        PrivilegeTrie trie = PrivilegeTrie.EMPTY
+                .with("docs.*", AuthBlock.Grant.Type.GRANT)
+                .with("docs.secret", AuthBlock.Grant.Type.REVOKE)
+                .with("read", AuthBlock.Grant.Type.VIRAL_GRANT);
+
+        assertEquals(trie.resolve("docs.read"), AuthBlock.Grant.Type.GRANT);
+        assertEquals(trie.resolve("docs.read.drafts"), AuthBlock.Grant.Type.GRANT);
+        assertEquals(trie.resolve("docs.secret"), AuthBlock.Grant.Type.REVOKE);
+        assertEquals(trie.resolve("docs.secret.x"), AuthBlock.Grant.Type.GRANT);
+        assertEquals(trie.resolve("docs.*"), AuthBlock.Grant.Type.GRANT);
+        assertEquals(trie.resolve("read"), AuthBlock.Grant.Type.VIRAL_GRANT);
+
+        // a wildcard covers what is beneath a name, not the name itself
+        assertNull(trie.resolve("docs"));
+        assertNull(trie.resolve("write"));
+        assertNull(trie.resolve("read.more"));
+        assertNull(trie.resolve("*"));
+    }
+
+    @Test
+    public void rootWildcardTest() throws Exception {
+        PrivilegeTrie trie = PrivilegeTrie.EMPTY
+                .with("*", AuthBlock.Grant.Type.VIRAL_GRANT)
+                .with("admin.*", AuthBlock.Grant.Type.REVOKE);
+        assertEquals(trie.resolve("anything"), AuthBlock.Grant.Type.VIRAL_GRANT);
+        assertEquals(trie.resolve("docs.read"), AuthBlock.Grant.Type.VIRAL_GRANT);
+        assertEquals(trie.resolve("admin.users"), AuthBlock.Grant.Type.REVOKE);
+        assertTrue(trie.canGrant("docs.*"));
+        assertFalse(trie.canGrant("*"));
+        assertFalse(trie.canGrant("admin.users"));
+    }
+
+    @Test
+    public void wildcardRevokeTest() throws Exception {
+        PrivilegeTrie trie = PrivilegeTrie.EMPTY
+                .with("docs.read", AuthBlock.Grant.Type.VIRAL_GRANT)
+                .with("docs.read.drafts", AuthBlock.Grant.Type.GRANT)
+                .with("docs.*", AuthBlock.Grant.Type.REVOKE)
+                .with("docs.write", AuthBlock.Grant.Type.GRANT);
+
+        // a wildcard revocation takes away what was granted beneath it earlier, but not what is granted after it
+        assertEquals(trie.resolve("docs.read"), AuthBlock.Grant.Type.REVOKE);
+        assertEquals(trie.resolve("docs.read.drafts"), AuthBlock.Grant.Type.REVOKE);
+        assertEquals(trie.resolve("docs.write"), AuthBlock.Grant.Type.GRANT);
+        assertFalse(trie.canGrant("docs.read"));
+        trie = trie.with("docs.read", AuthBlock.Grant.Type.GRANT);
+        assertEquals(trie.resolve("docs.read"), AuthBlock.Grant.Type.GRANT);
+        assertEquals(trie.resolve("docs.read.drafts"), AuthBlock.Grant.Type.REVOKE);
+
+        // a later, more specific wildcard grant beneath a revocation applies again
+        trie = PrivilegeTrie.EMPTY
+                .with("docs.read", AuthBlock.Grant.Type.GRANT)
+                .with("*", AuthBlock.Grant.Type.REVOKE)
+                .with("docs.*", AuthBlock.Grant.Type.GRANT);
+        assertEquals(trie.resolve("docs.read"), AuthBlock.Grant.Type.GRANT);
+        assertEquals(trie.resolve("other"), AuthBlock.Grant.Type.REVOKE);
+
+        // and outside its window the revocation no longer applies to anything
+        trie = PrivilegeTrie.EMPTY
+                .with("docs.read", AuthBlock.Grant.Type.GRANT)
+                .with("docs.*", AuthBlock.Grant.Type.REVOKE, 100, 200);
+        assertEquals(trie.resolve("docs.read", 150), AuthBlock.Grant.Type.REVOKE);
+        assertEquals(trie.resolve("docs.read", 250), AuthBlock.Grant.Type.GRANT);
+    }
+
+    @Test
+    public void canGrantTest() throws Exception {
+        PrivilegeTrie trie = PrivilegeTrie.EMPTY
+                .with("docs.*", AuthBlock.Grant.Type.VIRAL_GRANT)
+                .with("docs.secret.*", AuthBlock.Grant.Type.GRANT);
+        assertTrue(trie.canGrant("docs.read"));
+        assertTrue(trie.canGrant("docs.public.*"));
+        assertFalse(trie.canGrant("docs.secret.plans"));
+
+        // handing out the whole subtree would also hand out what the issuer only holds non-virally
+        assertFalse(trie.canGrant("docs.*"));
+        assertFalse(trie.canGrant("other"));
+    }
+
+    @Test
+    public void literalTest() throws Exception {
+        PrivilegeTrie trie = PrivilegeTrie.LITERAL
+                .with("*", AuthBlock.Grant.Type.VIRAL_GRANT)
+                .with("docs.*", AuthBlock.Grant.Type.GRANT)
+                .with("docs.read", AuthBlock.Grant.Type.REVOKE);
+
+        // without hierarchy every privilege is an opaque name that only matches itself
+        assertFalse(trie.isHierarchical());
+        assertEquals(trie.resolve("*"), AuthBlock.Grant.Type.VIRAL_GRANT);
+        assertEquals(trie.resolve("docs.*"), AuthBlock.Grant.Type.GRANT);
+        assertEquals(trie.resolve("docs.read"), AuthBlock.Grant.Type.REVOKE);
+        assertNull(trie.resolve("docs.write"));
+        assertNull(trie.resolve("anything"));
+        assertTrue(trie.canGrant("*"));
+        assertFalse(trie.canGrant("docs.*"));
+    }
+
+    @Test
+    public void persistenceTest() throws Exception {
+        PrivilegeTrie before = PrivilegeTrie.EMPTY.with("docs.read", AuthBlock.Grant.Type.GRANT);
+        PrivilegeTrie after = before.with("docs.read", AuthBlock.Grant.Type.REVOKE);
+        assertEquals(before.resolve("docs.read"), AuthBlock.Grant.Type.GRANT);
+        assertEquals(after.resolve("docs.read"), AuthBlock.Grant.Type.REVOKE);
+        assertTrue(PrivilegeTrie.EMPTY.isEmpty());
+        assertFalse(before.isEmpty());
+    }
+
+    @Test
+    public void validityWindowTest() throws Exception {
+        PrivilegeTrie trie = PrivilegeTrie.EMPTY
+                .with("docs.*", AuthBlock.Grant.Type.GRANT)
+                .with("docs.read", AuthBlock.Grant.Type.VIRAL_GRANT, 100, 200);
+
+        // outside its window the exact grant steps aside for the wildcard
+        assertEquals(trie.resolve("docs.read", 150), AuthBlock.Grant.Type.VIRAL_GRANT);
+        assertEquals(trie.resolve("docs.read", 99), AuthBlock.Grant.Type.GRANT);
+        assertEquals(trie.resolve("docs.read", 200), AuthBlock.Grant.Type.GRANT);
+        assertEquals(trie.resolve("docs.read"), AuthBlock.Grant.Type.VIRAL_GRANT);
+        assertEquals(trie.nextTransition(0), 100);
+        assertEquals(trie.nextTransition(100), 200);
+        assertEquals(trie.nextTransition(200), Long.MAX_VALUE);
+        assertTrue(trie.covers("docs.read", 120, 180));
+        assertFalse(trie.covers("docs.read", 120, Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,70 @@
+package com.cisco.clique.sdk.validation;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+public class TimingWheelTest {
+
+    @Test
+    public void advanceTest() throws Exception {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 1000);
+        wheel.schedule(1005, "current");
+        wheel.schedule(1025, "near");
+        wheel.schedule(1500, "far");
+        wheel.schedule(100000, "distant");
+        assertEquals(wheel.size(), 4);
+
+        // nothing fires before its deadline, even within the same tick
+        assertTrue(wheel.advance(1004).isEmpty());
+        assertEquals(wheel.advance(1005), Collections.singletonList("current"));
+        assertTrue(wheel.advance(1024).isEmpty());
+        assertEquals(wheel.advance(1025), Collections.singletonList("near"));
+        assertTrue(wheel.advance(1499).isEmpty());
+        assertEquals(wheel.advance(1500), Collections.singletonList("far"));
+
+        // a long jump cascades everything it passed over
+        assertEquals(wheel.advance(200000), Collections.singletonList("distant"));
+        assertEquals(wheel.size(), 0);
+    }
+
+    @Test
+    public void randomDeadlinesTest() throws Exception {
+        Random random = new Random(42);
+        TimingWheel<Long> wheel = new TimingWheel<>(7, 8, 0);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            long deadline = random.nextInt(50000);
+            deadlines.add(deadline);
+            wheel.schedule(deadline, deadline);
+        }
+
+        // advancing in irregular steps must fire every timer exactly once and never early
+        List<Long> fired = new ArrayList<>();
+        long now = 0;
+        while (now < 60000) {
+            now += random.nextInt(700);
+            for (Long deadline : wheel.advance(now)) {
+                assertTrue(deadline <= now);
+                fired.add(deadline);
+            }
+        }
+        Collections.sort(deadlines);
+        Collections.sort(fired);
+        assertEquals(fired, deadlines);
+        assertEquals(wheel.size(), 0);
+    }
+
+    @Test
+    public void expiredOnScheduleTest() throws Exception {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 1000);
+        wheel.schedule(10, "past");
+        assertEquals(wheel.advance(1000), Arrays.asList("past"));
+    }
+}
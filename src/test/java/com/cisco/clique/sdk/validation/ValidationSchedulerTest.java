@@ -0,0 +1,265 @@
+package com.cisco.clique.sdk.validation;
+
+import com.cisco.clique.sdk.Clique;
+import com.cisco.clique.sdk.Identity;
+import com.cisco.clique.sdk.chains.IdChain;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Security;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class ValidationSchedulerTest {
+    Clique _clique;
+    URI _mintUri;
+    URI _aliceUri;
+    URI _bobUri;
+
+    @BeforeTest
+    public void suiteSetUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        _clique = new Clique();
+        _mintUri = URI.create("uri:clique:mint");
+        _aliceUri = URI.create("uri:clique:alice");
+        _bobUri = URI.create("uri:clique:bob");
+    }
+
+    @BeforeMethod
+    public void testSetUp() throws Exception {
+        _clique.getTransport().clear();
+        _clique.getTrustRoots().clear();
+        Identity mint = _clique.createIdentity(_mintUri);
+        _clique.createIdentity(mint, _aliceUri);
+        _clique.createIdentity(mint, _bobUri);
+    }
+
+    private IdChain copy(URI acct) throws Exception {
+        String serialization = _clique.getTransport().getIdChain(null, acct).serialize();
+        return new IdChain(new IdBlockValidator(_clique.getTransport(), _clique.getTrustRoots()),
+                ByteBuffer.wrap(serialization.getBytes(StandardCharsets.UTF_8)), false);
+    }
+
+    private static Callable<Void> blocker(final CountDownLatch started, final CountDownLatch release) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                started.countDown();
+                release.await();
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void coalesceTest() throws Exception {
+        final ValidationScheduler scheduler = new ValidationScheduler(2);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            final IdChain first = copy(_aliceUri);
+            final IdChain second = copy(_aliceUri);
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            Future<IdChain> leader = callers.submit(new Callable<IdChain>() {
+                @Override
+                public IdChain call() throws Exception {
+                    return scheduler.validate(first, blocker(started, release));
+                }
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            // a second request for the same head joins the running validation instead of starting its own
+            Future<IdChain> follower = callers.submit(new Callable<IdChain>() {
+                @Override
+                public IdChain call() throws Exception {
+                    return scheduler.validate(second, new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            throw new IllegalStateException("should have been coalesced");
+                        }
+                    });
+                }
+            });
+            long deadline = System.currentTimeMillis() + 10000;
+            while (scheduler.getCoalesced() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(scheduler.getInFlight(), 1);
+            release.countDown();
+            assertSame(leader.get(), first);
+            assertSame(follower.get(), first);
+            assertEquals(scheduler.getSubmitted(), 1);
+            assertEquals(scheduler.getCoalesced(), 1);
+
+            // once finished nothing is held on to, the next request for the same head runs again
+            deadline = System.currentTimeMillis() + 10000;
+            while (scheduler.getInFlight() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(scheduler.getInFlight(), 0);
+            IdChain third = copy(_aliceUri);
+            assertSame(scheduler.validate(third), third);
+            assertEquals(third.getValidationState().getLastValidated(), third.getBlocks().get(0));
+            assertEquals(scheduler.getSubmitted(), 2);
+        } finally {
+            callers.shutdownNow();
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void trustRootsTest() throws Exception {
+        final ValidationScheduler scheduler = new ValidationScheduler(2);
+        ExecutorService callers = Executors.newFixedThreadPool(1);
+        try {
+            final IdChain first = copy(_aliceUri);
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            Future<IdChain> leader = callers.submit(new Callable<IdChain>() {
+                @Override
+                public IdChain call() throws Exception {
+                    return scheduler.validate(first, blocker(started, release));
+                }
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            // the same head checked against different trust roots is validated on its own, never handed the other
+            String serialization = _clique.getTransport().getIdChain(null, _aliceUri).serialize();
+            IdChain other = new IdChain(new IdBlockValidator(_clique.getTransport(),
+                    new HashSet<>(_clique.getTrustRoots())),
+                    ByteBuffer.wrap(serialization.getBytes(StandardCharsets.UTF_8)), false);
+            assertSame(scheduler.validate(other), other);
+            assertEquals(scheduler.getCoalesced(), 0);
+            assertEquals(scheduler.getSubmitted(), 2);
+            release.countDown();
+            assertSame(leader.get(), first);
+        } finally {
+            callers.shutdownNow();
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void shedTest() throws Exception {
+        final ValidationScheduler scheduler = new ValidationScheduler(1, 1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            final IdChain mint = copy(_mintUri);
+            final IdChain alice = copy(_aliceUri);
+            Future<IdChain> running = callers.submit(new Callable<IdChain>() {
+                @Override
+                public IdChain call() throws Exception {
+                    return scheduler.validate(mint, blocker(started, release));
+                }
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<IdChain> queued = callers.submit(new Callable<IdChain>() {
+                @Override
+                public IdChain call() throws Exception {
+                    return scheduler.validate(alice);
+                }
+            });
+            long deadline = System.currentTimeMillis() + 10000;
+            while (scheduler.getQueueDepth() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(scheduler.getQueueDepth(), 1);
+
+            // the one thread is busy and the one queue slot taken, so a third chain is turned away
+            assertThrows(RejectedExecutionException.class, new ThrowingRunnable() {
+                @Override
+                public void run() throws Throwable {
+                    scheduler.validate(copy(_bobUri));
+                }
+            });
+            assertEquals(scheduler.getShed(), 1);
+            assertEquals(scheduler.getInFlight(), 2);
+
+            release.countDown();
+            assertSame(running.get(), mint);
+            assertSame(queued.get(), alice);
+            assertTrue(scheduler.getMaxWaitMillis() > 0);
+            assertTrue(scheduler.getAverageWaitMillis() <= scheduler.getMaxWaitMillis());
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void failureTest() throws Exception {
+        ValidationScheduler scheduler = new ValidationScheduler(1);
+        try {
+            final IdChain alice = copy(_aliceUri);
+            try {
+                scheduler.validate(alice, new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        throw new InvalidBlockException("bad block");
+                    }
+                });
+                fail("validation failure was not reported");
+            } catch (InvalidBlockException e) {
+                assertEquals(e.getMessage(), "bad block");
+            }
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void cliqueTest() throws Exception {
+        ValidationScheduler scheduler = new ValidationScheduler(2);
+        assertNull(_clique.setValidationScheduler(scheduler));
+        try {
+            assertEquals(_clique.getPublicIdentity(_aliceUri).getAcct(), _aliceUri);
+            assertEquals(scheduler.getSubmitted(), 1);
+        } finally {
+            assertSame(_clique.setValidationScheduler(null), scheduler);
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void badArgumentsTest() throws Exception {
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new ValidationScheduler(0);
+            }
+        });
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new ValidationScheduler(1, 0);
+            }
+        });
+        final ValidationScheduler scheduler = new ValidationScheduler(1);
+        try {
+            assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+                @Override
+                public void run() throws Throwable {
+                    scheduler.validate(null);
+                }
+            });
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
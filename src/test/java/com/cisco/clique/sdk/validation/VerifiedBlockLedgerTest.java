@@ -0,0 +1,178 @@
+package com.cisco.clique.sdk.validation;
+
+import com.cisco.clique.sdk.Clique;
+import com.cisco.clique.sdk.Identity;
+import com.cisco.clique.sdk.chains.IdChain;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.Security;
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+public class VerifiedBlockLedgerTest {
+    File _file;
+    byte[] _secret;
+
+    @BeforeTest
+    public void suiteSetUp() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @BeforeMethod
+    public void testSetUp() throws Exception {
+        _file = File.createTempFile("ledger", ".bin");
+        _file.delete();
+        _secret = new byte[VerifiedBlockLedger.MIN_SECRET_BYTES];
+        Arrays.fill(_secret, (byte) 7);
+    }
+
+    @AfterMethod
+    public void testTearDown() {
+        VerifierCache.getInstance().setLedger(null);
+        _file.delete();
+    }
+
+    @Test
+    public void persistTest() throws Exception {
+        VerifiedBlockLedger ledger = new VerifiedBlockLedger(_file, _secret);
+        assertFalse(ledger.isVerified("hash1", "pkt1"));
+        ledger.recordVerified("hash1", "pkt1");
+        ledger.recordVerified("hash1", "pkt1");
+        ledger.recordVerified("hash2", "pkt2");
+        assertEquals(ledger.size(), 2);
+        ledger.close();
+
+        // a restart picks up everything verified before it, and only for the exact (hash, key) pairs recorded
+        ledger = new VerifiedBlockLedger(_file, _secret);
+        assertEquals(ledger.size(), 2);
+        assertTrue(ledger.isVerified("hash1", "pkt1"));
+        assertTrue(ledger.isVerified("hash2", "pkt2"));
+        assertFalse(ledger.isVerified("hash1", "pkt2"));
+        assertEquals(ledger.getHits(), 2);
+        assertEquals(ledger.getMisses(), 1);
+        ledger.clear();
+        assertEquals(ledger.size(), 0);
+        ledger.close();
+        assertEquals(new VerifiedBlockLedger(_file, _secret).size(), 0);
+    }
+
+    @Test
+    public void tamperTest() throws Exception {
+        VerifiedBlockLedger ledger = new VerifiedBlockLedger(_file, _secret);
+        ledger.recordVerified("hash1", "pkt1");
+        ledger.recordVerified("hash2", "pkt2");
+        ledger.close();
+
+        // a flipped byte spoils one record, and a torn trailing record is dropped
+        long length = _file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(_file, "rw")) {
+            raf.seek(length - 1);
+            int last = raf.read();
+            raf.seek(length - 1);
+            raf.write(last ^ 0xff);
+        }
+        try (FileOutputStream out = new FileOutputStream(_file, true)) {
+            out.write(new byte[]{1, 2, 3});
+        }
+        ledger = new VerifiedBlockLedger(_file, _secret);
+        assertTrue(ledger.isVerified("hash1", "pkt1"));
+        assertFalse(ledger.isVerified("hash2", "pkt2"));
+        ledger.close();
+        assertEquals(_file.length(), length);
+
+        // a ledger written under another secret vouches for nothing
+        byte[] other = _secret.clone();
+        other[0] = 8;
+        ledger = new VerifiedBlockLedger(_file, other);
+        assertEquals(ledger.size(), 0);
+        assertFalse(ledger.isVerified("hash1", "pkt1"));
+        ledger.close();
+    }
+
+    @Test
+    public void validationTest() throws Exception {
+        Clique clique = new Clique();
+        URI mintUri = URI.create("uri:clique:mint");
+        URI aliceUri = URI.create("uri:clique:alice");
+        Identity mint = clique.createIdentity(mintUri);
+        clique.createIdentity(mint, aliceUri);
+        String serialization = clique.getTransport().getIdChain(null, aliceUri).serialize();
+
+        VerifiedBlockLedger ledger = new VerifiedBlockLedger(_file, _secret);
+        VerifierCache.getInstance().setLedger(ledger);
+        new IdChain(new IdBlockValidator(clique.getTransport(), clique.getTrustRoots()), serialization);
+        int recorded = ledger.size();
+        assertTrue(recorded > 0);
+        ledger.close();
+
+        // after a "restart" the same chain validates without checking any signature again
+        ledger = new VerifiedBlockLedger(_file, _secret);
+        VerifierCache.getInstance().setLedger(ledger);
+        new IdChain(new IdBlockValidator(clique.getTransport(), clique.getTrustRoots()), serialization);
+        assertEquals(ledger.size(), recorded);
+        assertTrue(ledger.getHits() >= recorded);
+        ledger.close();
+    }
+
+    @Test
+    public void badArgumentsTest() throws Exception {
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new VerifiedBlockLedger(_file, new byte[16]);
+            }
+        });
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new VerifiedBlockLedger(null, _secret);
+            }
+        });
+
+        // a file that isn't a ledger is refused and left exactly as it was
+        try (FileOutputStream out = new FileOutputStream(_file)) {
+            out.write("not a ledger".getBytes(StandardCharsets.US_ASCII));
+        }
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new VerifiedBlockLedger(_file, _secret);
+            }
+        });
+        assertEquals(_file.length(), "not a ledger".length());
+    }
+
+    @Test
+    public void closedLedgerTest() throws Exception {
+        Clique clique = new Clique();
+        URI mintUri = URI.create("uri:clique:mint");
+        URI aliceUri = URI.create("uri:clique:alice");
+        clique.createIdentity(clique.createIdentity(mintUri), aliceUri);
+        String serialization = clique.getTransport().getIdChain(null, aliceUri).serialize();
+
+        // writing to a closed ledger is counted, not thrown, and closing detaches it from validation
+        VerifiedBlockLedger ledger = new VerifiedBlockLedger(_file, _secret);
+        VerifierCache.getInstance().setLedger(ledger);
+        ledger.close();
+        assertNull(VerifierCache.getInstance().getLedger());
+        ledger.recordVerified("hash", "pkt");
+        assertEquals(ledger.getWriteFailures(), 1);
+        assertTrue(ledger.isVerified("hash", "pkt"));
+
+        // a ledger still attached elsewhere after closing never fails the validation that consults it
+        VerifierCache.getInstance().setLedger(ledger);
+        new IdChain(new IdBlockValidator(clique.getTransport(), clique.getTrustRoots()), serialization);
+        assertTrue(ledger.getWriteFailures() > 1);
+        assertEquals(new VerifiedBlockLedger(_file, _secret).size(), 0);
+    }
+}
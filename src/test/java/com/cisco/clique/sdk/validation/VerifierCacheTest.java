@@ -0,0 +1,101 @@
+package com.cisco.clique.sdk.validation;
+
+import com.cisco.clique.sdk.MemoryTransport;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.jwk.ECKey;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+
+import static org.testng.Assert.*;
+
+public class VerifierCacheTest {
+    MemoryTransport _transport;
+
+    @BeforeTest
+    public void suiteSetUp() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @BeforeMethod
+    public void testSetUp() {
+        _transport = new MemoryTransport();
+    }
+
+    private String publishKey() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("ECDSA");
+        generator.initialize(ECKey.Curve.P_256.toECParameterSpec());
+        KeyPair pair = generator.generateKeyPair();
+        ECKey key = new ECKey.Builder(ECKey.Curve.P_256, (ECPublicKey) pair.getPublic())
+                .privateKey((ECPrivateKey) pair.getPrivate())
+                .build();
+        _transport.putKey(key);
+        return key.computeThumbprint().toString();
+    }
+
+    @Test
+    public void reuseTest() throws Exception {
+        VerifierCache cache = new VerifierCache(4);
+        String pkt = publishKey();
+
+        JWSVerifier verifier = cache.getVerifier(_transport, pkt);
+        assertNotNull(verifier);
+        assertEquals(cache.getMisses(), 1);
+
+        // repeated lookups hand back the same decoded key and verifier without another fetch
+        _transport.clear();
+        assertSame(cache.getVerifier(_transport, pkt), verifier);
+        assertNotNull(cache.getPublicKey(_transport, pkt));
+        assertEquals(cache.getHits(), 2);
+        assertEquals(cache.getMisses(), 1);
+    }
+
+    @Test
+    public void missingKeyTest() throws Exception {
+        VerifierCache cache = new VerifierCache(4);
+        assertNull(cache.getVerifier(_transport, "no-such-thumbprint"));
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void evictionTest() throws Exception {
+        VerifierCache cache = new VerifierCache(2);
+        String first = publishKey();
+        String second = publishKey();
+        String third = publishKey();
+        cache.getVerifier(_transport, first);
+        cache.getVerifier(_transport, second);
+        cache.getVerifier(_transport, first);
+        cache.getVerifier(_transport, third);
+        assertEquals(cache.size(), 2);
+
+        // the least recently used key was evicted and has to be fetched again
+        cache.getVerifier(_transport, second);
+        assertEquals(cache.getMisses(), 4);
+        cache.clear();
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void badArgumentsTest() throws Exception {
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new VerifierCache(0);
+            }
+        });
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                new VerifierCache(1).getVerifier(_transport, null);
+            }
+        });
+    }
+}